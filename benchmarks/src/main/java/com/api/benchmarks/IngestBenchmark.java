@@ -0,0 +1,94 @@
+package com.api.benchmarks;
+
+import com.api.statistics.service.StatisticsPipeline;
+import com.api.statistics.service.StatisticsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of {@link StatisticsService#updateRecentStatistics} with one, four and all available writer threads.
+ * All writers add to the same service, so multi-threaded results show contention on buckets of current slot.
+ * With pipeline writers only publish to the ring, and throughput is limited by the aggregator thread when ring is full.
+ * Allocation per transaction is shown by running with -prof gc.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+
+    @Param({"1000", "100", "10"})
+    private int resolutionInMillis;
+
+    @Param({"false", "true"})
+    private boolean percentiles;
+
+    @Param({"false", "true"})
+    private boolean pipeline;
+
+    private StatisticsService statisticsService;
+
+    private StatisticsPipeline statisticsPipeline;
+
+    @Setup
+    public void setUp() {
+        statisticsService = StatisticsEngines.create(resolutionInMillis, percentiles);
+        if (pipeline) {
+            statisticsPipeline = StatisticsEngines.startPipeline(statisticsService);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (statisticsPipeline != null) {
+            statisticsPipeline.stop();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private static final AtomicLong SEEDS = new AtomicLong();
+
+        TransactionGenerator generator;
+
+        @Setup
+        public void setUp() {
+            generator = new TransactionGenerator(SEEDS.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneWriter(Writer writer) {
+        statisticsService.updateRecentStatistics(writer.generator.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourWriters(Writer writer) {
+        statisticsService.updateRecentStatistics(writer.generator.next());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void allCoresWriters(Writer writer) {
+        statisticsService.updateRecentStatistics(writer.generator.next());
+    }
+}
@@ -0,0 +1,98 @@
+package com.api.benchmarks;
+
+import com.api.statistics.service.PeriodStatistics;
+import com.api.statistics.service.StatisticsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writers and readers working with the same service at the same time, in 3:1, 1:1 and 1:3 write/read ratios.
+ * JMH reports throughput of writers and readers of each group separately.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class MixedReadWriteBenchmark {
+
+    @Param({"1000", "100"})
+    private int resolutionInMillis;
+
+    private StatisticsService statisticsService;
+
+    @Setup
+    public void setUp() {
+        statisticsService = StatisticsEngines.create(resolutionInMillis, false);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private static final AtomicLong SEEDS = new AtomicLong();
+
+        TransactionGenerator generator;
+
+        @Setup
+        public void setUp() {
+            generator = new TransactionGenerator(SEEDS.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(3)
+    public void writeHeavyWrite(Writer writer) {
+        statisticsService.updateRecentStatistics(writer.generator.next());
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public PeriodStatistics writeHeavyRead() {
+        return statisticsService.getStatisticsForLastSeconds();
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public void balancedWrite(Writer writer) {
+        statisticsService.updateRecentStatistics(writer.generator.next());
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public PeriodStatistics balancedRead() {
+        return statisticsService.getStatisticsForLastSeconds();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public void readHeavyWrite(Writer writer) {
+        statisticsService.updateRecentStatistics(writer.generator.next());
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public PeriodStatistics readHeavyRead() {
+        return statisticsService.getStatisticsForLastSeconds();
+    }
+}
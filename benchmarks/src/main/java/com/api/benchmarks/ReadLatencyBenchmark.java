@@ -0,0 +1,100 @@
+package com.api.benchmarks;
+
+import com.api.statistics.service.PeriodStatistics;
+import com.api.statistics.service.StatisticsService;
+import com.api.transaction.repository.BankTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of reads when every slot of the window and of the rollups has data.
+ * Window is filled again before every iteration, as far as data ages out of it while benchmark runs.
+ * With snapshot=true snapshot is published every 50 ms, like statistics.snapshot.enabled does in the application.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadLatencyBenchmark {
+
+    private static final long HOUR_IN_MILLIS = 60 * 60 * 1000L;
+
+    @Param({"1000", "100", "10"})
+    private int resolutionInMillis;
+
+    @Param({"false", "true"})
+    private boolean snapshot;
+
+    @Param({"false", "true"})
+    private boolean percentiles;
+
+    private StatisticsService statisticsService;
+
+    private ScheduledExecutorService snapshotPublisher;
+
+    @Setup
+    public void setUp() {
+        statisticsService = StatisticsEngines.create(resolutionInMillis, percentiles);
+        if (snapshot) {
+            snapshotPublisher = Executors.newSingleThreadScheduledExecutor();
+            snapshotPublisher.scheduleAtFixedRate(statisticsService::publishSnapshot, 0, 50, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds a few transactions to every slot of the last day.
+     */
+    @Setup(Level.Iteration)
+    public void fillWindow() {
+        long now = System.currentTimeMillis();
+        for (long ago = 0; ago < 24 * HOUR_IN_MILLIS; ago += ago < StatisticsEngines.PERIOD_IN_SEC * 1000L ? resolutionInMillis : 1000) {
+            for (int i = 1; i <= 3; i++) {
+                statisticsService.updateRecentStatistics(new BankTransaction(i * 10.5, now - ago));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (snapshotPublisher != null) {
+            snapshotPublisher.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public PeriodStatistics lastMinute() {
+        return statisticsService.getStatisticsForLastSeconds();
+    }
+
+    @Benchmark
+    public PeriodStatistics lastHour() {
+        return statisticsService.getStatisticsForLast(HOUR_IN_MILLIS, percentiles);
+    }
+
+    @Benchmark
+    public PeriodStatistics range() {
+        return statisticsService.getStatisticsBetween(300 * 1000L, 120 * 1000L);
+    }
+
+    @Benchmark
+    public void cleanup() {
+        statisticsService.cleanupOldData();
+    }
+}
@@ -0,0 +1,44 @@
+package com.api.benchmarks;
+
+import com.api.Application;
+import com.api.metrics.service.HotPathMetrics;
+import com.api.statistics.service.StatisticsPipeline;
+import com.api.statistics.service.StatisticsService;
+import com.api.statistics.service.StatisticsWindow;
+
+import java.time.Clock;
+
+/**
+ * Creates statistics engines measured by benchmarks. Engines are built by the same bean methods as in the application,
+ * so benchmarks measure exactly what runs in production for given settings. New engine or setting should be added here
+ * and to @Param of benchmarks, then it is measured by the same harness as existing ones.
+ */
+final class StatisticsEngines {
+
+    static final int PERIOD_IN_SEC = 60;
+
+    static final long MAX_FUTURE_IN_MILLIS = 2000;
+
+    private StatisticsEngines() {
+    }
+
+    /**
+     * @param resolutionInMillis slot width of the main window(statistics.resolutioninmillis)
+     * @param percentiles        whether buckets keep histograms(statistics.percentiles.enabled)
+     */
+    static StatisticsService create(int resolutionInMillis, boolean percentiles) {
+        Application application = new Application();
+        StatisticsWindow window = application.recentStatistics(PERIOD_IN_SEC, resolutionInMillis, MAX_FUTURE_IN_MILLIS, percentiles);
+        return new StatisticsService(window, application.statisticsRollups(true, MAX_FUTURE_IN_MILLIS, percentiles), new HotPathMetrics(), Clock.systemUTC(),
+                PERIOD_IN_SEC, MAX_FUTURE_IN_MILLIS);
+    }
+
+    /**
+     * Switches given engine to pipeline mode(statistics.pipeline.enabled) with default ring, pipeline should be stopped after benchmark.
+     */
+    static StatisticsPipeline startPipeline(StatisticsService statisticsService) {
+        StatisticsPipeline pipeline = new StatisticsPipeline(statisticsService, 65536, 1024);
+        pipeline.start();
+        return pipeline;
+    }
+}
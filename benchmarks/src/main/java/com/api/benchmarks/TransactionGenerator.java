@@ -0,0 +1,38 @@
+package com.api.benchmarks;
+
+import com.api.transaction.repository.BankTransaction;
+
+import java.util.Random;
+
+/**
+ * Per thread source of transactions. Amounts are generated(and boxed) upfront and transaction object is reused,
+ * so the only allocation made here is boxing of timestamp, which comes with {@link BankTransaction} in production as well. Timestamps are now minus up to 2 seconds,
+ * as transactions usually arrive a bit late and not in order.
+ */
+class TransactionGenerator {
+
+    private static final int SIZE = 1 << 16;
+
+    private final Double[] amounts = new Double[SIZE];
+
+    private final int[] delays = new int[SIZE];
+
+    private final BankTransaction transaction = new BankTransaction();
+
+    private int next;
+
+    TransactionGenerator(long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < SIZE; i++) {
+            amounts[i] = Math.exp(random.nextGaussian() * 2 + 5);
+            delays[i] = random.nextInt(2000);
+        }
+    }
+
+    BankTransaction next() {
+        int index = next++ & (SIZE - 1);
+        transaction.setAmount(amounts[index]);
+        transaction.setTimestamp(System.currentTimeMillis() - delays[index]);
+        return transaction;
+    }
+}
@@ -0,0 +1,165 @@
+package com.api.benchmarks.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.net.URL;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load generator for running application. POST /transactions and GET /statistics are sent at the same time,
+ * each with its own constant rate. Requests are scheduled by one dispatcher thread and sent by a pool of sender threads,
+ * dispatcher does not wait for responses, so when server is slow requests queue up instead of being sent later,
+ * the same as it happens with real clients. See {@link RequestStream} about latencies recorded.
+ * <p>
+ * Usage: java -cp benchmarks.jar com.api.benchmarks.load.LoadGenerator [--url http://localhost:8080] [--write-rate 2000]
+ * [--read-rate 200] [--duration 60] [--warmup 10] [--threads 64]
+ */
+public class LoadGenerator {
+
+    private final RequestStream[] streams;
+
+    private final int durationInSec;
+
+    private final int warmupInSec;
+
+    private final ThreadPoolExecutor senders;
+
+    private final PrintStream out;
+
+    LoadGenerator(RequestStream[] streams, int durationInSec, int warmupInSec, int threads, PrintStream out) {
+        this.streams = streams;
+        this.durationInSec = durationInSec;
+        this.warmupInSec = warmupInSec;
+        this.out = out;
+        senders = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080";
+        int writeRate = 2000;
+        int readRate = 200;
+        int duration = 60;
+        int warmup = 10;
+        int threads = 64;
+        String writePath = "/transactions";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url":
+                    url = args[i + 1];
+                    break;
+                case "--write-rate":
+                    writeRate = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--read-rate":
+                    readRate = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--duration":
+                    duration = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--write-path":
+                    writePath = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        // keep-alive pool of HttpURLConnection keeps only 5 connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+        RequestStream[] streams = {
+                new RequestStream("POST " + writePath, new URL(url + writePath), true, writeRate),
+                new RequestStream("GET /statistics", new URL(url + "/statistics"), false, readRate)
+        };
+        new LoadGenerator(streams, duration, warmup, threads, System.out).run();
+    }
+
+    void run() throws InterruptedException {
+        out.println("Warming up for " + warmupInSec + " s");
+        dispatch(warmupInSec, false);
+        while (senders.getActiveCount() > 0 || !senders.getQueue().isEmpty()) {
+            Thread.sleep(10);
+        }
+        long[] errorsBefore = new long[streams.length];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i].takeInterval();
+            streams[i].getTotalResponseTime().reset();
+            streams[i].getTotalServiceTime().reset();
+            errorsBefore[i] = streams[i].getErrors();
+        }
+        dispatch(durationInSec, true);
+        senders.shutdown();
+        senders.awaitTermination(1, TimeUnit.MINUTES);
+        out.println();
+        for (int i = 0; i < streams.length; i++) {
+            streams[i].takeInterval();
+            report(streams[i], streams[i].getErrors() - errorsBefore[i]);
+        }
+    }
+
+    /**
+     * Sends requests of all streams for given time, printing throughput and latency of every second if needed.
+     */
+    private void dispatch(int seconds, boolean print) {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        while (true) {
+            RequestStream next = streams[0];
+            for (RequestStream stream : streams) {
+                if (stream.nextRequestTime() < next.nextRequestTime()) {
+                    next = stream;
+                }
+            }
+            long intendedStart = start + next.nextRequestTime();
+            if (intendedStart - end >= 0) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                if (now >= nextReport) {
+                    printInterval(print);
+                    nextReport += TimeUnit.SECONDS.toNanos(1);
+                }
+                LockSupport.parkNanos(Math.min(intendedStart, nextReport) - now);
+            }
+            senders.execute(next.nextRequest(intendedStart));
+        }
+        for (RequestStream stream : streams) {
+            stream.reset();
+        }
+    }
+
+    private void printInterval(boolean print) {
+        StringBuilder line = new StringBuilder();
+        for (RequestStream stream : streams) {
+            Histogram interval = stream.takeInterval();
+            line.append(String.format("%s: %d req/s, p99 %.2f ms   ", stream.getName(), interval.getTotalCount(),
+                    interval.getValueAtPercentile(99) / 1e6));
+        }
+        if (print) {
+            out.println(line.append("queued: ").append(senders.getQueue().size()));
+        }
+    }
+
+    private void report(RequestStream stream, long errors) {
+        Histogram responseTime = stream.getTotalResponseTime();
+        Histogram serviceTime = stream.getTotalServiceTime();
+        out.println(stream.getName());
+        out.println(String.format("  throughput: %.1f req/s, errors: %d", responseTime.getTotalCount() / (double) durationInSec, errors));
+        out.println(String.format("  response time: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                responseTime.getValueAtPercentile(50) / 1e6, responseTime.getValueAtPercentile(99) / 1e6,
+                responseTime.getValueAtPercentile(99.9) / 1e6, responseTime.getMaxValue() / 1e6));
+        out.println(String.format("  service time:  p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                serviceTime.getValueAtPercentile(50) / 1e6, serviceTime.getValueAtPercentile(99) / 1e6,
+                serviceTime.getValueAtPercentile(99.9) / 1e6, serviceTime.getMaxValue() / 1e6));
+    }
+}
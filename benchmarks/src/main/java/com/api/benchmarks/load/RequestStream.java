@@ -0,0 +1,142 @@
+package com.api.benchmarks.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Requests of one kind(POST /transactions or GET /statistics) sent with constant rate, independently of responses.
+ * Two latencies are recorded for every request:
+ * response time - from the moment request was scheduled to be sent till response is read,
+ * service time - from the moment request was really sent till response is read.
+ * When server(or generator) can not keep up, requests wait in the queue, response time grows and service time does not,
+ * so response time is not affected by coordinated omission and the difference shows how long requests waited.
+ */
+class RequestStream {
+
+    private static final long MAX_LATENCY_IN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String name;
+
+    private final URL url;
+
+    private final boolean post;
+
+    private final long intervalInNanos;
+
+    private final Recorder responseTime = new Recorder(MAX_LATENCY_IN_NANOS, 3);
+
+    private final Recorder serviceTime = new Recorder(MAX_LATENCY_IN_NANOS, 3);
+
+    private final Histogram totalResponseTime = new Histogram(MAX_LATENCY_IN_NANOS, 3);
+
+    private final Histogram totalServiceTime = new Histogram(MAX_LATENCY_IN_NANOS, 3);
+
+    private final LongAdder errors = new LongAdder();
+
+    private long scheduled;
+
+    /**
+     * @param ratePerSecond requests per second, 0 means stream is not sent
+     */
+    RequestStream(String name, URL url, boolean post, int ratePerSecond) {
+        this.name = name;
+        this.url = url;
+        this.post = post;
+        this.intervalInNanos = ratePerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / ratePerSecond : Long.MAX_VALUE;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return moment in nanos next request should be sent at, counted from start of the test
+     */
+    long nextRequestTime() {
+        return intervalInNanos == Long.MAX_VALUE ? Long.MAX_VALUE : scheduled * intervalInNanos;
+    }
+
+    /**
+     * Starts schedule from the beginning, next request will be sent at the start of the next test.
+     */
+    void reset() {
+        scheduled = 0;
+    }
+
+    /**
+     * Creates task sending next request, which was scheduled for given moment.
+     */
+    Runnable nextRequest(long intendedStartInNanos) {
+        scheduled++;
+        return () -> send(intendedStartInNanos);
+    }
+
+    private void send(long intendedStartInNanos) {
+        long start = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            if (post) {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                String json = "{\"amount\": " + ThreadLocalRandom.current().nextInt(1, 10000) / 100.0
+                        + ", \"timestamp\": " + System.currentTimeMillis() + "}";
+                try (OutputStream body = connection.getOutputStream()) {
+                    body.write(json.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            // response is read fully, so connection is returned to keep-alive pool
+            try (InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (response != null) {
+                    byte[] buffer = new byte[512];
+                    while (response.read(buffer) >= 0) {
+                        // skip
+                    }
+                }
+            }
+            if (status >= 400) {
+                errors.increment();
+            }
+        } catch (IOException e) {
+            errors.increment();
+        }
+        long end = System.nanoTime();
+        responseTime.recordValue(Math.min(end - intendedStartInNanos, MAX_LATENCY_IN_NANOS));
+        serviceTime.recordValue(Math.min(end - start, MAX_LATENCY_IN_NANOS));
+    }
+
+    /**
+     * Takes latencies recorded since previous call and adds them to the totals.
+     *
+     * @return response time histogram of the interval
+     */
+    Histogram takeInterval() {
+        Histogram interval = responseTime.getIntervalHistogram();
+        totalResponseTime.add(interval);
+        totalServiceTime.add(serviceTime.getIntervalHistogram());
+        return interval;
+    }
+
+    Histogram getTotalResponseTime() {
+        return totalResponseTime;
+    }
+
+    Histogram getTotalServiceTime() {
+        return totalServiceTime;
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+}
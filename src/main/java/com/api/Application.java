@@ -1,21 +1,55 @@
 package com.api;
 
-import com.api.statistics.service.PeriodStatistics;
+import com.api.statistics.service.StatisticsRollups;
+import com.api.statistics.service.StatisticsWindow;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-
-import java.time.LocalDateTime;
-import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class Application {
     public static void main(String[] args) {
         SpringApplication.run(Application.class);
     }
 
+    /**
+     * Ring of slots of the period followed by slots for transactions up to statistics.maxfutureinmillis ahead of now,
+     * so e.g. 60 + 2 one second buckets. It is the only memory statistics of the period ever takes.
+     */
+    @Bean
+    public StatisticsWindow recentStatistics(@Value("${statistics.periodinsec}") int statisticPeriodFromNow,
+                                             @Value("${statistics.resolutioninmillis}") int resolutionInMillis,
+                                             @Value("${statistics.maxfutureinmillis}") long maxFutureInMillis,
+                                             @Value("${statistics.percentiles.enabled}") boolean percentiles) {
+        if (resolutionInMillis <= 0 || statisticPeriodFromNow * 1000 % resolutionInMillis != 0) {
+            throw new IllegalArgumentException("Statistics period should be divisible to slots of " + resolutionInMillis + " ms");
+        }
+        return new StatisticsWindow(statisticPeriodFromNow * 1000 / resolutionInMillis, resolutionInMillis, percentiles,
+                futureSlots(maxFutureInMillis, resolutionInMillis));
+    }
+
+    /**
+     * Minutes window for the last hour and hours window for the last day. They are used for /statistics?window=... requests
+     * longer than statistics.periodinsec. Both get a future slot for statistics.maxfutureinmillis as the main window does.
+     */
     @Bean
-    public ConcurrentHashMap<LocalDateTime, PeriodStatistics> recentStatistics() {
-        return new ConcurrentHashMap<>();
+    public StatisticsRollups statisticsRollups(@Value("${statistics.rollup.enabled}") boolean enabled,
+                                               @Value("${statistics.maxfutureinmillis}") long maxFutureInMillis,
+                                               @Value("${statistics.percentiles.enabled}") boolean percentiles) {
+        if (!enabled) {
+            return new StatisticsRollups();
+        }
+        return new StatisticsRollups(new StatisticsWindow(60, 60 * 1000L, percentiles, futureSlots(maxFutureInMillis, 60 * 1000L)),
+                new StatisticsWindow(24, 60 * 60 * 1000L, percentiles, futureSlots(maxFutureInMillis, 60 * 60 * 1000L)));
+    }
+
+    /**
+     * @return how many slots of given width transactions up to maxFutureInMillis ahead of now can take
+     */
+    private static int futureSlots(long maxFutureInMillis, long slotWidthInMillis) {
+        return (int) ((maxFutureInMillis + slotWidthInMillis - 1) / slotWidthInMillis);
     }
 }
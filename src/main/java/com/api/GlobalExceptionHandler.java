@@ -1,5 +1,10 @@
 package com.api;
 
+import com.api.statistics.service.UnsupportedDimensionException;
+import com.api.statistics.service.UnsupportedWindowException;
+import com.api.transaction.repository.TransactionQueueFullException;
+import com.api.transaction.service.FutureTransactionException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.FieldError;
@@ -39,6 +44,41 @@ public class GlobalExceptionHandler {
                 .collect(Collectors.toList()));
     }
 
+    @ExceptionHandler
+    @ResponseBody
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map handle(JsonProcessingException exception) {
+        return error(exception.getOriginalMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseBody
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map handle(UnsupportedWindowException exception) {
+        return error(exception.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseBody
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map handle(UnsupportedDimensionException exception) {
+        return error(exception.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseBody
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public Map handle(FutureTransactionException exception) {
+        return error(exception.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseBody
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map handle(TransactionQueueFullException exception) {
+        return error(exception.getMessage());
+    }
+
     private Map error(Object message) {
         return Collections.singletonMap("error", message);
     }
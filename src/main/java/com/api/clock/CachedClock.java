@@ -0,0 +1,89 @@
+package com.api.clock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * UTC clock which keeps current time in millis in volatile field, advanced by separate clock-ticker thread
+ * every #tickInMillis(clock.tickinmillis property). Reading time on hot paths is then a single volatile read,
+ * and all services see the same time during the tick. Time is behind real one by up to one tick, so tick should be
+ * much smaller than slot of statistics window(statistics.resolutioninmillis).
+ * <p>
+ * Services get {@link Clock}, so tests can give them clock they advance by hand.
+ */
+@Component
+public class CachedClock extends Clock {
+
+    private final long tickInNanos;
+
+    private volatile long millis = System.currentTimeMillis();
+
+    private volatile boolean running;
+
+    private Thread ticker;
+
+    @Inject
+    public CachedClock(@Value("${clock.tickinmillis}") long tickInMillis) {
+        if (tickInMillis <= 0) {
+            throw new IllegalArgumentException("Clock tick should be positive, but was " + tickInMillis);
+        }
+        this.tickInNanos = TimeUnit.MILLISECONDS.toNanos(tickInMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        ticker = new Thread(this::tick, "clock-ticker");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (ticker != null) {
+            LockSupport.unpark(ticker);
+            ticker.join();
+        }
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    /**
+     * Cached time is kept in UTC only, clock for other zone reads system time.
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return ZoneOffset.UTC.equals(zone) ? this : Clock.system(zone);
+    }
+
+    private void tick() {
+        while (running) {
+            millis = System.currentTimeMillis();
+            LockSupport.parkNanos(tickInNanos);
+        }
+    }
+}
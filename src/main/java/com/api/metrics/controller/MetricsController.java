@@ -0,0 +1,86 @@
+package com.api.metrics.controller;
+
+import com.api.metrics.service.HotPathMetrics;
+import com.api.statistics.service.StatisticsPipeline;
+import com.api.statistics.service.StatisticsService;
+import com.api.transaction.service.IngestAdmission;
+import com.api.transaction.service.TransactionDeduplicator;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.inject.Inject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Controller exposing hot path metrics, in the same manner as actuator endpoints do.
+ */
+@RestController
+public class MetricsController {
+
+    @Inject
+    private HotPathMetrics metrics;
+
+    @Inject
+    private StatisticsService statisticsService;
+
+    @Inject
+    private IngestAdmission ingestAdmission;
+
+    @Inject
+    private TransactionDeduplicator deduplicator;
+
+    /**
+     * Present in pipeline mode only
+     */
+    @Inject
+    private Optional<StatisticsPipeline> statisticsPipeline;
+
+    /**
+     * @return transaction counters, latency summaries in micros, occupancy of statistics windows,
+     * admission control and deduplication counters and in pipeline mode depth of its ring
+     */
+    @RequestMapping(path = "/metrics", method = RequestMethod.GET)
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> transactions = new LinkedHashMap<>();
+        transactions.put("accepted", metrics.getAccepted());
+        transactions.put("late", metrics.getLate());
+        transactions.put("future", metrics.getFuture());
+        transactions.put("rejectedFuture", metrics.getRejectedFuture());
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("persist", metrics.getPersist().summarize());
+        latency.put("aggregate", metrics.getAggregate().summarize());
+        latency.put("read", metrics.getRead().summarize());
+        latency.put("cleanup", metrics.getCleanup().summarize());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", metrics.isEnabled());
+        result.put("transactions", transactions);
+        result.put("latency", latency);
+        result.put("evicted", metrics.getEvicted());
+        result.put("windows", statisticsService.getOccupancy());
+        Map<String, Object> admission = new LinkedHashMap<>();
+        admission.put("enabled", ingestAdmission.isEnabled());
+        admission.put("latencyMicros", ingestAdmission.getLatencyInMicros());
+        admission.put("throttled", ingestAdmission.getThrottledCount());
+        admission.put("rejected", ingestAdmission.getRejectedCount());
+        result.put("admission", admission);
+        Map<String, Object> dedup = new LinkedHashMap<>();
+        dedup.put("enabled", deduplicator.isEnabled());
+        dedup.put("duplicates", deduplicator.getDuplicateCount());
+        dedup.put("overflows", deduplicator.getOverflowCount());
+        result.put("dedup", dedup);
+        statisticsPipeline.ifPresent(pipeline -> {
+            Map<String, Object> ring = new LinkedHashMap<>();
+            ring.put("capacity", pipeline.getCapacity());
+            ring.put("depth", pipeline.getDepth());
+            ring.put("fullWaits", pipeline.getFullWaits());
+            ring.put("fullRejections", pipeline.getFullRejections());
+            result.put("pipeline", ring);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package com.api.metrics.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of transaction ingest and statistics reads. Everything is preallocated,
+ * so recording does not allocate: counters are {@link LongAdder}s and latencies go to {@link LatencyHistogram}s.
+ * Latency is measured by callers as
+ * <pre>
+ * long start = metrics.startTimer();
+ * ...
+ * metrics.recordPersist(start);
+ * </pre>
+ * If metrics are switched off(metrics.enabled property) clock is not read at all.
+ */
+@Component
+public class HotPathMetrics {
+
+    private final boolean enabled;
+
+    private final LatencyHistogram persist = new LatencyHistogram();
+
+    private final LatencyHistogram aggregate = new LatencyHistogram();
+
+    private final LatencyHistogram read = new LatencyHistogram();
+
+    private final LatencyHistogram cleanup = new LatencyHistogram();
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder late = new LongAdder();
+
+    private final LongAdder future = new LongAdder();
+
+    private final LongAdder rejectedFuture = new LongAdder();
+
+    private final LongAdder evicted = new LongAdder();
+
+    public HotPathMetrics() {
+        this(true);
+    }
+
+    @Inject
+    public HotPathMetrics(@Value("${metrics.enabled}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return start of measured operation in nanos, 0 if metrics are switched off
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Time of saving transactions to {@link com.api.transaction.repository.TransactionStore}
+     */
+    public void recordPersist(long start) {
+        if (enabled) {
+            persist.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Time of adding transactions to statistics windows
+     */
+    public void recordAggregate(long start) {
+        if (enabled) {
+            aggregate.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Time of calculating statistics
+     */
+    public void recordRead(long start) {
+        if (enabled) {
+            read.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Time of cleanup of old statistics and amount of buckets reset by it
+     */
+    public void recordCleanup(long start, int evictedBuckets) {
+        if (enabled) {
+            cleanup.record(System.nanoTime() - start);
+            evicted.add(evictedBuckets);
+        }
+    }
+
+    /**
+     * Counts transactions added to statistics(accepted), too old for statistics(late) and accepted ones with timestamp in the future.
+     */
+    public void countTransactions(int accepted, int late, int future) {
+        if (enabled) {
+            this.accepted.add(accepted);
+            this.late.add(late);
+            this.future.add(future);
+        }
+    }
+
+    /**
+     * Counts transactions rejected because their timestamp is later than clock skew tolerance allows.
+     */
+    public void countRejectedFuture(int rejected) {
+        if (enabled && rejected > 0) {
+            rejectedFuture.add(rejected);
+        }
+    }
+
+    public LatencyHistogram getPersist() {
+        return persist;
+    }
+
+    public LatencyHistogram getAggregate() {
+        return aggregate;
+    }
+
+    public LatencyHistogram getRead() {
+        return read;
+    }
+
+    public LatencyHistogram getCleanup() {
+        return cleanup;
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getLate() {
+        return late.sum();
+    }
+
+    public long getFuture() {
+        return future.sum();
+    }
+
+    public long getRejectedFuture() {
+        return rejectedFuture.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+}
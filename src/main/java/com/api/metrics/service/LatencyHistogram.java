@@ -0,0 +1,100 @@
+package com.api.metrics.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size histogram of latencies in nanos. Values below 16 ns have own buckets, bigger values are split by power of two
+ * and every power of two into 8 sub-buckets, so value reported for a bucket is within ~6% of recorded values.
+ * Recording increments one cell of preallocated array and does not allocate or lock, reading copies the cells.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+    private static final int LINEAR_EXPONENT = 4;
+
+    static final int SIZE = LINEAR_BUCKETS + (63 - LINEAR_EXPONENT) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(indexOf(nanos));
+        totalNanos.add(nanos);
+        long current;
+        while (nanos > (current = max.get())) {
+            if (max.compareAndSet(current, nanos)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return count, mean, max and p50, p90, p99, p99.9 of recorded latencies in micros
+     */
+    public LatencySummary summarize() {
+        long[] snapshot = new long[SIZE];
+        long count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        LatencySummary summary = new LatencySummary();
+        summary.setCount(count);
+        if (count == 0) {
+            return summary;
+        }
+        summary.setMean(totalNanos.sum() / (double) count / 1000);
+        summary.setMax(max.get() / 1000.0);
+        summary.setP50(percentile(snapshot, count, 50) / 1000.0);
+        summary.setP90(percentile(snapshot, count, 90) / 1000.0);
+        summary.setP99(percentile(snapshot, count, 99) / 1000.0);
+        summary.setP999(percentile(snapshot, count, 99.9) / 1000.0);
+        return summary;
+    }
+
+    static int indexOf(long nanos) {
+        if (nanos < LINEAR_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return middle of the range of latencies counted in given bucket
+     */
+    static double valueOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int exponent = LINEAR_EXPONENT + (index - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return Math.scalb(1.0 + (subBucket + 0.5) / SUB_BUCKETS, exponent);
+    }
+
+    private double percentile(long[] snapshot, long count, double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+}
@@ -0,0 +1,23 @@
+package com.api.server;
+
+import io.undertow.UndertowOptions;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * When ingest admission control is switched on(transactions.admission.enabled), Undertow records start time of every request,
+ * so latency measured by {@link com.api.transaction.service.IngestAdmission} includes time request waited for worker thread,
+ * which is where requests pile up under overload, not only time of handling it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "transactions.admission.enabled", havingValue = "true")
+public class AdmissionConfiguration {
+
+    @Bean
+    public WebServerFactoryCustomizer<UndertowServletWebServerFactory> requestStartTime() {
+        return factory -> factory.addBuilderCustomizers(builder -> builder.setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, true));
+    }
+}
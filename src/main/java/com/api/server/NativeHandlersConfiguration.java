@@ -0,0 +1,34 @@
+package com.api.server;
+
+import com.api.statistics.controller.NativeStatisticsHandler;
+import com.api.statistics.controller.StatisticsResponseCache;
+import com.api.transaction.controller.NativeTransactionHandler;
+import com.api.transaction.service.AsyncTransactionPersister;
+import com.api.transaction.service.IngestAdmission;
+import com.api.transaction.service.LeanTransactionSaveService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.undertow.UndertowServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Non-blocking serving mode(nativehandlers.enabled property). Native handlers of POST /transactions and GET /statistics
+ * are put in front of servlet deployment, so these requests are served on Undertow IO threads(server.undertow.io-threads,
+ * one per core by default) and never take worker thread. All other endpoints are still served by Spring MVC.
+ */
+@Configuration
+@ConditionalOnProperty(name = "nativehandlers.enabled", havingValue = "true")
+public class NativeHandlersConfiguration {
+
+    @Bean
+    public WebServerFactoryCustomizer<UndertowServletWebServerFactory> nativeHandlers(LeanTransactionSaveService leanTransactionSaveService,
+                                                                                     AsyncTransactionPersister persister,
+                                                                                     IngestAdmission ingestAdmission,
+                                                                                     StatisticsResponseCache statisticsResponseCache) {
+        NativeTransactionHandler transactionHandler = new NativeTransactionHandler(leanTransactionSaveService, persister, ingestAdmission);
+        NativeStatisticsHandler statisticsHandler = new NativeStatisticsHandler(statisticsResponseCache);
+        return factory -> factory.addDeploymentInfoCustomizers(deploymentInfo -> deploymentInfo.addInitialHandlerChainWrapper(
+                next -> new NativeRoutingHandler(transactionHandler, statisticsHandler, next)));
+    }
+}
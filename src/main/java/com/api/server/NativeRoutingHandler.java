@@ -0,0 +1,37 @@
+package com.api.server;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Methods;
+
+/**
+ * First handler of Undertow handler chain, runs on IO thread. POST /transactions and GET /statistics without parameters
+ * are served by native handlers right here, all other requests go further to servlet deployment(Spring MVC),
+ * which dispatches them to worker threads.
+ */
+class NativeRoutingHandler implements HttpHandler {
+
+    private final HttpHandler transactionHandler;
+
+    private final HttpHandler statisticsHandler;
+
+    private final HttpHandler next;
+
+    NativeRoutingHandler(HttpHandler transactionHandler, HttpHandler statisticsHandler, HttpHandler next) {
+        this.transactionHandler = transactionHandler;
+        this.statisticsHandler = statisticsHandler;
+        this.next = next;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String path = exchange.getRequestPath();
+        if ("/transactions".equals(path) && Methods.POST.equals(exchange.getRequestMethod())) {
+            transactionHandler.handleRequest(exchange);
+        } else if ("/statistics".equals(path) && Methods.GET.equals(exchange.getRequestMethod()) && exchange.getQueryString().isEmpty()) {
+            statisticsHandler.handleRequest(exchange);
+        } else {
+            next.handleRequest(exchange);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.api.statistics.controller;
+
+/**
+ * JSON of statistics for the last statistics.periodinsec, encoded once and sent as is to every client
+ * until statistics changes, see {@link StatisticsResponseCache}.
+ */
+public final class EncodedStatistics {
+
+    private final long openSlot;
+
+    private final long version;
+
+    private final String eTag;
+
+    private final byte[] body;
+
+    EncodedStatistics(long openSlot, long version, String eTag, byte[] body) {
+        this.openSlot = openSlot;
+        this.version = version;
+        this.eTag = eTag;
+        this.body = body;
+    }
+
+    boolean isFor(long openSlot, long version) {
+        return this.openSlot == openSlot && this.version == version;
+    }
+
+    /**
+     * @return quoted entity tag of the body
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return encoded JSON, shared by all requests, so it should not be changed
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Weak comparison of If-None-Match header, as required for GET: W/ prefix of tags is ignored.
+     *
+     * @param ifNoneMatch value of If-None-Match header, may be null
+     * @return true if client already has this body, so 304 can be sent instead
+     */
+    public boolean isMatchedBy(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.api.statistics.controller;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Native Undertow handler of GET /statistics without parameters, used instead of Spring MVC when nativehandlers.enabled is set.
+ * Statistics is read from memory only, so it is served on IO thread without dispatching to worker thread.
+ * Body is taken from {@link StatisticsResponseCache}, and 304 is sent if If-None-Match has its ETag.
+ */
+public class NativeStatisticsHandler implements HttpHandler {
+
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    private final StatisticsResponseCache statisticsResponseCache;
+
+    public NativeStatisticsHandler(StatisticsResponseCache statisticsResponseCache) {
+        this.statisticsResponseCache = statisticsResponseCache;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        EncodedStatistics encoded = statisticsResponseCache.get();
+        exchange.getResponseHeaders().put(Headers.ETAG, encoded.getETag());
+        if (encoded.isMatchedBy(exchange.getRequestHeaders().getFirst(Headers.IF_NONE_MATCH))) {
+            exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+            exchange.endExchange();
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, CONTENT_TYPE);
+        exchange.getResponseSender().send(ByteBuffer.wrap(encoded.getBody()));
+    }
+}
@@ -0,0 +1,29 @@
+package com.api.statistics.controller;
+
+import com.api.statistics.service.ClusterStatistics;
+import com.api.statistics.service.StatisticsAggregator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.inject.Inject;
+
+/**
+ * Controller serving statistics merged from several instances, exists in aggregator mode only.
+ */
+@RestController
+@ConditionalOnProperty(name = "statistics.aggregator.enabled", havingValue = "true")
+public class StatisticsAggregatorController {
+
+    @Inject
+    private StatisticsAggregator statisticsAggregator;
+
+    /**
+     * @return statistics for the last statistics.periodinsec of this instance and its peers, with amount of peers merged and their staleness
+     */
+    @RequestMapping(path = "/statistics/cluster", method = RequestMethod.GET)
+    public ClusterStatistics getClusterStatistics() {
+        return statisticsAggregator.getStatistics();
+    }
+}
@@ -1,11 +1,29 @@
 package com.api.statistics.controller;
 
+import com.api.statistics.service.Dimension;
+import com.api.statistics.service.DimensionStatisticsService;
+import com.api.statistics.service.HeavyHitter;
 import com.api.statistics.service.PeriodStatistics;
 import com.api.statistics.service.StatisticsService;
+import com.api.statistics.service.UnsupportedDimensionException;
+import com.api.statistics.service.UnsupportedWindowException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Controller for endpoints related to statistics data
@@ -13,11 +31,131 @@ import javax.inject.Inject;
 @RestController
 public class StatisticsController {
 
+    private static final Pattern WINDOW_PATTERN = Pattern.compile("(\\d{1,9})(ms|s|m|h)");
+
+    private static final int MAX_TOP = 1000;
+
     @Inject
     private StatisticsService statisticsService;
 
+    @Inject
+    private DimensionStatisticsService dimensionStatisticsService;
+
+    @Inject
+    private StatisticsStreamPublisher statisticsStreamPublisher;
+
+    @Inject
+    private StatisticsResponseCache statisticsResponseCache;
+
+    /**
+     * @param window period to return statistics for, e.g. 1s, 15m, 1h, 24h. If it is not given statistics.periodinsec is used
+     * @param from   start of the range to return statistics for, counting back from now, e.g. -300s. If it is given window is ignored
+     * @param to     end of the range, counting back from now, e.g. -120s. If it is not given range ends now
+     * @param percentiles whether p50, p90 and p99 of amounts should be returned, supported for windows only, not for ranges
+     * @param ifNoneMatch ETag of statistics client already has. It is checked only for request without parameters,
+     *                    whose response is cached by {@link StatisticsResponseCache}, then 304 is returned if statistics did not change
+     */
     @RequestMapping(path = "/statistics")
-    public PeriodStatistics getRecentStatistics() {
-        return statisticsService.getStatisticsForLastSeconds();
+    public ResponseEntity<?> getRecentStatistics(@RequestParam(name = "window", required = false) String window,
+                                                 @RequestParam(name = "from", required = false) String from,
+                                                 @RequestParam(name = "to", required = false) String to,
+                                                 @RequestParam(name = "percentiles", defaultValue = "false") boolean percentiles,
+                                                 @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        if (from != null && percentiles) {
+            throw new UnsupportedWindowException("Percentiles can be calculated only for window, not for range");
+        }
+        if (from != null) {
+            return ResponseEntity.ok(statisticsService.getStatisticsBetween(parseMoment(from), to == null ? 0 : parseMoment(to)));
+        }
+        if (window == null && !percentiles) {
+            EncodedStatistics encoded = statisticsResponseCache.get();
+            if (encoded.isMatchedBy(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(encoded.getETag()).build();
+            }
+            return ResponseEntity.ok().eTag(encoded.getETag()).contentType(MediaType.APPLICATION_JSON_UTF8).body(encoded.getBody());
+        }
+        return ResponseEntity.ok(statisticsService.getStatisticsForLast(window == null ? statisticsService.getPeriodInMillis() : parseWindow(window), percentiles));
+    }
+
+    /**
+     * @param by  account, merchant or currency
+     * @param key value of the dimension, e.g. merchant id
+     * @return statistics for the last statistics.periodinsec of transactions with given key
+     */
+    @RequestMapping(path = "/statistics/dimension", method = RequestMethod.GET)
+    public PeriodStatistics getDimensionStatistics(@RequestParam(name = "by") String by,
+                                                   @RequestParam(name = "key") String key) {
+        return dimensionStatisticsService.getStatistics(Dimension.parse(by), key);
+    }
+
+    /**
+     * @param by account, merchant or currency
+     * @param k  how many keys to return, from 1 to 1000
+     * @return keys of given dimension with the most transactions recently, from the most frequent
+     */
+    @RequestMapping(path = "/statistics/top", method = RequestMethod.GET)
+    public List<HeavyHitter> getTopKeys(@RequestParam(name = "by") String by,
+                                        @RequestParam(name = "k", defaultValue = "10") int k) {
+        if (k < 1 || k > MAX_TOP) {
+            throw new UnsupportedDimensionException("k should be from 1 to " + MAX_TOP + ", but was " + k);
+        }
+        return dimensionStatisticsService.getTop(Dimension.parse(by), k);
+    }
+
+    /**
+     * Binary state of all buckets of the main window, pulled by aggregator instance(statistics.aggregator properties) to merge
+     * statistics of several instances.
+     */
+    @RequestMapping(path = "/statistics/state", method = RequestMethod.GET)
+    public void getState(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        statisticsService.writeState(response.getOutputStream());
+    }
+
+    /**
+     * Server-Sent Events stream of statistics for the last statistics.periodinsec, pushed every statistics.stream.tickinmillis.
+     *
+     * @return stream or 503 if there are too many clients already
+     */
+    @RequestMapping(path = "/statistics/stream", method = RequestMethod.GET)
+    public ResponseEntity<SseEmitter> streamStatistics() {
+        SseEmitter emitter = statisticsStreamPublisher.subscribe();
+        if (emitter == null) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(emitter, HttpStatus.OK);
+    }
+
+    /**
+     * Parses moment in the past like -300s, 0 means now.
+     *
+     * @return how many millis ago
+     */
+    static long parseMoment(String moment) {
+        if ("0".equals(moment)) {
+            return 0;
+        }
+        if (!moment.startsWith("-")) {
+            throw new UnsupportedWindowException("Moment should be in the past, e.g. -300s, but was " + moment);
+        }
+        return parseWindow(moment.substring(1));
+    }
+
+    static long parseWindow(String window) {
+        Matcher matcher = WINDOW_PATTERN.matcher(window);
+        if (!matcher.matches()) {
+            throw new UnsupportedWindowException("Window should be a number followed by ms, s, m or h, but was " + window);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "h":
+                return amount * 60 * 60 * 1000;
+            case "m":
+                return amount * 60 * 1000;
+            case "s":
+                return amount * 1000;
+            default:
+                return amount;
+        }
     }
 }
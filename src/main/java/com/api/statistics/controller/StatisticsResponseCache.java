@@ -0,0 +1,53 @@
+package com.api.statistics.controller;
+
+import com.api.statistics.service.StatisticsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps JSON of statistics for the last statistics.periodinsec encoded, so GET /statistics without parameters does not
+ * calculate and serialize it for every request. Encoded body is tagged with open slot of the window and update version of
+ * {@link StatisticsService}, and it is encoded again only when one of them changed: after new transactions were added or
+ * when window moved by one slot. Between them all requests get the same bytes, or 304 if their If-None-Match has its ETag.
+ * <p>
+ * ETag is made of instance id, open slot and version, so tags of other instances and of previous runs never match.
+ * If several requests find body outdated at the same time, each of them encodes it, and the last one stays in the cache.
+ */
+@Component
+public class StatisticsResponseCache {
+
+    private final StatisticsService statisticsService;
+
+    private final ObjectMapper objectMapper;
+
+    private final String instanceId = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+
+    private volatile EncodedStatistics encoded;
+
+    @Inject
+    public StatisticsResponseCache(StatisticsService statisticsService, ObjectMapper objectMapper) {
+        this.statisticsService = statisticsService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return encoded statistics for the last statistics.periodinsec, not older than update version at the moment of the call
+     */
+    public EncodedStatistics get() throws JsonProcessingException {
+        long version = statisticsService.getUpdateVersion();
+        long openSlot = statisticsService.getOpenSlot();
+        EncodedStatistics current = encoded;
+        if (current != null && current.isFor(openSlot, version)) {
+            return current;
+        }
+        byte[] body = objectMapper.writeValueAsBytes(statisticsService.getStatisticsForLastSeconds());
+        current = new EncodedStatistics(openSlot, version,
+                "\"" + instanceId + "-" + Long.toHexString(openSlot) + "-" + Long.toHexString(version) + "\"", body);
+        encoded = current;
+        return current;
+    }
+}
@@ -0,0 +1,111 @@
+package com.api.statistics.controller;
+
+import com.api.statistics.service.StatisticsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes statistics to /statistics/stream clients. Once per tick statistics is calculated and serialized once,
+ * and the same bytes are handed over to every client, so N clients cost one calculation and N writes instead of N calculations.
+ * Writes are done by small sender pool, publisher never waits for clients, see {@link StreamSubscriber}.
+ * If statistics.stream.onchange is set, statistics is pushed only when it differs from the previously pushed one.
+ */
+@Component
+public class StatisticsStreamPublisher {
+
+    private final StatisticsService statisticsService;
+
+    private final ObjectMapper objectMapper;
+
+    private final boolean onChange;
+
+    private final long timeoutInMillis;
+
+    private final int maxSubscribers;
+
+    private final CopyOnWriteArrayList<StreamSubscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService senders;
+
+    private volatile byte[] lastPublished;
+
+    @Inject
+    public StatisticsStreamPublisher(StatisticsService statisticsService, ObjectMapper objectMapper,
+                                     @Value("${statistics.stream.onchange}") boolean onChange,
+                                     @Value("${statistics.stream.timeoutinmillis}") long timeoutInMillis,
+                                     @Value("${statistics.stream.maxsubscribers}") int maxSubscribers,
+                                     @Value("${statistics.stream.senderthreads}") int senderThreads) {
+        this.statisticsService = statisticsService;
+        this.objectMapper = objectMapper;
+        this.onChange = onChange;
+        this.timeoutInMillis = timeoutInMillis;
+        this.maxSubscribers = maxSubscribers;
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, task -> {
+            Thread thread = new Thread(task, "statistics-stream-sender-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers new client, it gets the last published statistics right away and then statistics of every tick.
+     *
+     * @return emitter of the client or null if there are too many clients already
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutInMillis);
+        StreamSubscriber subscriber = new StreamSubscriber(emitter, subscribers::remove);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        subscribers.add(subscriber);
+        byte[] last = lastPublished;
+        if (last != null) {
+            subscriber.offer(last, senders);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedRateString = "${statistics.stream.tickinmillis}")
+    public void publish() throws JsonProcessingException {
+        if (subscribers.isEmpty()) {
+            lastPublished = null;
+            return;
+        }
+        byte[] statistics = objectMapper.writeValueAsBytes(statisticsService.getStatisticsForLastSeconds());
+        if (onChange && Arrays.equals(statistics, lastPublished)) {
+            return;
+        }
+        lastPublished = statistics;
+        for (StreamSubscriber subscriber : subscribers) {
+            subscriber.offer(statistics, senders);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (StreamSubscriber subscriber : subscribers) {
+            subscriber.getEmitter().complete();
+        }
+        senders.shutdownNow();
+    }
+}
@@ -0,0 +1,82 @@
+package com.api.statistics.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * One client of /statistics/stream. Publisher only puts the latest serialized statistics here and returns,
+ * sending is done by sender pool. If client is slow and previous event is still being sent, newer statistics replaces
+ * not sent one, so slow client gets fewer events, but always the latest statistics, and nothing is queued for it.
+ */
+class StreamSubscriber {
+
+    private final SseEmitter emitter;
+
+    private final Consumer<StreamSubscriber> onClose;
+
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+
+    /**
+     * True while sending task is scheduled or running, so only one task sends to the client at a time
+     */
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    StreamSubscriber(SseEmitter emitter, Consumer<StreamSubscriber> onClose) {
+        this.emitter = emitter;
+        this.onClose = onClose;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * Hands over new statistics to the client without waiting for it to be sent.
+     */
+    void offer(byte[] statistics, Executor senders) {
+        if (closed) {
+            return;
+        }
+        pending.set(statistics);
+        if (sending.compareAndSet(false, true)) {
+            senders.execute(this::drain);
+        }
+    }
+
+    void close() {
+        if (!closed) {
+            closed = true;
+            onClose.accept(this);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            byte[] statistics = pending.getAndSet(null);
+            if (statistics == null) {
+                sending.set(false);
+                // statistics could be offered after it was checked, but before flag was cleared
+                if (pending.get() == null || !sending.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                emitter.send(SseEmitter.event().data(statistics, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                close();
+                emitter.completeWithError(e);
+                sending.set(false);
+                return;
+            }
+        }
+    }
+}
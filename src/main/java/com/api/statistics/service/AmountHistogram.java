@@ -0,0 +1,83 @@
+package com.api.statistics.service;
+
+/**
+ * Layout of fixed size log-linear histogram of transaction amounts(the same idea as in HdrHistogram).
+ * Amounts are split into ranges by power of two, and every range into {@link #SUB_BUCKETS} equal sub-buckets,
+ * so relative error of the value reported for a bucket is not bigger than 1 / (2 * {@link #SUB_BUCKETS}), ~3%.
+ * Amounts from 2^{@link #MIN_EXPONENT}(~0.008) to 2^({@link #MAX_EXPONENT} + 1)(~10^12) are distinguished,
+ * smaller(including zero and negative) amounts go to the first bucket and bigger ones to the last bucket.
+ * Histograms are just counts per bucket index, so they can be merged by adding counts.
+ */
+final class AmountHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    static final int MIN_EXPONENT = -7;
+
+    static final int MAX_EXPONENT = 39;
+
+    /**
+     * Amount of buckets in histogram: underflow bucket, SUB_BUCKETS for each exponent and overflow bucket
+     */
+    static final int SIZE = (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS + 2;
+
+    private AmountHistogram() {
+    }
+
+    static int indexOf(double amount) {
+        if (!(amount > 0)) {
+            return 0;
+        }
+        int exponent = Math.getExponent(amount);
+        if (exponent < MIN_EXPONENT) {
+            return 0;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return SIZE - 1;
+        }
+        int subBucket = (int) (Double.doubleToRawLongBits(amount) >>> (52 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return middle of the range of amounts counted in given bucket
+     */
+    static double valueOf(int index) {
+        if (index == 0) {
+            return 0;
+        }
+        if (index == SIZE - 1) {
+            return Math.scalb(1.0, MAX_EXPONENT + 1);
+        }
+        int exponent = MIN_EXPONENT + (index - 1) / SUB_BUCKETS;
+        int subBucket = (index - 1) % SUB_BUCKETS;
+        return Math.scalb(1.0 + (subBucket + 0.5) / SUB_BUCKETS, exponent);
+    }
+
+    /**
+     * Finds value of given percentile in histogram. Value is clamped to [min, max], as far as they are known exactly.
+     *
+     * @param counts     histogram
+     * @param percentile percentile from 0 to 100
+     */
+    static double percentile(long[] counts, double percentile, double min, double max) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+            if (seen >= rank) {
+                return Math.min(max, Math.max(min, valueOf(index)));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,39 @@
+package com.api.statistics.service;
+
+/**
+ * Statistics merged from windows of this instance and its peers, see {@link StatisticsAggregator}.
+ * Besides statistics it tells how many peers are configured, how many of them had fresh enough state
+ * and how old the oldest merged state was.
+ */
+public class ClusterStatistics extends PeriodStatistics {
+
+    private int peers;
+
+    private int freshPeers;
+
+    private long stalenessInMillis;
+
+    public int getPeers() {
+        return peers;
+    }
+
+    public void setPeers(int peers) {
+        this.peers = peers;
+    }
+
+    public int getFreshPeers() {
+        return freshPeers;
+    }
+
+    public void setFreshPeers(int freshPeers) {
+        this.freshPeers = freshPeers;
+    }
+
+    public long getStalenessInMillis() {
+        return stalenessInMillis;
+    }
+
+    public void setStalenessInMillis(long stalenessInMillis) {
+        this.stalenessInMillis = stalenessInMillis;
+    }
+}
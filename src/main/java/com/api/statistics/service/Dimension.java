@@ -0,0 +1,44 @@
+package com.api.statistics.service;
+
+import com.api.transaction.repository.BankTransaction;
+
+/**
+ * Optional attributes of transaction statistics is broken down by.
+ */
+public enum Dimension {
+    ACCOUNT {
+        @Override
+        String keyOf(BankTransaction bankTransaction) {
+            return bankTransaction.getAccount();
+        }
+    },
+    MERCHANT {
+        @Override
+        String keyOf(BankTransaction bankTransaction) {
+            return bankTransaction.getMerchant();
+        }
+    },
+    CURRENCY {
+        @Override
+        String keyOf(BankTransaction bankTransaction) {
+            return bankTransaction.getCurrency();
+        }
+    };
+
+    /**
+     * @return value of this dimension in given transaction, null if it is not set
+     */
+    abstract String keyOf(BankTransaction bankTransaction);
+
+    /**
+     * @throws UnsupportedDimensionException if there is no such dimension
+     */
+    public static Dimension parse(String name) {
+        for (Dimension dimension : values()) {
+            if (dimension.name().equalsIgnoreCase(name)) {
+                return dimension;
+            }
+        }
+        throw new UnsupportedDimensionException("Statistics can be broken down only by account, merchant or currency, but was " + name);
+    }
+}
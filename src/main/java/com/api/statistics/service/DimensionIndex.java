@@ -0,0 +1,153 @@
+package com.api.statistics.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of one dimension: {@link KeyWindow} per key and {@link HeavyHitters} of the dimension.
+ * Amount of key windows has hard cap. Keys without transactions in the window are evicted by {@link #evictIdle(long)},
+ * which is also run when cap is reached(not more often than once per slot). If cap is reached anyway, new keys
+ * are not given windows(they are counted as untracked), but they are still counted by heavy hitters.
+ * <p>
+ * Window is removed only if it is still idle when map entry is locked, but writer which got window just before it was removed
+ * can still add transaction to it. So removed windows are kept until the next eviction, which moves such late transactions
+ * to the current window of their key. Only writer delayed for whole eviction interval can lose transaction.
+ */
+class DimensionIndex {
+
+    private final ConcurrentHashMap<String, KeyWindow> windows = new ConcurrentHashMap<>();
+
+    private final AtomicInteger keys = new AtomicInteger();
+
+    private final AtomicLong lastEvictionSlot = new AtomicLong(Long.MIN_VALUE);
+
+    private final LongAdder untracked = new LongAdder();
+
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * Windows removed by the last eviction, guarded by this
+     */
+    private Map<String, KeyWindow> removed = new HashMap<>();
+
+    /**
+     * First slot of the window at the last eviction, transactions since it in removed windows are late ones, guarded by this
+     */
+    private long removedSince;
+
+    private final int slots;
+
+    private final int maxKeys;
+
+    private final HeavyHitters heavyHitters;
+
+    DimensionIndex(int slots, int maxKeys, HeavyHitters heavyHitters) {
+        this.slots = slots;
+        this.maxKeys = maxKeys;
+        this.heavyHitters = heavyHitters;
+    }
+
+    /**
+     * @param firstSlot first slot of the window, keys idle since it can be evicted
+     */
+    void add(String key, long epochSlot, double amount, long firstSlot, long now) {
+        heavyHitters.add(key, amount, now);
+        KeyWindow window = windows.get(key);
+        if (window == null) {
+            window = createWindow(key, epochSlot, firstSlot);
+            if (window == null) {
+                untracked.increment();
+                return;
+            }
+        }
+        window.add(epochSlot, amount);
+    }
+
+    /**
+     * @return null if key is not tracked
+     */
+    KeyWindow getWindow(String key) {
+        return windows.get(key);
+    }
+
+    List<HeavyHitter> top(int k, long now) {
+        return heavyHitters.top(k, now);
+    }
+
+    /**
+     * Removes windows of keys without transactions since given slot, and moves late transactions of windows removed last time.
+     */
+    synchronized int evictIdle(long firstSlot) {
+        for (Map.Entry<String, KeyWindow> entry : removed.entrySet()) {
+            if (!entry.getValue().isIdleSince(removedSince)) {
+                KeyWindow window = putWindow(entry.getKey());
+                if (window != null) {
+                    entry.getValue().moveTo(window, removedSince);
+                }
+            }
+        }
+        Map<String, KeyWindow> idle = new HashMap<>();
+        for (String key : windows.keySet()) {
+            windows.computeIfPresent(key, (ignored, window) -> {
+                if (!window.isIdleSince(firstSlot)) {
+                    return window;
+                }
+                idle.put(key, window);
+                keys.decrementAndGet();
+                return null;
+            });
+        }
+        evicted.add(idle.size());
+        removed = idle;
+        removedSince = firstSlot;
+        return idle.size();
+    }
+
+    int getKeyCount() {
+        return keys.get();
+    }
+
+    long getUntrackedCount() {
+        return untracked.sum();
+    }
+
+    long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    private KeyWindow createWindow(String key, long epochSlot, long firstSlot) {
+        KeyWindow window = putWindow(key);
+        if (window != null) {
+            return window;
+        }
+        long lastEviction = lastEvictionSlot.get();
+        if (lastEviction == epochSlot || !lastEvictionSlot.compareAndSet(lastEviction, epochSlot) || evictIdle(firstSlot) == 0) {
+            return windows.get(key);
+        }
+        return putWindow(key);
+    }
+
+    /**
+     * Reserves place for new key before window is created, so cap is never exceeded.
+     *
+     * @return window of the key, null if key has no window and cap is reached
+     */
+    private KeyWindow putWindow(String key) {
+        if (keys.incrementAndGet() > maxKeys) {
+            keys.decrementAndGet();
+            return windows.get(key);
+        }
+        KeyWindow window = new KeyWindow(slots);
+        KeyWindow existing = windows.putIfAbsent(key, window);
+        if (existing != null) {
+            keys.decrementAndGet();
+            return existing;
+        }
+        return window;
+    }
+}
@@ -0,0 +1,137 @@
+package com.api.statistics.service;
+
+import com.api.transaction.repository.BankTransaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service keeping statistics of the window per account, merchant and currency of transactions.
+ * Every key gets compact ring of #slots buckets(for 60 seconds and 12 slots one bucket is 5 seconds),
+ * so window start is accurate up to one bucket, plus buckets for transactions up to statistics.maxfutureinmillis ahead of now. Memory is bounded by statistics.dimensions.maxkeys rings per dimension
+ * (~2 KB each) and fixed amount of heavy hitters counters, see {@link DimensionIndex} and {@link HeavyHitters}.
+ * Dimensions are kept for single transactions only.
+ */
+@Component
+public class DimensionStatisticsService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final Map<Dimension, DimensionIndex> indexes = new EnumMap<>(Dimension.class);
+
+    private final boolean enabled;
+
+    private final long periodInMillis;
+
+    private final long slotWidthInMillis;
+
+    private final Clock clock;
+
+    public DimensionStatisticsService(boolean enabled, int statisticPeriodFromNow, int slots, int maxKeys, int stripes, int capacityPerStripe) {
+        this(enabled, statisticPeriodFromNow, slots, maxKeys, stripes, capacityPerStripe, Clock.systemUTC());
+    }
+
+    public DimensionStatisticsService(boolean enabled, int statisticPeriodFromNow, int slots, int maxKeys, int stripes, int capacityPerStripe,
+                                      Clock clock) {
+        this(enabled, statisticPeriodFromNow, slots, maxKeys, stripes, capacityPerStripe, 0, clock);
+    }
+
+    @Inject
+    public DimensionStatisticsService(@Value("${statistics.dimensions.enabled}") boolean enabled,
+                                      @Value("${statistics.periodinsec}") int statisticPeriodFromNow,
+                                      @Value("${statistics.dimensions.slots}") int slots,
+                                      @Value("${statistics.dimensions.maxkeys}") int maxKeys,
+                                      @Value("${statistics.dimensions.topk.stripes}") int stripes,
+                                      @Value("${statistics.dimensions.topk.capacity}") int capacityPerStripe,
+                                      @Value("${statistics.maxfutureinmillis}") long maxFutureInMillis,
+                                      Clock clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.periodInMillis = statisticPeriodFromNow * 1000L;
+        if (slots <= 0 || periodInMillis % slots != 0) {
+            throw new IllegalArgumentException("Statistics period should be divisible to " + slots + " dimension slots");
+        }
+        this.slotWidthInMillis = periodInMillis / slots;
+        int futureSlots = (int) ((maxFutureInMillis + slotWidthInMillis - 1) / slotWidthInMillis);
+        for (Dimension dimension : Dimension.values()) {
+            indexes.put(dimension, new DimensionIndex(slots + futureSlots, maxKeys, new HeavyHitters(stripes, capacityPerStripe, periodInMillis)));
+        }
+    }
+
+    /**
+     * Adds transaction to statistics of every dimension it has key for. Transactions older than the window are ignored.
+     */
+    public void updateStatistics(BankTransaction bankTransaction) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.millis();
+        long timestamp = bankTransaction.getTimestamp();
+        if (now - timestamp > periodInMillis) {
+            return;
+        }
+        long slot = Math.floorDiv(timestamp, slotWidthInMillis);
+        long firstSlot = firstSlotOfWindow(now);
+        for (Map.Entry<Dimension, DimensionIndex> entry : indexes.entrySet()) {
+            String key = entry.getKey().keyOf(bankTransaction);
+            if (key != null && key.length() <= MAX_KEY_LENGTH) {
+                entry.getValue().add(key, slot, bankTransaction.getAmount(), firstSlot, now);
+            }
+        }
+    }
+
+    /**
+     * @return statistics of the window for transactions with given key, empty statistics if key has no transactions in the window
+     */
+    public PeriodStatistics getStatistics(Dimension dimension, String key) {
+        PeriodStatistics statistics = new PeriodStatistics();
+        KeyWindow window = indexes.get(dimension).getWindow(key);
+        if (window != null) {
+            window.collect(statistics, firstSlotOfWindow(clock.millis()));
+        }
+        return statistics;
+    }
+
+    /**
+     * @return up to k keys with the most transactions in the last one or two periods
+     */
+    public List<HeavyHitter> getTop(Dimension dimension, int k) {
+        return indexes.get(dimension).top(k, clock.millis());
+    }
+
+    /**
+     * Removes rings of keys without transactions in the window, runs every statistics.dimensions.evictionintervalinmillis.
+     *
+     * @return amount of removed keys
+     */
+    @Scheduled(fixedRateString = "${statistics.dimensions.evictionintervalinmillis}")
+    public int evictIdleKeys() {
+        long firstSlot = firstSlotOfWindow(clock.millis());
+        int evicted = 0;
+        for (DimensionIndex index : indexes.values()) {
+            evicted += index.evictIdle(firstSlot);
+        }
+        return evicted;
+    }
+
+    public int getKeyCount(Dimension dimension) {
+        return indexes.get(dimension).getKeyCount();
+    }
+
+    /**
+     * @return amount of transactions which were not added to key rings because cap of keys was reached
+     */
+    public long getUntrackedCount(Dimension dimension) {
+        return indexes.get(dimension).getUntrackedCount();
+    }
+
+    private long firstSlotOfWindow(long now) {
+        return Math.floorDiv(now - periodInMillis, slotWidthInMillis) + 1;
+    }
+}
@@ -0,0 +1,44 @@
+package com.api.statistics.service;
+
+/**
+ * Bean with one of the most frequent keys of a dimension. Count can be overestimated by not more than #error.
+ */
+public class HeavyHitter {
+
+    private String key;
+
+    private long count;
+
+    private double sum;
+
+    private long error;
+
+    public HeavyHitter(String key, long count, double sum, long error) {
+        this.key = key;
+        this.count = count;
+        this.sum = sum;
+        this.error = error;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    void merge(HeavyHitter other) {
+        count += other.count;
+        sum += other.sum;
+        error += other.error;
+    }
+}
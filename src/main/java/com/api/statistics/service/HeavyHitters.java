@@ -0,0 +1,214 @@
+package com.api.statistics.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate most frequent keys of one dimension, found by Space-Saving algorithm with fixed amount of counters:
+ * when new key comes and all counters are taken, counter with the smallest count is given to new key, and its count
+ * becomes the error bound of new key. Keys with real count above total / capacity are always kept.
+ * <p>
+ * Counters are split into stripes by hash of the key, each stripe has own lock, so hot keys of different stripes do not contend.
+ * Every key goes to one stripe only, so top keys are found by merging stripes without extra error.
+ * To follow the window, counters are started from scratch every period, and top keys are counted over current and previous period,
+ * so they cover between one and two periods.
+ * <p>
+ * Counters of a period are preallocated primitive arrays with open addressing index, and the two periods swap them,
+ * so update does not allocate anything under the stripe lock.
+ */
+class HeavyHitters {
+
+    private final Stripe[] stripes;
+
+    private final long periodInMillis;
+
+    HeavyHitters(int stripes, int capacityPerStripe, long periodInMillis) {
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(capacityPerStripe);
+        }
+        this.periodInMillis = periodInMillis;
+    }
+
+    void add(String key, double amount, long now) {
+        stripes[Math.floorMod(key.hashCode(), stripes.length)].add(key, amount, now / periodInMillis);
+    }
+
+    /**
+     * @return up to k keys with the biggest count, from the biggest
+     */
+    List<HeavyHitter> top(int k, long now) {
+        long period = now / periodInMillis;
+        List<HeavyHitter> hitters = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.collect(hitters, period);
+        }
+        hitters.sort((first, second) -> Long.compare(second.getCount(), first.getCount()));
+        return hitters.size() > k ? new ArrayList<>(hitters.subList(0, k)) : hitters;
+    }
+
+    private static class Stripe {
+
+        private long period = Long.MIN_VALUE;
+
+        private Counters current;
+
+        private Counters previous;
+
+        Stripe(int capacity) {
+            current = new Counters(capacity);
+            previous = new Counters(capacity);
+        }
+
+        synchronized void add(String key, double amount, long period) {
+            rotate(period);
+            current.add(key, amount);
+        }
+
+        synchronized void collect(List<HeavyHitter> hitters, long period) {
+            rotate(period);
+            Map<String, HeavyHitter> merged = new HashMap<>();
+            previous.mergeInto(merged);
+            current.mergeInto(merged);
+            hitters.addAll(merged.values());
+        }
+
+        /**
+         * Starts counters of new period, counters of the period just finished are kept as previous ones.
+         */
+        private void rotate(long period) {
+            if (period <= this.period) {
+                return;
+            }
+            if (period == this.period + 1) {
+                Counters finished = current;
+                current = previous;
+                previous = finished;
+            } else {
+                previous.clear();
+            }
+            current.clear();
+            this.period = period;
+        }
+    }
+
+    /**
+     * Counters of one stripe for one period. Counter of key is found through #index, hash table of counter numbers
+     * with linear probing, at least twice as big as amount of counters.
+     */
+    private static class Counters {
+
+        private static final int FREE = -1;
+
+        private final String[] keys;
+
+        private final long[] counts;
+
+        private final double[] sums;
+
+        private final long[] errors;
+
+        private final int[] index;
+
+        private final int mask;
+
+        private int size;
+
+        Counters(int capacity) {
+            keys = new String[capacity];
+            counts = new long[capacity];
+            sums = new double[capacity];
+            errors = new long[capacity];
+            index = new int[Integer.highestOneBit(Math.max(1, capacity)) * 4];
+            mask = index.length - 1;
+            Arrays.fill(index, FREE);
+        }
+
+        void add(String key, double amount) {
+            int position = find(key);
+            int counter = index[position];
+            if (counter == FREE) {
+                if (size < keys.length) {
+                    counter = size++;
+                    errors[counter] = 0;
+                    counts[counter] = 0;
+                } else {
+                    counter = smallest();
+                    remove(keys[counter]);
+                    position = find(key);
+                    errors[counter] = counts[counter];
+                }
+                keys[counter] = key;
+                sums[counter] = 0;
+                index[position] = counter;
+            }
+            counts[counter]++;
+            sums[counter] += amount;
+        }
+
+        void mergeInto(Map<String, HeavyHitter> merged) {
+            for (int i = 0; i < size; i++) {
+                HeavyHitter copy = new HeavyHitter(keys[i], counts[i], sums[i], errors[i]);
+                HeavyHitter existing = merged.putIfAbsent(keys[i], copy);
+                if (existing != null) {
+                    existing.merge(copy);
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(index, FREE);
+            size = 0;
+        }
+
+        private int smallest() {
+            int smallest = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[smallest]) {
+                    smallest = i;
+                }
+            }
+            return smallest;
+        }
+
+        /**
+         * @return position of the key in the index, or free position where it should be put
+         */
+        private int find(String key) {
+            int position = spread(key.hashCode()) & mask;
+            while (index[position] != FREE && !keys[index[position]].equals(key)) {
+                position = (position + 1) & mask;
+            }
+            return position;
+        }
+
+        /**
+         * Removes key from the index, moving keys probed after it back, so that probing does not stop at the freed position.
+         */
+        private void remove(String key) {
+            int free = find(key);
+            index[free] = FREE;
+            for (int position = (free + 1) & mask; index[position] != FREE; position = (position + 1) & mask) {
+                int home = spread(keys[index[position]].hashCode()) & mask;
+                // entry can be moved to free position if its home is not between free and its position
+                if ((position - home & mask) >= (position - free & mask)) {
+                    index[free] = index[position];
+                    index[position] = FREE;
+                    free = position;
+                }
+            }
+        }
+
+        /**
+         * Low bits of key hash also select the stripe, so all bits are mixed into low bits used here
+         */
+        private static int spread(int hash) {
+            int mixed = hash * 0x9e3779b9;
+            return mixed ^ mixed >>> 16;
+        }
+    }
+}
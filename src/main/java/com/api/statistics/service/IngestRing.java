@@ -0,0 +1,132 @@
+package com.api.statistics.service;
+
+import com.api.transaction.repository.TransactionBatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated multi-producer single-consumer ring of (timestamp, amount) events. Producer claims next sequence by CAS on #tail,
+ * writes event to primitive arrays and publishes it by ordered write of the sequence to #published slot. Consumer takes events
+ * in sequence order while they are published, and moves #head once per drained batch, which frees their slots for producers.
+ * Capacity is power of two, so slot of sequence is sequence & mask. Nothing is allocated on either side.
+ * Producer which has to do something else before event can be published(e.g. persist it) claims sequence first,
+ * and cancels it if event is dropped.
+ */
+final class IngestRing {
+
+    /**
+     * Timestamp of claimed sequence which was cancelled
+     */
+    private static final long CANCELLED = Long.MIN_VALUE;
+
+    private final long[] timestamps;
+
+    private final double[] amounts;
+
+    /**
+     * Sequence of the event last published to each slot, -1 if slot was never used
+     */
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    /**
+     * Next sequence to be claimed by producers
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next sequence to be taken by consumer, written by consumer only
+     */
+    private volatile long head;
+
+    IngestRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity should be power of two, but was " + capacity);
+        }
+        timestamps = new long[capacity];
+        amounts = new double[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return false if ring is full
+     */
+    boolean offer(long timestamp, double amount) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        publish(sequence, timestamp, amount);
+        return true;
+    }
+
+    /**
+     * Claims next sequence, which should then be either published or cancelled, consumer does not go past it until then.
+     *
+     * @return claimed sequence or -1 if ring is full
+     */
+    long claim() {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= timestamps.length) {
+                return -1;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        return sequence;
+    }
+
+    void publish(long sequence, long timestamp, double amount) {
+        int index = (int) sequence & mask;
+        timestamps[index] = timestamp;
+        amounts[index] = amount;
+        published.lazySet(index, sequence);
+    }
+
+    /**
+     * Publishes claimed sequence without event, consumer skips it.
+     */
+    void cancel(long sequence) {
+        publish(sequence, CANCELLED, 0);
+    }
+
+    /**
+     * Moves published events to given batch until it is full. Should be called by the single consumer thread only.
+     *
+     * @return amount of events moved
+     */
+    int drain(TransactionBatch batch) {
+        long sequence = head;
+        int drained = 0;
+        long start = sequence;
+        while (!batch.isFull() && published.get((int) sequence & mask) == sequence) {
+            int index = (int) sequence & mask;
+            if (timestamps[index] != CANCELLED) {
+                batch.add(timestamps[index], amounts[index]);
+                drained++;
+            }
+            sequence++;
+        }
+        if (sequence != start) {
+            head = sequence;
+        }
+        return drained;
+    }
+
+    /**
+     * @return amount of claimed events not taken by consumer yet
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return timestamps.length;
+    }
+}
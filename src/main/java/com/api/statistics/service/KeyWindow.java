@@ -0,0 +1,66 @@
+package com.api.statistics.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring of statistics of one dimension key(e.g. one merchant). It has the same layout as {@link StatisticsWindow}
+ * and keeps the same lock-free {@link WindowBucket}s(without histograms), so writers of one hot key do not contend either.
+ */
+class KeyWindow {
+
+    private final WindowBucket[] buckets;
+
+    /**
+     * The newest slot written, used to find idle keys
+     */
+    private final AtomicLong lastSlot = new AtomicLong(Long.MIN_VALUE);
+
+    KeyWindow(int size) {
+        buckets = new WindowBucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new WindowBucket(false);
+        }
+    }
+
+    void add(long epochSlot, double amount) {
+        bucketFor(epochSlot).add(epochSlot, amount);
+        if (epochSlot > lastSlot.get()) {
+            lastSlot.accumulateAndGet(epochSlot, Math::max);
+        }
+    }
+
+    void collect(PeriodStatistics statistics, long fromSlot) {
+        for (WindowBucket bucket : buckets) {
+            bucket.collect(statistics, fromSlot, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Adds data of slots since given one to another window of the same size.
+     */
+    void moveTo(KeyWindow window, long fromSlot) {
+        long last = lastSlot.get();
+        if (last < fromSlot) {
+            return;
+        }
+        for (long slot = Math.max(fromSlot, last - buckets.length + 1); slot <= last; slot++) {
+            PeriodStatistics statistics = new PeriodStatistics();
+            bucketFor(slot).collect(statistics, slot, slot);
+            if (statistics.getCount() > 0) {
+                window.bucketFor(slot).add(slot, statistics.getCount(), statistics.getSum(), statistics.getMax(), statistics.getMin());
+                window.lastSlot.accumulateAndGet(slot, Math::max);
+            }
+        }
+    }
+
+    /**
+     * @return true if nothing was written to the key since given slot
+     */
+    boolean isIdleSince(long epochSlot) {
+        return lastSlot.get() < epochSlot;
+    }
+
+    private WindowBucket bucketFor(long epochSlot) {
+        return buckets[(int) Math.floorMod(epochSlot, (long) buckets.length)];
+    }
+}
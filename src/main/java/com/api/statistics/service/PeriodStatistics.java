@@ -1,5 +1,7 @@
 package com.api.statistics.service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Bean containing data for any period. It is used to keep statistical data for transactions in a given second.
  * This class is also used when we accumulate statistical data from now back to some period(for given problem 60 seconds)
@@ -15,6 +17,18 @@ public class PeriodStatistics {
 
     private int count;
 
+    /**
+     * Percentiles of amounts, they are calculated only if requested, otherwise null and not shown
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p50;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p90;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p99;
+
     public PeriodStatistics() {
     }
 
@@ -66,6 +80,49 @@ public class PeriodStatistics {
         this.sum = sum;
     }
 
+    public Double getP50() {
+        return p50;
+    }
+
+    public void setP50(Double p50) {
+        this.p50 = p50;
+    }
+
+    public Double getP90() {
+        return p90;
+    }
+
+    public void setP90(Double p90) {
+        this.p90 = p90;
+    }
+
+    public Double getP99() {
+        return p99;
+    }
+
+    public void setP99(Double p99) {
+        this.p99 = p99;
+    }
+
+    /**
+     * Adds statistical data of some other period(e.g. one second bucket) to this one and recalculates average.
+     *
+     * @param count count of transactions in added period
+     * @param sum   sum of amounts in added period
+     * @param max   max amount in added period
+     * @param min   min amount in added period
+     */
+    public void accumulate(int count, double sum, double max, double min) {
+        if (count == 0) {
+            return;
+        }
+        this.count += count;
+        this.sum += sum;
+        this.max = this.max > max ? this.max : max;
+        this.min = this.min < min ? this.min : min;
+        this.avg = this.sum / this.count;
+    }
+
     public static class PeriodStatisticsBuilder {
         private double max;
 
@@ -0,0 +1,130 @@
+package com.api.statistics.service;
+
+/**
+ * Segment tree over buckets of {@link StatisticsWindow}, which answers statistics of any range of slots in O(log n).
+ * Every node keeps count, sum, max and min of its subtree, leaves are positions of the ring.
+ * <p>
+ * Writers do not touch the tree. {@link StatisticsWindow} marks bucket as changed after each write, and before query
+ * only changed leaves are updated, each in O(log n), so the tree follows writes incrementally and writers stay lock free.
+ * Leaf keeps data of the bucket only if bucket keeps the slot expected for that position in current window,
+ * so stale buckets and buckets of future slots are not counted. When window moves, positions of slots which left the window are updated too.
+ * Queries are serialized by the lock of the index.
+ */
+class SlotRangeIndex {
+
+    private final StatisticsWindow window;
+
+    private final int size;
+
+    private final long[] counts;
+
+    private final double[] sums;
+
+    private final double[] maxs;
+
+    private final double[] mins;
+
+    /**
+     * Open slot of the window when index was updated last time
+     */
+    private long indexedOpenSlot = Long.MIN_VALUE;
+
+    SlotRangeIndex(StatisticsWindow window) {
+        this.window = window;
+        this.size = window.size();
+        counts = new long[2 * size];
+        sums = new double[2 * size];
+        maxs = new double[2 * size];
+        mins = new double[2 * size];
+        for (int node = 0; node < 2 * size; node++) {
+            maxs[node] = Double.NEGATIVE_INFINITY;
+            mins[node] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Accumulates statistics of slots in [fromSlot, toSlot] range. Slots outside of the window ending with openSlot are ignored.
+     */
+    synchronized void query(PeriodStatistics statistics, long fromSlot, long toSlot, long openSlot) {
+        refresh(openSlot);
+        long from = Math.max(fromSlot, openSlot - size + 1);
+        long to = Math.min(toSlot, openSlot);
+        if (from > to) {
+            return;
+        }
+        int fromPosition = position(from);
+        int toPosition = position(to);
+        if (fromPosition <= toPosition) {
+            query(statistics, fromPosition, toPosition);
+        } else {
+            query(statistics, fromPosition, size - 1);
+            query(statistics, 0, toPosition);
+        }
+    }
+
+    private void refresh(long openSlot) {
+        if (openSlot != indexedOpenSlot) {
+            // positions of slots which came into the window since last refresh keep stale data
+            long from = Math.max(indexedOpenSlot + 1, openSlot - size + 1);
+            for (long slot = from; slot <= openSlot; slot++) {
+                update(position(slot), openSlot);
+            }
+            indexedOpenSlot = openSlot;
+        }
+        for (int word = 0; word < window.changedBucketWords(); word++) {
+            long changed = window.takeChangedBuckets(word);
+            while (changed != 0) {
+                update(word * 64 + Long.numberOfTrailingZeros(changed), openSlot);
+                changed &= changed - 1;
+            }
+        }
+    }
+
+    /**
+     * Reads bucket on given position of the ring into leaf and recalculates all parents of the leaf.
+     */
+    private void update(int position, long openSlot) {
+        long expectedSlot = openSlot - Math.floorMod(openSlot - position, (long) size);
+        PeriodStatistics bucket = new PeriodStatistics();
+        window.collectSlot(bucket, expectedSlot);
+        int node = position + size;
+        counts[node] = bucket.getCount();
+        sums[node] = bucket.getSum();
+        maxs[node] = bucket.getCount() == 0 ? Double.NEGATIVE_INFINITY : bucket.getMax();
+        mins[node] = bucket.getCount() == 0 ? Double.POSITIVE_INFINITY : bucket.getMin();
+        for (node >>= 1; node >= 1; node >>= 1) {
+            int left = 2 * node;
+            int right = left + 1;
+            counts[node] = counts[left] + counts[right];
+            sums[node] = sums[left] + sums[right];
+            maxs[node] = Math.max(maxs[left], maxs[right]);
+            mins[node] = Math.min(mins[left], mins[right]);
+        }
+    }
+
+    /**
+     * Bottom up query of the positions in [fromPosition, toPosition] range.
+     */
+    private void query(PeriodStatistics statistics, int fromPosition, int toPosition) {
+        int left = fromPosition + size;
+        int right = toPosition + size + 1;
+        while (left < right) {
+            if ((left & 1) == 1) {
+                accumulate(statistics, left++);
+            }
+            if ((right & 1) == 1) {
+                accumulate(statistics, --right);
+            }
+            left >>= 1;
+            right >>= 1;
+        }
+    }
+
+    private void accumulate(PeriodStatistics statistics, int node) {
+        statistics.accumulate((int) counts[node], sums[node], maxs[node], mins[node]);
+    }
+
+    private int position(long slot) {
+        return (int) Math.floorMod(slot, (long) size);
+    }
+}
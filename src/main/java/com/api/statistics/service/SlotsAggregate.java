@@ -0,0 +1,61 @@
+package com.api.statistics.service;
+
+/**
+ * Count, sum, max and min of a batch of transactions per slot, laid out like {@link StatisticsWindow}(entry of epochSlot % size).
+ * Not thread safe.
+ */
+class SlotsAggregate {
+
+    private final long[] slots;
+
+    private final int[] counts;
+
+    private final double[] sums;
+
+    private final double[] maxs;
+
+    private final double[] mins;
+
+    SlotsAggregate(int size) {
+        slots = new long[size];
+        counts = new int[size];
+        sums = new double[size];
+        maxs = new double[size];
+        mins = new double[size];
+    }
+
+    /**
+     * Adds transaction to the entry of its slot. If entry keeps data of other slot, that data is flushed to the window first.
+     */
+    void add(long epochSlot, double amount, StatisticsWindow window) {
+        int index = (int) Math.floorMod(epochSlot, (long) slots.length);
+        if (counts[index] != 0 && slots[index] != epochSlot) {
+            flush(index, window);
+        }
+        if (counts[index] == 0) {
+            slots[index] = epochSlot;
+            maxs[index] = amount;
+            mins[index] = amount;
+        } else {
+            maxs[index] = maxs[index] > amount ? maxs[index] : amount;
+            mins[index] = mins[index] < amount ? mins[index] : amount;
+        }
+        counts[index]++;
+        sums[index] += amount;
+        window.addToHistogram(epochSlot, amount);
+    }
+
+    void flushTo(StatisticsWindow window) {
+        for (int index = 0; index < slots.length; index++) {
+            if (counts[index] != 0) {
+                flush(index, window);
+            }
+        }
+    }
+
+    private void flush(int index, StatisticsWindow window) {
+        window.add(slots[index], counts[index], sums[index], maxs[index], mins[index]);
+        counts[index] = 0;
+        sums[index] = 0;
+    }
+}
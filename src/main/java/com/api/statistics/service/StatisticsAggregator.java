@@ -0,0 +1,191 @@
+package com.api.statistics.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregator mode: window state of every peer is pulled from its /statistics/state every statistics.aggregator.pullintervalinmillis,
+ * and statistics of the window is merged from local window and the latest states of peers. Buckets are aligned by epoch slot,
+ * so peers should have the same slot width(statistics.resolutioninmillis) and roughly synchronized clocks.
+ * State fetched more than statistics.aggregator.maxstalenessinmillis ago is not merged, so merged statistics is at most that old,
+ * and statistics of peer which is down disappears instead of being frozen.
+ * <p>
+ * Peers are pulled by own threads, one per peer, so slow peer delays neither other peers nor application scheduled tasks.
+ * State is read into one of two windows of the peer allocated with the layout of the local window, and state of other layout
+ * is rejected before its buckets are read. Windows swap on every pull, so merge reads window which is not written,
+ * unless it is slower than pull interval.
+ */
+@Component
+@ConditionalOnProperty(name = "statistics.aggregator.enabled", havingValue = "true")
+public class StatisticsAggregator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsAggregator.class);
+
+    private final StatisticsService statisticsService;
+
+    private final List<Peer> peers = new ArrayList<>();
+
+    private final long pullIntervalInMillis;
+
+    private final long maxStalenessInMillis;
+
+    private final int timeoutInMillis;
+
+    private final Clock clock;
+
+    private ScheduledExecutorService pullers;
+
+    public StatisticsAggregator(StatisticsService statisticsService, String peers, long pullIntervalInMillis, long maxStalenessInMillis,
+                                int timeoutInMillis) throws IOException {
+        this(statisticsService, peers, pullIntervalInMillis, maxStalenessInMillis, timeoutInMillis, Clock.systemUTC());
+    }
+
+    @Inject
+    public StatisticsAggregator(StatisticsService statisticsService,
+                                @Value("${statistics.aggregator.peers}") String peers,
+                                @Value("${statistics.aggregator.pullintervalinmillis}") long pullIntervalInMillis,
+                                @Value("${statistics.aggregator.maxstalenessinmillis}") long maxStalenessInMillis,
+                                @Value("${statistics.aggregator.timeoutinmillis}") int timeoutInMillis,
+                                Clock clock) throws IOException {
+        this.statisticsService = statisticsService;
+        for (String peer : peers.split(",")) {
+            String url = peer.trim();
+            if (!url.isEmpty()) {
+                this.peers.add(new Peer(new URL((url.endsWith("/") ? url : url + "/") + "statistics/state"),
+                        statisticsService.createAlignedWindow()));
+            }
+        }
+        this.pullIntervalInMillis = pullIntervalInMillis;
+        this.maxStalenessInMillis = maxStalenessInMillis;
+        this.timeoutInMillis = timeoutInMillis;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (peers.isEmpty()) {
+            return;
+        }
+        pullers = Executors.newScheduledThreadPool(peers.size(), runnable -> {
+            Thread thread = new Thread(runnable, "statistics-puller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Peer peer : peers) {
+            pullers.scheduleWithFixedDelay(() -> pull(peer), 0, pullIntervalInMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pullers != null) {
+            pullers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return statistics for the last statistics.periodinsec merged from local window and fresh states of peers
+     */
+    public ClusterStatistics getStatistics() {
+        long now = clock.millis();
+        ClusterStatistics statistics = new ClusterStatistics();
+        PeriodStatistics local = statisticsService.getStatisticsForLastSeconds();
+        statistics.accumulate(local.getCount(), local.getSum(), local.getMax(), local.getMin());
+        int fresh = 0;
+        long staleness = 0;
+        for (Peer peer : peers) {
+            PeerState state = peer.state;
+            if (state != null && now - state.fetchedAt <= maxStalenessInMillis) {
+                statisticsService.collectForLastSeconds(statistics, state.window, now);
+                fresh++;
+                staleness = Math.max(staleness, now - state.fetchedAt);
+            }
+        }
+        statistics.setPeers(peers.size());
+        statistics.setFreshPeers(fresh);
+        statistics.setStalenessInMillis(staleness);
+        return statistics;
+    }
+
+    /**
+     * Fetches state of the peer and replaces the previous one. Failure is logged once until peer responds again.
+     */
+    void pull(Peer peer) {
+        long fetchedAt = clock.millis();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) peer.url.openConnection();
+            connection.setConnectTimeout(timeoutInMillis);
+            connection.setReadTimeout(timeoutInMillis);
+            try (InputStream in = connection.getInputStream()) {
+                WindowState.read(in, peer.spare);
+            }
+            PeerState previous = peer.state;
+            peer.state = new PeerState(peer.spare, fetchedAt);
+            peer.spare = previous != null ? previous.window : statisticsService.createAlignedWindow();
+            if (peer.failing) {
+                peer.failing = false;
+                LOGGER.info("Statistics state of {} is pulled again", peer.url);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!peer.failing) {
+                peer.failing = true;
+                LOGGER.warn("Could not pull statistics state from {}", peer.url, e);
+            }
+        }
+    }
+
+    List<Peer> getPeers() {
+        return peers;
+    }
+
+    static final class Peer {
+
+        private final URL url;
+
+        private volatile PeerState state;
+
+        /**
+         * Window the next state is read into, changed by puller thread of the peer only
+         */
+        private StatisticsWindow spare;
+
+        /**
+         * Changed by puller thread of the peer only
+         */
+        private boolean failing;
+
+        Peer(URL url, StatisticsWindow spare) {
+            this.url = url;
+            this.spare = spare;
+        }
+    }
+
+    private static final class PeerState {
+
+        private final StatisticsWindow window;
+
+        private final long fetchedAt;
+
+        PeerState(StatisticsWindow window, long fetchedAt) {
+            this.window = window;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.api.statistics.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Binary file with data of all buckets of statistics windows(main one and rollup levels). File starts with header:
+ * magic number, version, time checkpoint was taken and layout of each window, then fixed size record per bucket follows,
+ * see {@link WindowBucket#writeTo(java.io.DataOutput)}. Checkpoint is written to temporary file which is then atomically
+ * moved over the previous one, so reader sees either old or new checkpoint, never partially written one.
+ * <p>
+ * Buckets are written by slot, while transactions are replayed by timestamp, so only slots closed at checkpoint time are read back:
+ * open and future slots can get transactions while buckets are copied, and have ones with timestamp after checkpoint time.
+ * Transactions since start of the open slot of each level are replayed into it instead, see {@link StatisticsWindow#checkpointedBefore(long)}.
+ */
+final class StatisticsCheckpoint {
+
+    private static final int MAGIC = 0x53544154;
+
+    private static final int VERSION = 1;
+
+    private static final int TIME_OFFSET = 2 * Integer.BYTES;
+
+    private StatisticsCheckpoint() {
+    }
+
+    /**
+     * Copies buckets of all windows to checkpoint bytes.
+     *
+     * @param checkpointTime time taken by statistics clock before buckets are copied, it tells which slots are closed
+     */
+    static byte[] snapshot(StatisticsWindow[] levels, long checkpointTime) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(checkpointTime);
+        out.writeInt(levels.length);
+        for (StatisticsWindow level : levels) {
+            level.writeLayout(out);
+        }
+        for (StatisticsWindow level : levels) {
+            level.writeBuckets(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes checkpoint bytes made by {@link #snapshot(StatisticsWindow[], long)} to the file.
+     *
+     * @return checkpoint time
+     */
+    static long write(Path path, byte[] checkpoint) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            file.write(checkpoint);
+            file.getChannel().force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return ByteBuffer.wrap(checkpoint).getLong(TIME_OFFSET);
+    }
+
+    /**
+     * Replaces data of all windows with data of closed slots of the checkpoint, other buckets are left empty.
+     * Nothing is changed if there is no checkpoint, it was written for windows of other layout or it is older than given time.
+     *
+     * @return checkpoint time or -1 if checkpoint was not read
+     */
+    static long read(Path path, StatisticsWindow[] levels, long notOlderThan) throws IOException {
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return -1;
+            }
+            long checkpointTime = in.readLong();
+            if (checkpointTime < notOlderThan || in.readInt() != levels.length) {
+                return -1;
+            }
+            for (StatisticsWindow level : levels) {
+                if (!level.readLayout(in)) {
+                    return -1;
+                }
+            }
+            try {
+                for (StatisticsWindow level : levels) {
+                    level.readBuckets(in, level.slotOf(checkpointTime));
+                }
+            } catch (IOException e) {
+                for (StatisticsWindow level : levels) {
+                    level.evictBefore(Long.MAX_VALUE);
+                }
+                throw e;
+            }
+            return checkpointTime;
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.api.statistics.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * When checkpoints are switched on, writes data of all statistics buckets to checkpoint file periodically and once more on shutdown.
+ * On startup checkpoint is read by recovery, and only transactions newer than it are replayed.
+ */
+@Component
+@ConditionalOnProperty(name = "statistics.checkpoint.enabled", havingValue = "true")
+public class StatisticsCheckpointScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsCheckpointScheduler.class);
+
+    private StatisticsService statisticsService;
+
+    private Path path;
+
+    @Inject
+    public StatisticsCheckpointScheduler(StatisticsService statisticsService, @Value("${statistics.checkpoint.file}") String path) {
+        this.statisticsService = statisticsService;
+        this.path = Paths.get(path);
+    }
+
+    @Scheduled(fixedRateString = "${statistics.checkpoint.intervalinmillis}")
+    @PreDestroy
+    public void writeCheckpoint() {
+        try {
+            statisticsService.writeCheckpoint(path);
+        } catch (IOException e) {
+            LOGGER.error("Could not write statistics checkpoint to {}", path, e);
+        }
+    }
+}
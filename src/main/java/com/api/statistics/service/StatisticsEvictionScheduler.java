@@ -0,0 +1,26 @@
+package com.api.statistics.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+/**
+ * Resets buckets of slots which left the window, every statistics.eviction.intervalinmillis.
+ * Writers and readers never evict, they only skip buckets tagged with slots out of the window, so eviction does not cost them anything.
+ */
+@Component
+public class StatisticsEvictionScheduler {
+
+    private StatisticsService statisticsService;
+
+    @Inject
+    public StatisticsEvictionScheduler(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
+    }
+
+    @Scheduled(fixedRateString = "${statistics.eviction.intervalinmillis}")
+    public void evict() {
+        statisticsService.cleanupOldData();
+    }
+}
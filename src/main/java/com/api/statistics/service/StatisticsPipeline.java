@@ -0,0 +1,253 @@
+package com.api.statistics.service;
+
+import com.api.transaction.repository.TransactionBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer pipeline mode(statistics.pipeline.enabled property). Request threads only publish (timestamp, amount) events
+ * to {@link IngestRing}, and one aggregator thread drains them by batches of up to #batchSize and applies each batch
+ * with {@link StatisticsService#applyPipelineBatch(TransactionBatch)}, so it is the only writer of all windows:
+ * buckets of current slot are not bounced between cores of request threads, and a batch touches each bucket once per slot.
+ * Aggregator also publishes read snapshots of closed slots, see {@link StatisticsService#publishSnapshot()}.
+ * Other writes of windows(batches, eviction, checkpoint read and snapshot) are handed to aggregator by {@link #call(Callable)},
+ * so windows are never written by two threads in this mode.
+ * <p>
+ * Transaction is visible in statistics after aggregator applied it, usually within microseconds. When ring is full,
+ * publishers wait until aggregator frees space, so depth of the ring(shown by /metrics) is the backpressure signal.
+ * Server IO threads never wait: they {@link #reserve()} place before transaction is persisted, and get 503 if ring is full.
+ * Aggregator logs and skips batch it failed to apply, so publishers never wait for dead aggregator.
+ */
+@Component
+@ConditionalOnProperty(name = "statistics.pipeline.enabled", havingValue = "true")
+public class StatisticsPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsPipeline.class);
+
+    /**
+     * How long aggregator sleeps when ring is empty, and publisher when ring is full
+     */
+    private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final StatisticsService statisticsService;
+
+    private final IngestRing ring;
+
+    private final int batchSize;
+
+    private final LongAdder fullWaits = new LongAdder();
+
+    private final LongAdder fullRejections = new LongAdder();
+
+    /**
+     * Tasks run by aggregator between drained batches
+     */
+    private final Queue<FutureTask<?>> tasks = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+
+    private Thread aggregator;
+
+    @Inject
+    public StatisticsPipeline(StatisticsService statisticsService,
+                              @Value("${statistics.pipeline.capacity}") int capacity,
+                              @Value("${statistics.pipeline.batchsize}") int batchSize) {
+        this.statisticsService = statisticsService;
+        this.ring = new IngestRing(capacity);
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        aggregator = new Thread(this::aggregate, "statistics-aggregator");
+        aggregator.setDaemon(true);
+        aggregator.start();
+        statisticsService.usePipeline(this);
+    }
+
+    /**
+     * Stops aggregator after all published transactions are applied, including ones of places reserved
+     * by {@link #reserve()} and published or cancelled meanwhile.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        statisticsService.usePipeline(null);
+        running = false;
+        if (aggregator != null) {
+            aggregator.join();
+        }
+    }
+
+    /**
+     * Publishes transaction to the aggregator, waits while ring is full.
+     */
+    public void publish(long timestamp, double amount) {
+        if (ring.offer(timestamp, amount)) {
+            return;
+        }
+        fullWaits.increment();
+        do {
+            LockSupport.parkNanos(IDLE_NANOS);
+        } while (!ring.offer(timestamp, amount));
+    }
+
+    /**
+     * Claims place in the ring for one transaction without waiting, for threads which must not block(server IO threads).
+     * Claimed place should be filled by {@link #publish(long, long, double)} or released by {@link #cancel(long)}.
+     *
+     * @return claimed sequence or -1 if ring is full
+     */
+    public long reserve() {
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            fullRejections.increment();
+        }
+        return sequence;
+    }
+
+    /**
+     * Publishes transaction to place claimed by {@link #reserve()}.
+     */
+    public void publish(long sequence, long timestamp, double amount) {
+        ring.publish(sequence, timestamp, amount);
+    }
+
+    public void cancel(long sequence) {
+        ring.cancel(sequence);
+    }
+
+    /**
+     * Runs task on aggregator thread and waits for it, see {@link #call(Callable)}.
+     */
+    public void execute(Runnable task) {
+        call(Executors.callable(task));
+    }
+
+    /**
+     * Runs task on aggregator thread between drained batches and waits for its result, so task can write windows.
+     * Task called from aggregator itself, or after aggregator stopped, is run by calling thread.
+     *
+     * @throws UncheckedIOException if task failed with IOException
+     */
+    public <T> T call(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        if (Thread.currentThread() == aggregator) {
+            future.run();
+        } else {
+            tasks.add(future);
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get(IDLE_NANOS * 100, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (aggregator == null || !aggregator.isAlive()) {
+                        runTasks();
+                    }
+                } catch (InterruptedException e) {
+                    // windows can not be left half written, so task is waited for anyway
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return amount of published transactions not applied yet
+     */
+    public int getDepth() {
+        return ring.size();
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return how many times publisher found ring full and had to wait
+     */
+    public long getFullWaits() {
+        return fullWaits.sum();
+    }
+
+    /**
+     * @return how many transactions were rejected by {@link #reserve()} because ring was full
+     */
+    public long getFullRejections() {
+        return fullRejections.sum();
+    }
+
+    private void aggregate() {
+        TransactionBatch batch = new TransactionBatch(batchSize);
+        while (true) {
+            boolean stopping = !running;
+            if (!tasks.isEmpty()) {
+                runTasks();
+            }
+            int drained = ring.drain(batch);
+            try {
+                if (drained > 0) {
+                    statisticsService.applyPipelineBatch(batch);
+                }
+                if (drained < batchSize) {
+                    // ring is drained, so snapshot of closed slots includes everything published before the slot was closed
+                    statisticsService.publishSnapshot();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Statistics aggregator could not apply batch of {} transactions", drained, e);
+            }
+            batch.clear();
+            if (drained == 0) {
+                // reserved places are waited for, until they are published or cancelled
+                if (stopping && tasks.isEmpty() && ring.size() == 0) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    private synchronized void runTasks() {
+        FutureTask<?> task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
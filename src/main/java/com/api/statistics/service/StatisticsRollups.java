@@ -0,0 +1,56 @@
+package com.api.statistics.service;
+
+import com.api.transaction.repository.TransactionBatch;
+
+/**
+ * Coarse windows which are kept in addition to the main window to answer statistics for longer periods,
+ * e.g. ring of 60 one minute slots for the last hour and ring of 24 one hour slots for the last day.
+ * Every transaction is added to each level whose ring still covers its timestamp, so each level is a rollup of the finer one.
+ * Levels should be ordered from fine to coarse. Memory is bounded by the sizes of the rings.
+ * Like the main window, levels should have future slots for clock skew tolerance, otherwise future transaction takes bucket of the oldest slot.
+ */
+public class StatisticsRollups {
+
+    private final StatisticsWindow[] levels;
+
+    public StatisticsRollups(StatisticsWindow... levels) {
+        this.levels = levels;
+    }
+
+    public int size() {
+        return levels.length;
+    }
+
+    public StatisticsWindow getLevel(int index) {
+        return levels[index];
+    }
+
+    /**
+     * Adds transaction to every level which covers its timestamp.
+     */
+    void add(long timestamp, double amount, long now) {
+        for (StatisticsWindow level : levels) {
+            if (now - timestamp <= level.getPeriodInMillis()) {
+                level.add(level.slotOf(timestamp), amount);
+            }
+        }
+    }
+
+    /**
+     * Adds all transactions of the batch not later than latestTimestamp, aggregated per slot of every level first.
+     * Transactions which checkpoint taken at given time keeps for the level are not added to it, -1 if nothing is read from checkpoint.
+     */
+    void addAll(TransactionBatch batch, long now, long latestTimestamp, long checkpointTime) {
+        for (StatisticsWindow level : levels) {
+            long oldestTimestamp = Math.max(now - level.getPeriodInMillis(), level.checkpointedBefore(checkpointTime));
+            SlotsAggregate aggregate = new SlotsAggregate(level.size());
+            for (int i = 0; i < batch.size(); i++) {
+                long timestamp = batch.getTimestamp(i);
+                if (timestamp >= oldestTimestamp && timestamp <= latestTimestamp) {
+                    aggregate.add(level.slotOf(timestamp), batch.getAmount(i), level);
+                }
+            }
+            aggregate.flushTo(level);
+        }
+    }
+}
@@ -1,27 +1,52 @@
 package com.api.statistics.service;
 
+import com.api.metrics.service.HotPathMetrics;
 import com.api.transaction.repository.BankTransaction;
+import com.api.transaction.repository.TransactionBatch;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service work with statistical data for transactions
  */
 @Component
 public class StatisticsService {
+
     /**
-     * In this Map we keep period statistics for each period for 1 sec.
-     * For the given conditions of problem this will be Map containing exactly 60 entries each for one of last 60 second.
-     * Key for the Map is LocalDateTime of that second. E.g if we assume that current time is 2018-05-04T12:00:00, Map will contain keys
-     * from 2018-05-04T11:59:59 to 2018-05-04T12:00:00. Each Value will be updated each time new statistics arrived for that second.
+     * Reservation of {@link #reserveRecentStatistics()} when pipeline mode is off, nothing has to be reserved then
      */
-    private ConcurrentHashMap<LocalDateTime, PeriodStatistics> recentStatistics;
+    public static final long NO_RESERVATION = -1;
+
+    /**
+     * Result of {@link #reserveRecentStatistics()} when pipeline ring is full, transaction should be rejected
+     */
+    public static final long RING_FULL = -2;
+
+    /**
+     * Checkpoint time meaning batch is not replayed after checkpoint, so all its transactions are added
+     */
+    private static final long NO_CHECKPOINT = -1;
+
+    /**
+     * In this ring we keep period statistics for each slot of the window, by default slot is 1 sec.
+     * For the given conditions of problem this will be ring of exactly 60 buckets each for one of last 60 second.
+     * Bucket for the second is found by epoch second(UTC, so there are no problems with daylight saving time) modulo 60.
+     * E.g if we assume that current time is 2018-05-04T12:00:00, ring will contain data for seconds
+     * from 2018-05-04T11:59:01 to 2018-05-04T12:00:00. Each bucket will be updated each time new statistics arrived for that second.
+     * If slot is smaller than second(statistics.resolutioninmillis property), the same is done for smaller slots,
+     * and window start moves by one slot instead of one second.
+     */
+    private StatisticsWindow recentStatistics;
 
 
     /**
@@ -29,82 +54,611 @@ public class StatisticsService {
      */
     private int statisticPeriodFromNow;
 
+    /**
+     * Clock skew tolerance: transactions with timestamp later than now + #maxFutureInMillis are rejected, unless they are still
+     * in the current slot. Ring has extra buckets for slots up to that moment, so accepted future transactions never reuse buckets of the window.
+     */
+    private long maxFutureInMillis;
+
+    /**
+     * Data of closed slots of the window published by {@link #publishSnapshot()}. Null until first snapshot is published.
+     */
+    private volatile WindowSnapshot snapshot;
+
+    /**
+     * Coarse windows(minutes, hours) used for statistics of periods longer than #statisticPeriodFromNow
+     */
+    private StatisticsRollups rollups;
+
+    /**
+     * Main window followed by rollup levels, from fine to coarse
+     */
+    private StatisticsWindow[] levels;
+
+    /**
+     * Range index for each level, used for statistics of arbitrary ranges
+     */
+    private SlotRangeIndex[] rangeIndexes;
+
+    private HotPathMetrics metrics;
+
+    /**
+     * Source of current time, {@link com.api.clock.CachedClock} in application, so hot paths do not call system clock
+     */
+    private Clock clock;
+
+    /**
+     * Bumped after transactions are added to the main window, so together with open slot it identifies
+     * result of {@link #getStatisticsForLastSeconds()}. Striped, so writers do not fight for one counter.
+     */
+    private final LongAdder updates = new LongAdder();
+
+    /**
+     * Set in pipeline mode, then single transactions are applied by its aggregator thread
+     */
+    private volatile StatisticsPipeline pipeline;
+
+    public StatisticsService(StatisticsWindow recentStatistics, int statisticPeriodFromNow) {
+        this(recentStatistics, new StatisticsRollups(), statisticPeriodFromNow);
+    }
+
+    public StatisticsService(StatisticsWindow recentStatistics, StatisticsRollups rollups, int statisticPeriodFromNow) {
+        this(recentStatistics, rollups, new HotPathMetrics(), statisticPeriodFromNow);
+    }
+
+    public StatisticsService(StatisticsWindow recentStatistics, StatisticsRollups rollups, HotPathMetrics metrics,
+                             int statisticPeriodFromNow) {
+        this(recentStatistics, rollups, metrics, Clock.systemUTC(), statisticPeriodFromNow);
+    }
+
+    /**
+     * Future transactions are accepted as far as ring has buckets for them beyond the period, not at all if ring is exactly as long as period.
+     */
+    public StatisticsService(StatisticsWindow recentStatistics, StatisticsRollups rollups, HotPathMetrics metrics, Clock clock,
+                             int statisticPeriodFromNow) {
+        this(recentStatistics, rollups, metrics, clock, statisticPeriodFromNow,
+                Math.max(0, recentStatistics.getLengthInMillis() - statisticPeriodFromNow * 1000L));
+    }
+
     @Inject
-    public StatisticsService(ConcurrentHashMap<LocalDateTime, PeriodStatistics> recentStatistics, @Value("${statistics.periodinsec}") int statisticPeriodFromNow) {
+    public StatisticsService(StatisticsWindow recentStatistics, StatisticsRollups rollups, HotPathMetrics metrics, Clock clock,
+                             @Value("${statistics.periodinsec}") int statisticPeriodFromNow,
+                             @Value("${statistics.maxfutureinmillis}") long maxFutureInMillis) {
+        if (maxFutureInMillis < 0 || maxFutureInMillis > 0
+                && recentStatistics.getLengthInMillis() < statisticPeriodFromNow * 1000L + maxFutureInMillis) {
+            throw new IllegalArgumentException("Statistics window of " + recentStatistics.getLengthInMillis()
+                    + " ms can not keep period and " + maxFutureInMillis + " ms of clock skew tolerance");
+        }
         this.recentStatistics = recentStatistics;
+        this.rollups = rollups;
+        this.metrics = metrics;
+        this.clock = clock;
         this.statisticPeriodFromNow = statisticPeriodFromNow;
+        this.maxFutureInMillis = maxFutureInMillis;
+        levels = new StatisticsWindow[rollups.size() + 1];
+        rangeIndexes = new SlotRangeIndex[levels.length];
+        levels[0] = recentStatistics;
+        rangeIndexes[0] = new SlotRangeIndex(recentStatistics);
+        for (int i = 0; i < rollups.size(); i++) {
+            levels[i + 1] = rollups.getLevel(i);
+            rangeIndexes[i + 1] = new SlotRangeIndex(levels[i + 1]);
+            if (levels[i].getPeriodInMillis() < levels[i + 1].getSlotWidthInMillis()) {
+                throw new IllegalArgumentException("Each rollup level should cover at least one slot of the next one");
+            }
+            if (levels[i + 1].getFutureSlots() * levels[i + 1].getSlotWidthInMillis() < maxFutureInMillis) {
+                throw new IllegalArgumentException("Rollup level of " + levels[i + 1].getSlotWidthInMillis()
+                        + " ms slots has no future slots for " + maxFutureInMillis + " ms of clock skew tolerance");
+            }
+        }
     }
 
     /**
-     * Updates statistics data for the DateTime(we clear nanoseconds) when bank transaction happened.
-     * For old transactions update will not happen. After each insert old data(before given timeframe from now) will be cleared
-     * So this way we will make sure that Map always contains constant amount of elements which is equals in a given problem conditions 60
-     * Here when updating {@link ConcurrentHashMap} we use {@link ConcurrentHashMap#merge} to stop other threads accessing this data until we update it.
-     * Operations are very short though.
+     * Updates statistics data for the epoch slot when bank transaction happened.
+     * For old transactions update will not happen. Bucket which keeps data for the slot older than window is reset
+     * when it is reused for new slot, so ring always contains constant amount of elements which is equals in a given problem conditions 60
+     * Here update does not allocate any objects, does not calculate any hashes and does not lock, see {@link WindowBucket} for details.
      *
      * @param bankTransaction
      */
     public void updateRecentStatistics(BankTransaction bankTransaction) {
-        if (Instant.now().toEpochMilli() - bankTransaction.getTimestamp() > statisticPeriodFromNow * 1000) {
-            return;
+        updateRecentStatistics(bankTransaction.getTimestamp(), bankTransaction.getAmount());
+    }
+
+    /**
+     * Same as {@link #updateRecentStatistics(BankTransaction)}, but for transaction given by primitives, so nothing is boxed.
+     * In pipeline mode transaction is only published to {@link StatisticsPipeline}, and applied by its aggregator thread.
+     *
+     * Transactions too far in the future(see {@link #isTooFarInFuture(long)}) are not added anywhere.
+     *
+     * @return true if transaction was added to the window, false if it is too old or too far in the future
+     */
+    public boolean updateRecentStatistics(long timestamp, double amount) {
+        StatisticsPipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            long now = clock.millis();
+            if (isTooFarInFuture(timestamp, now)) {
+                metrics.countRejectedFuture(1);
+                return false;
+            }
+            currentPipeline.publish(timestamp, amount);
+            return now - timestamp <= statisticPeriodFromNow * 1000L;
+        }
+        long start = metrics.startTimer();
+        long now = clock.millis();
+        if (isTooFarInFuture(timestamp, now)) {
+            metrics.countRejectedFuture(1);
+            metrics.recordAggregate(start);
+            return false;
+        }
+        rollups.add(timestamp, amount, now);
+        if (now - timestamp > statisticPeriodFromNow * 1000L) {
+            metrics.countTransactions(0, 1, 0);
+            metrics.recordAggregate(start);
+            return false;
+        }
+        recentStatistics.add(recentStatistics.slotOf(timestamp), amount);
+        updates.increment();
+        metrics.countTransactions(1, 0, timestamp > now ? 1 : 0);
+        metrics.recordAggregate(start);
+        return true;
+    }
+
+    /**
+     * Reserves place for one transaction in pipeline ring without waiting, so that server IO threads can reject transaction
+     * before it is persisted, instead of waiting for aggregator after that.
+     *
+     * @return reservation for {@link #updateRecentStatistics(long, double, long)} or {@link #cancelReservation(long)},
+     * {@link #NO_RESERVATION} if pipeline mode is off or {@link #RING_FULL}
+     */
+    public long reserveRecentStatistics() {
+        StatisticsPipeline currentPipeline = pipeline;
+        if (currentPipeline == null) {
+            return NO_RESERVATION;
+        }
+        long sequence = currentPipeline.reserve();
+        return sequence < 0 ? RING_FULL : sequence;
+    }
+
+    /**
+     * Same as {@link #updateRecentStatistics(long, double)}, but in pipeline mode transaction is published to place reserved
+     * by {@link #reserveRecentStatistics()}, so it never waits.
+     */
+    public boolean updateRecentStatistics(long timestamp, double amount, long reservation) {
+        StatisticsPipeline currentPipeline = pipeline;
+        if (reservation < 0 || currentPipeline == null) {
+            return updateRecentStatistics(timestamp, amount);
+        }
+        long now = clock.millis();
+        if (isTooFarInFuture(timestamp, now)) {
+            currentPipeline.cancel(reservation);
+            metrics.countRejectedFuture(1);
+            return false;
+        }
+        currentPipeline.publish(reservation, timestamp, amount);
+        return now - timestamp <= statisticPeriodFromNow * 1000L;
+    }
+
+    /**
+     * Releases place reserved by {@link #reserveRecentStatistics()} for transaction which is not going to be added.
+     */
+    public void cancelReservation(long reservation) {
+        StatisticsPipeline currentPipeline = pipeline;
+        if (reservation >= 0 && currentPipeline != null) {
+            currentPipeline.cancel(reservation);
+        }
+    }
+
+    /**
+     * Updates statistics data for all transactions of the batch. Batch is first aggregated per slot locally,
+     * so shared buckets are updated once for each slot of the batch. In pipeline mode batch is applied by aggregator thread,
+     * and this method waits for it.
+     *
+     * @param batch
+     * @return amount of transactions added to statistics, other transactions of the batch are too old(but still can be added to rollups)
+     * or too far in the future
+     */
+    public int updateRecentStatistics(TransactionBatch batch) {
+        StatisticsPipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            return currentPipeline.call(() -> applyPipelineBatch(batch));
         }
-        LocalDateTime transactionDateTime = Instant.ofEpochMilli(bankTransaction.getTimestamp())
-                .atZone(ZoneId.systemDefault()).toLocalDateTime();
-        LocalDateTime transactionSecond = transactionDateTime.withNano(0);
-        double amount = bankTransaction.getAmount();
-        PeriodStatistics periodStatisticsIfAbsent = new PeriodStatistics(amount, amount, amount, 1, amount);
-        recentStatistics.merge(transactionSecond, periodStatisticsIfAbsent,
-                (oldStatistics, newValue) -> {
-                    int oldCount = oldStatistics.getCount();
-                    double oldMax = oldStatistics.getMax();
-                    double oldMin = oldStatistics.getMin();
-                    double oldSum = oldStatistics.getSum();
-                    oldStatistics.setCount(oldCount + 1);
-                    oldStatistics.setMax(oldMax > newValue.getMax() ? oldMax : newValue.getMax());
-                    oldStatistics.setMin(oldMin < newValue.getMin() ? oldMin : newValue.getMin());
-                    oldStatistics.setSum(oldSum + newValue.getSum());
-                    oldStatistics.setAvg(oldStatistics.getSum() / oldStatistics.getCount());
-                    return oldStatistics;
-                });
-        cleanupOldData();
+        return addBatch(batch, NO_CHECKPOINT);
+    }
 
+    /**
+     * Adds transactions replayed after checkpoint taken at given time was read, each window gets only transactions
+     * since the slot which was open at checkpoint time, see {@link #getReplayFrom(long)}. In pipeline mode batch is applied by aggregator thread.
+     *
+     * @param checkpointTime time of the checkpoint read by {@link #readCheckpoint(Path, long)}, -1 if it was not read
+     * @return amount of transactions added to the main window
+     */
+    public int updateRecoveredStatistics(TransactionBatch batch, long checkpointTime) {
+        StatisticsPipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            return currentPipeline.call(() -> applyPipelineBatch(batch, checkpointTime));
+        }
+        return addBatch(batch, checkpointTime);
+    }
+
+    /**
+     * @return the oldest timestamp which should be replayed after checkpoint taken at given time is read,
+     * start of the slot of the coarsest level open at checkpoint time
+     */
+    public long getReplayFrom(long checkpointTime) {
+        return levels[levels.length - 1].checkpointedBefore(checkpointTime);
+    }
+
+    private int addBatch(TransactionBatch batch, long checkpointTime) {
+        long start = metrics.startTimer();
+        long now = clock.millis();
+        long latestTimestamp = latestTimestamp(now);
+        rollups.addAll(batch, now, latestTimestamp, checkpointTime);
+        long oldestTimestamp = Math.max(now - statisticPeriodFromNow * 1000L, recentStatistics.checkpointedBefore(checkpointTime));
+        SlotsAggregate aggregate = new SlotsAggregate(recentStatistics.size());
+        int accepted = 0;
+        int future = 0;
+        int rejectedFuture = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            long timestamp = batch.getTimestamp(i);
+            if (timestamp > latestTimestamp) {
+                rejectedFuture++;
+            } else if (timestamp >= oldestTimestamp) {
+                aggregate.add(recentStatistics.slotOf(timestamp), batch.getAmount(i), recentStatistics);
+                accepted++;
+                if (timestamp > now) {
+                    future++;
+                }
+            }
+        }
+        aggregate.flushTo(recentStatistics);
+        if (accepted > 0) {
+            updates.increment();
+        }
+        metrics.countTransactions(accepted, batch.size() - accepted - rejectedFuture, future);
+        metrics.countRejectedFuture(rejectedFuture);
+        metrics.recordAggregate(start);
+        return accepted;
     }
 
     /**
      * Returns accumulated data for Transactions happened in a given timeframe from now ago.
-     * It will iterate through Map containing statistical data for each second and create accumulated statistics.
-     * As far as Map contains exacly #statisticPeriodFromNow = 60 amount of records, this method is always doing not more than #statisticPeriodFromNow steps
-     * So we have constant memory usage(Map contains 60 elements) and constant running time(60 iterations)
+     * If snapshot of closed slots was published in current slot, only snapshot and bucket of current slot are read.
+     * Otherwise it will iterate through ring containing statistical data for each slot and create accumulated statistics.
+     * As far as ring contains exacly #statisticPeriodFromNow = 60 amount of buckets, this method is always doing not more than #statisticPeriodFromNow steps
+     * So we have constant memory usage(ring contains 60 elements) and constant running time(60 iterations)
      *
      * @return
      */
     public PeriodStatistics getStatisticsForLastSeconds() {
-        return recentStatistics.entrySet()
-                .stream()
-                .filter(entry -> entry.getKey().isAfter(LocalDateTime.now().minusSeconds(statisticPeriodFromNow)))
-                .map(entry -> entry.getValue())
-                .collect(PeriodStatistics::new, (oldStatistics, newValue) -> {
-                    int oldCount = oldStatistics.getCount();
-                    double oldMax = oldStatistics.getMax();
-                    double oldMin = oldStatistics.getMin();
-                    double oldSum = oldStatistics.getSum();
-                    oldStatistics.setCount(oldCount + newValue.getCount());
-                    oldStatistics.setMax(oldMax > newValue.getMax() ? oldMax : newValue.getMax());
-                    oldStatistics.setMin(oldMin < newValue.getMin() ? oldMin : newValue.getMin());
-                    oldStatistics.setSum(oldSum + newValue.getSum());
-                    oldStatistics.setAvg(oldStatistics.getSum() / oldStatistics.getCount());
-                }, (u, v) -> {
-                });
+        long start = metrics.startTimer();
+        long now = clock.millis();
+        long openSlot = recentStatistics.slotOf(now);
+        WindowSnapshot currentSnapshot = snapshot;
+        PeriodStatistics statistics;
+        if (currentSnapshot != null && currentSnapshot.getOpenSlot() == openSlot) {
+            statistics = currentSnapshot.toPeriodStatistics();
+            recentStatistics.collectSlot(statistics, openSlot);
+        } else {
+            statistics = recentStatistics.collect(firstSlotOfWindow(now), Long.MAX_VALUE);
+        }
+        metrics.recordRead(start);
+        return statistics;
+    }
+
+    /**
+     * Returns accumulated data for Transactions happened in given period from now ago. Period can be longer than #statisticPeriodFromNow
+     * if rollups are kept. Then statistics is accumulated from the coarsest level needed for full slots of that level,
+     * and from finer levels only for the current, not finished, slot of coarser level. E.g. for 15 minutes full minutes are read from
+     * minutes level and current minute from the main window, for 24 hours full hours are read from hours level, current hour from
+     * minutes level and current minute from the main window. So every read iterates through a few dozen buckets.
+     * Start of the window is accurate up to one slot of the coarsest level used.
+     *
+     * @param periodInMillis
+     * @return
+     * @throws UnsupportedWindowException if period is longer than the longest level
+     */
+    public PeriodStatistics getStatisticsForLast(long periodInMillis) {
+        return getStatisticsForLast(periodInMillis, false);
+    }
+
+    /**
+     * Same as {@link #getStatisticsForLast(long)}, but optionally calculates p50, p90 and p99 of amounts as well.
+     * Histograms of the same buckets which statistics is accumulated from are added together, so percentiles have the same
+     * window accuracy and relative error of {@link AmountHistogram}(~3%).
+     *
+     * @param periodInMillis
+     * @param percentiles    whether percentiles should be calculated
+     * @return
+     * @throws UnsupportedWindowException if percentiles are requested, but histograms are not kept(statistics.percentiles.enabled)
+     */
+    public PeriodStatistics getStatisticsForLast(long periodInMillis, boolean percentiles) {
+        if (periodInMillis == statisticPeriodFromNow * 1000L && !percentiles) {
+            return getStatisticsForLastSeconds();
+        }
+        if (periodInMillis <= 0 || periodInMillis > getRetentionInMillis()) {
+            throw new UnsupportedWindowException("Statistics can be calculated only for periods up to " + getRetentionInMillis() + " ms");
+        }
+        long start = metrics.startTimer();
+        long now = clock.millis();
+        int top = 0;
+        while (levels[top].getPeriodInMillis() < periodInMillis) {
+            top++;
+        }
+        for (int i = 0; i <= top && percentiles; i++) {
+            if (!levels[i].keepsHistograms()) {
+                throw new UnsupportedWindowException("Percentiles are not kept, see statistics.percentiles.enabled");
+            }
+        }
+        long[] histogram = percentiles ? new long[AmountHistogram.SIZE] : null;
+        PeriodStatistics statistics = new PeriodStatistics();
+        long windowStart = now - periodInMillis;
+        for (int i = top; i > 0; i--) {
+            StatisticsWindow level = levels[i];
+            long openSlot = level.slotOf(now);
+            level.collect(statistics, level.slotOf(windowStart) + 1, openSlot - 1);
+            if (histogram != null) {
+                level.collectHistogram(histogram, level.slotOf(windowStart) + 1, openSlot - 1);
+            }
+            // finer levels are read only for the open slot of this level
+            windowStart = Math.max(windowStart, openSlot * level.getSlotWidthInMillis() - 1);
+        }
+        recentStatistics.collect(statistics, recentStatistics.slotOf(windowStart) + 1, Long.MAX_VALUE);
+        if (histogram != null) {
+            recentStatistics.collectHistogram(histogram, recentStatistics.slotOf(windowStart) + 1, Long.MAX_VALUE);
+            statistics.setP50(AmountHistogram.percentile(histogram, 50, statistics.getMin(), statistics.getMax()));
+            statistics.setP90(AmountHistogram.percentile(histogram, 90, statistics.getMin(), statistics.getMax()));
+            statistics.setP99(AmountHistogram.percentile(histogram, 99, statistics.getMin(), statistics.getMax()));
+        }
+        metrics.recordRead(start);
+        return statistics;
+    }
+
+    /**
+     * Returns accumulated data for Transactions happened between given moments in the past, e.g. from 300 to 120 seconds ago.
+     * The finest level which still keeps data of the range start is used, range is accurate up to one slot of that level.
+     * Statistics is read from {@link SlotRangeIndex} of that level, so it takes O(log n) steps for n slots of the level.
+     *
+     * @param fromMillisAgo start of the range, how many millis ago
+     * @param toMillisAgo   end of the range, how many millis ago
+     * @return
+     * @throws UnsupportedWindowException if range start is older than the longest level or range is empty
+     */
+    public PeriodStatistics getStatisticsBetween(long fromMillisAgo, long toMillisAgo) {
+        if (toMillisAgo < 0 || fromMillisAgo <= toMillisAgo || fromMillisAgo > getRetentionInMillis()) {
+            throw new UnsupportedWindowException("Range should end before it starts counting back from now and start not earlier than "
+                    + getRetentionInMillis() + " ms ago");
+        }
+        long start = metrics.startTimer();
+        long now = clock.millis();
+        int level = 0;
+        while (levels[level].getPeriodInMillis() < fromMillisAgo) {
+            level++;
+        }
+        StatisticsWindow window = levels[level];
+        PeriodStatistics statistics = new PeriodStatistics();
+        rangeIndexes[level].query(statistics, window.slotOf(now - fromMillisAgo) + 1, window.slotOf(now - toMillisAgo), window.slotOf(now));
+        metrics.recordRead(start);
+        return statistics;
+    }
+
+    /**
+     * Version of the main window data, changes after every update of it. If version and {@link #getOpenSlot()} are the same
+     * as before {@link #getStatisticsForLastSeconds()} was called, it will return the same statistics.
+     * Read version before statistics, then statistics can only be newer than version.
+     */
+    public long getUpdateVersion() {
+        return updates.sum();
+    }
+
+    /**
+     * @return slot of the main window current time belongs to, window of {@link #getStatisticsForLastSeconds()} moves with it
+     */
+    public long getOpenSlot() {
+        return recentStatistics.slotOf(clock.millis());
+    }
+
+    /**
+     * @return current time in millis of the clock statistics is calculated by
+     */
+    public long currentTimeMillis() {
+        return clock.millis();
+    }
+
+    /**
+     * @return true if timestamp is later than now + statistics.maxfutureinmillis and than end of current slot, such transaction should be rejected
+     */
+    public boolean isTooFarInFuture(long timestamp) {
+        return isTooFarInFuture(timestamp, clock.millis());
+    }
+
+    /**
+     * @return period statistics is shown for by default(statistics.periodinsec)
+     */
+    public long getPeriodInMillis() {
+        return statisticPeriodFromNow * 1000L;
+    }
+
+    /**
+     * @return the longest period statistics can be calculated for
+     */
+    public long getRetentionInMillis() {
+        return levels[levels.length - 1].getPeriodInMillis();
     }
 
     /**
-     * Clean up data which is older than we need to keep statistics Map in constant size
+     * Folds all slots of the window except current one into immutable snapshot. Snapshot is calculated once per slot,
+     * so transactions arrived late for already closed slot will be seen by readers not later than in one slot.
      */
+    public void publishSnapshot() {
+        long now = clock.millis();
+        long openSlot = recentStatistics.slotOf(now);
+        WindowSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null && currentSnapshot.getOpenSlot() == openSlot) {
+            return;
+        }
+        PeriodStatistics closedSlots = new PeriodStatistics();
+        recentStatistics.collect(closedSlots, firstSlotOfWindow(now), openSlot - 1);
+        recentStatistics.collect(closedSlots, openSlot + 1, Long.MAX_VALUE);
+        snapshot = new WindowSnapshot(openSlot, closedSlots);
+    }
 
+    /**
+     * Clean up data which is older than we need, in the main window and every rollup level. Buckets are reset lazily on write anyway,
+     * so this is needed only to release data of slots for which no transactions arrived for a while.
+     * It is never called on ingest or read paths, {@link StatisticsEvictionScheduler} calls it in background.
+     * In pipeline mode buckets are reset by aggregator thread.
+     */
     public void cleanupOldData() {
-        recentStatistics.entrySet()
-                .stream()
-                .filter(entry -> entry.getKey().isBefore(LocalDateTime.now().minusSeconds(statisticPeriodFromNow)))
-                .forEach(entry -> recentStatistics.remove(entry.getKey()));
+        StatisticsPipeline currentPipeline = pipeline;
+        if (currentPipeline != null) {
+            currentPipeline.execute(this::evictOldData);
+        } else {
+            evictOldData();
+        }
+    }
+
+    private void evictOldData() {
+        long start = metrics.startTimer();
+        long now = clock.millis();
+        int evicted = recentStatistics.evictBefore(firstSlotOfWindow(now));
+        for (int i = 1; i < levels.length; i++) {
+            evicted += levels[i].evictBefore(levels[i].slotOf(now - levels[i].getPeriodInMillis()) + 1);
+        }
+        metrics.recordCleanup(start, evicted);
+    }
+
+    /**
+     * Writes data of all buckets of the main window and rollups to binary checkpoint file, see {@link StatisticsCheckpoint}.
+     * In pipeline mode buckets are copied to memory by aggregator thread, so checkpoint does not see half applied batch,
+     * and file is written by calling thread.
+     *
+     * @return checkpoint time, taken by statistics clock before buckets are copied
+     */
+    public synchronized long writeCheckpoint(Path path) throws IOException {
+        StatisticsPipeline currentPipeline = pipeline;
+        byte[] checkpoint;
+        try {
+            checkpoint = currentPipeline != null
+                    ? currentPipeline.call(() -> StatisticsCheckpoint.snapshot(levels, clock.millis()))
+                    : StatisticsCheckpoint.snapshot(levels, clock.millis());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return StatisticsCheckpoint.write(path, checkpoint);
+    }
+
+    /**
+     * Replaces statistics with data of checkpoint file, if it exists, was written for the same windows and is not older than given time.
+     * In pipeline mode it is read by aggregator thread.
+     *
+     * @return checkpoint time or -1 if checkpoint was not read
+     */
+    public synchronized long readCheckpoint(Path path, long notOlderThan) throws IOException {
+        StatisticsPipeline currentPipeline = pipeline;
+        if (currentPipeline == null) {
+            return replaceWithCheckpoint(path, notOlderThan);
+        }
+        try {
+            return currentPipeline.call(() -> replaceWithCheckpoint(path, notOlderThan));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long replaceWithCheckpoint(Path path, long notOlderThan) throws IOException {
+        long checkpointTime = StatisticsCheckpoint.read(path, levels, notOlderThan);
+        if (checkpointTime >= 0) {
+            snapshot = null;
+            updates.increment();
+        }
+        return checkpointTime;
+    }
+
+    /**
+     * Applies batch drained from pipeline ring or handed to aggregator by {@link #updateRecentStatistics(TransactionBatch)}.
+     * If batch has transactions of slots already folded into snapshot(late ones), snapshot is published again,
+     * so in pipeline mode reads never miss applied transactions.
+     *
+     * @return amount of transactions added to statistics
+     */
+    int applyPipelineBatch(TransactionBatch batch) {
+        return applyPipelineBatch(batch, NO_CHECKPOINT);
+    }
+
+    private int applyPipelineBatch(TransactionBatch batch, long checkpointTime) {
+        int accepted = addBatch(batch, checkpointTime);
+        WindowSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot == null) {
+            return accepted;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (recentStatistics.slotOf(batch.getTimestamp(i)) != currentSnapshot.getOpenSlot()) {
+                snapshot = null;
+                publishSnapshot();
+                return accepted;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Switches pipeline mode on, or off if pipeline is null.
+     */
+    void usePipeline(StatisticsPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Writes layout and buckets of the main window, see {@link WindowState}. Windows of several instances can be merged from it.
+     */
+    public void writeState(OutputStream out) throws IOException {
+        WindowState.write(out, recentStatistics);
+    }
+
+    /**
+     * @return empty window with the same layout as the main window, e.g. to read window state of another instance into
+     */
+    StatisticsWindow createAlignedWindow() {
+        return new StatisticsWindow(recentStatistics.size(), recentStatistics.getSlotWidthInMillis(), recentStatistics.keepsHistograms());
+    }
+
+    /**
+     * Accumulates statistics of given window for the same slots {@link #getStatisticsForLastSeconds()} reads from the main window.
+     */
+    void collectForLastSeconds(PeriodStatistics statistics, StatisticsWindow window, long now) {
+        window.collect(statistics, firstSlotOfWindow(now), Long.MAX_VALUE);
+    }
+
+    /**
+     * @return occupancy of the main window followed by rollup levels, from fine to coarse
+     */
+    public List<WindowOccupancy> getOccupancy() {
+        long now = clock.millis();
+        List<WindowOccupancy> occupancy = new ArrayList<>(levels.length);
+        for (StatisticsWindow level : levels) {
+            int active = level.activeBuckets(level.slotOf(now - level.getPeriodInMillis()) + 1);
+            occupancy.add(new WindowOccupancy(level.getSlotWidthInMillis(), level.size(), active, level.reusedBuckets()));
+        }
+        return occupancy;
+    }
+
+    private boolean isTooFarInFuture(long timestamp, long now) {
+        return timestamp - now > maxFutureInMillis && timestamp > latestTimestamp(now);
+    }
+
+    /**
+     * @return the latest timestamp accepted at given time: now + #maxFutureInMillis, but not earlier than end of current slot
+     */
+    private long latestTimestamp(long now) {
+        long endOfOpenSlot = (recentStatistics.slotOf(now) + 1) * recentStatistics.getSlotWidthInMillis() - 1;
+        return Math.max(now + maxFutureInMillis, endOfOpenSlot);
+    }
+
+    /**
+     * First epoch slot which is included into statistics calculated at given time. It is the first slot which starts
+     * after now - #statisticPeriodFromNow, so window is accurate up to one slot.
+     */
+    private long firstSlotOfWindow(long nowInMillis) {
+        return recentStatistics.slotOf(nowInMillis - statisticPeriodFromNow * 1000L) + 1;
     }
 }
@@ -0,0 +1,31 @@
+package com.api.statistics.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+/**
+ * When snapshot mode is switched on, folds closed slots of the window into immutable snapshot,
+ * so /statistics requests read only snapshot and bucket of current slot.
+ * It checks more often than once per slot to publish snapshot as soon as possible after slot is closed,
+ * but snapshot itself is calculated only once per slot. If slot is smaller than tick, requests
+ * which come before snapshot for current slot is published iterate through the whole window.
+ */
+@Component
+@ConditionalOnProperty(name = "statistics.snapshot.enabled", havingValue = "true")
+public class StatisticsSnapshotScheduler {
+
+    private StatisticsService statisticsService;
+
+    @Inject
+    public StatisticsSnapshotScheduler(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
+    }
+
+    @Scheduled(fixedRateString = "${statistics.snapshot.tickinmillis}")
+    public void publishSnapshot() {
+        statisticsService.publishSnapshot();
+    }
+}
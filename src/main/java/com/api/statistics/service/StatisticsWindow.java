@@ -0,0 +1,297 @@
+package com.api.statistics.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size ring of buckets, each keeping statistics of one time slot. By default slot is one second,
+ * but it can be made smaller(e.g. 100 ms or 10 ms) to make trailing edge of the window more accurate.
+ * Bucket for given slot is found by index epochSlot % size, where epochSlot is timestamp in millis divided by slot width,
+ * so no hashing and no allocation happens when transaction is added.
+ * Ring contains as many buckets as slots we keep statistics for(for given problem 60 one second slots) plus #futureSlots buckets
+ * for transactions with timestamp a bit ahead of now, so that they do not take bucket of the oldest slot of the period.
+ * Stale buckets are detected by epoch slot tag they keep and reset lazily on next write.
+ * Ring is allocated once, so memory does not change while application works, and every read iterates at most through whole ring.
+ * Optionally each bucket keeps histogram of amounts, then percentiles of any range of slots can be calculated.
+ * Positions of buckets changed since last {@link #takeChangedBuckets(int)} are tracked in bitset, it is used by {@link SlotRangeIndex}.
+ */
+public class StatisticsWindow {
+
+    private final WindowBucket[] buckets;
+
+    private final long slotWidthInMillis;
+
+    private final boolean keepHistograms;
+
+    /**
+     * Buckets beyond the period, for clock skew tolerance
+     */
+    private final int futureSlots;
+
+    /**
+     * One bit per bucket, set after bucket was written
+     */
+    private final AtomicLongArray changedBuckets;
+
+    /**
+     * Creates window of one second slots.
+     */
+    public StatisticsWindow(int size) {
+        this(size, 1000L);
+    }
+
+    public StatisticsWindow(int size, long slotWidthInMillis) {
+        this(size, slotWidthInMillis, false);
+    }
+
+    /**
+     * @param keepHistograms whether buckets keep histograms of amounts for percentiles
+     */
+    public StatisticsWindow(int size, long slotWidthInMillis, boolean keepHistograms) {
+        this(size, slotWidthInMillis, keepHistograms, 0);
+    }
+
+    /**
+     * @param periodSlots slots of the period
+     * @param futureSlots buckets added for slots after the current one, ring has periodSlots + futureSlots buckets
+     */
+    public StatisticsWindow(int periodSlots, long slotWidthInMillis, boolean keepHistograms, int futureSlots) {
+        if (periodSlots <= 0 || slotWidthInMillis <= 0 || futureSlots < 0) {
+            throw new IllegalArgumentException("Window size and slot width should be positive, but were "
+                    + periodSlots + " and " + slotWidthInMillis);
+        }
+        int size = periodSlots + futureSlots;
+        this.slotWidthInMillis = slotWidthInMillis;
+        this.keepHistograms = keepHistograms;
+        this.futureSlots = futureSlots;
+        changedBuckets = new AtomicLongArray((size + 63) / 64);
+        buckets = new WindowBucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new WindowBucket(keepHistograms);
+        }
+    }
+
+    public int size() {
+        return buckets.length;
+    }
+
+    public boolean keepsHistograms() {
+        return keepHistograms;
+    }
+
+    public long getSlotWidthInMillis() {
+        return slotWidthInMillis;
+    }
+
+    /**
+     * @return time span covered by all slots of the ring
+     */
+    public long getLengthInMillis() {
+        return buckets.length * slotWidthInMillis;
+    }
+
+    /**
+     * @return time span before now statistics is kept for, it is the whole ring without future slots
+     */
+    public long getPeriodInMillis() {
+        return (buckets.length - futureSlots) * slotWidthInMillis;
+    }
+
+    public int getFutureSlots() {
+        return futureSlots;
+    }
+
+    /**
+     * @return epoch slot which given timestamp in millis belongs to
+     */
+    public long slotOf(long timestamp) {
+        return Math.floorDiv(timestamp, slotWidthInMillis);
+    }
+
+    /**
+     * @return start of the slot checkpoint taken at given time was open in, checkpoint keeps transactions of this window
+     * only before it, see {@link StatisticsCheckpoint}
+     */
+    long checkpointedBefore(long checkpointTime) {
+        return slotOf(checkpointTime) * slotWidthInMillis;
+    }
+
+    /**
+     * Adds transaction amount to the bucket of given slot.
+     */
+    public void add(long epochSlot, double amount) {
+        int index = indexOf(epochSlot);
+        buckets[index].add(epochSlot, amount);
+        markChanged(index);
+    }
+
+    /**
+     * Adds statistics of several transactions of given slot, pre-aggregated by caller, to the bucket of that slot.
+     */
+    public void add(long epochSlot, int count, double sum, double max, double min) {
+        int index = indexOf(epochSlot);
+        buckets[index].add(epochSlot, count, sum, max, min);
+        markChanged(index);
+    }
+
+    /**
+     * Counts amount in the histogram of the bucket of given slot. Used together with pre-aggregated {@link #add(long, int, double, double, double)}.
+     */
+    void addToHistogram(long epochSlot, double amount) {
+        if (keepHistograms) {
+            bucketFor(epochSlot).addToHistogram(epochSlot, amount);
+        }
+    }
+
+    /**
+     * Accumulates statistics of all buckets keeping data for slots in [fromSlot, toSlot] range.
+     */
+    public PeriodStatistics collect(long fromSlot, long toSlot) {
+        PeriodStatistics statistics = new PeriodStatistics();
+        collect(statistics, fromSlot, toSlot);
+        return statistics;
+    }
+
+    /**
+     * Same as {@link #collect(long, long)}, but accumulates to given statistics.
+     */
+    public void collect(PeriodStatistics statistics, long fromSlot, long toSlot) {
+        for (WindowBucket bucket : buckets) {
+            bucket.collect(statistics, fromSlot, toSlot);
+        }
+    }
+
+    /**
+     * Adds histograms of all buckets keeping data for slots in [fromSlot, toSlot] range to given counts.
+     *
+     * @param counts array of {@link AmountHistogram#SIZE} counts
+     */
+    void collectHistogram(long[] counts, long fromSlot, long toSlot) {
+        for (WindowBucket bucket : buckets) {
+            bucket.collectHistogram(counts, fromSlot, toSlot);
+        }
+    }
+
+    /**
+     * Accumulates statistics of the bucket of given slot only, without iterating through the ring.
+     */
+    public void collectSlot(PeriodStatistics statistics, long epochSlot) {
+        bucketFor(epochSlot).collect(statistics, epochSlot, epochSlot);
+    }
+
+    /**
+     * Resets all buckets keeping data for slots older than given one.
+     *
+     * @return amount of buckets reset
+     */
+    public int evictBefore(long epochSlot) {
+        int evicted = 0;
+        for (WindowBucket bucket : buckets) {
+            if (bucket.evictBefore(epochSlot)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return amount of buckets keeping data for given slot or newer
+     */
+    public int activeBuckets(long fromSlot) {
+        int active = 0;
+        for (WindowBucket bucket : buckets) {
+            if (bucket.holdsDataSince(fromSlot)) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * @return how many times buckets were reset lazily, when reused for newer slot
+     */
+    public long reusedBuckets() {
+        long reused = 0;
+        for (WindowBucket bucket : buckets) {
+            reused += bucket.getReuses();
+        }
+        return reused;
+    }
+
+    /**
+     * Writes size, slot width and whether histograms are kept, so that it can be checked that saved buckets fit this window.
+     */
+    void writeLayout(DataOutput out) throws IOException {
+        out.writeInt(buckets.length);
+        out.writeLong(slotWidthInMillis);
+        out.writeBoolean(keepHistograms);
+    }
+
+    /**
+     * @return true if layout written by {@link #writeLayout(DataOutput)} is the same as layout of this window
+     */
+    boolean readLayout(DataInput in) throws IOException {
+        int size = in.readInt();
+        long slotWidth = in.readLong();
+        boolean histograms = in.readBoolean();
+        return size == buckets.length && slotWidth == slotWidthInMillis && histograms == keepHistograms;
+    }
+
+    void writeBuckets(DataOutput out) throws IOException {
+        for (WindowBucket bucket : buckets) {
+            bucket.writeTo(out);
+        }
+    }
+
+    /**
+     * Replaces data of all buckets with data written by {@link #writeBuckets(DataOutput)}.
+     */
+    void readBuckets(DataInput in) throws IOException {
+        readBuckets(in, Long.MAX_VALUE);
+    }
+
+    /**
+     * Replaces data of all buckets with data written by {@link #writeBuckets(DataOutput)}, buckets of given slot and later ones are left empty.
+     */
+    void readBuckets(DataInput in, long beforeSlot) throws IOException {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i].readFrom(in, beforeSlot);
+            markChanged(i);
+        }
+    }
+
+    int changedBucketWords() {
+        return changedBuckets.length();
+    }
+
+    /**
+     * Returns changed flags of 64 buckets starting from position word * 64 and clears them.
+     */
+    long takeChangedBuckets(int word) {
+        return changedBuckets.getAndSet(word, 0);
+    }
+
+    /**
+     * Bit is set only if it is not set yet, so writers of the same bucket mostly only read the bitset.
+     */
+    private void markChanged(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long bits;
+        while (((bits = changedBuckets.get(word)) & bit) == 0) {
+            if (changedBuckets.compareAndSet(word, bits, bits | bit)) {
+                return;
+            }
+        }
+    }
+
+    private int indexOf(long epochSlot) {
+        return (int) Math.floorMod(epochSlot, (long) buckets.length);
+    }
+
+    private WindowBucket bucketFor(long epochSlot) {
+        return buckets[indexOf(epochSlot)];
+    }
+}
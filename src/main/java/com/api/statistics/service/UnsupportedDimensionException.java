@@ -0,0 +1,11 @@
+package com.api.statistics.service;
+
+/**
+ * Thrown when statistics is requested for unknown dimension or with wrong amount of top keys.
+ */
+public class UnsupportedDimensionException extends RuntimeException {
+
+    public UnsupportedDimensionException(String message) {
+        super(message);
+    }
+}
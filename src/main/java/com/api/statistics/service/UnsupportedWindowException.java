@@ -0,0 +1,11 @@
+package com.api.statistics.service;
+
+/**
+ * Thrown when statistics is requested for the window which is not kept.
+ */
+public class UnsupportedWindowException extends RuntimeException {
+
+    public UnsupportedWindowException(String message) {
+        super(message);
+    }
+}
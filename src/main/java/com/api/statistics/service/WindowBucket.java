@@ -0,0 +1,244 @@
+package com.api.statistics.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistical data for transactions happened in one slot of the window(one second by default). Buckets are preallocated by {@link StatisticsWindow}
+ * and reused: bucket is tagged with epoch slot it currently holds, so when transaction for newer slot arrives
+ * to the same bucket, old data is reset in place instead of creating new object.
+ * <p>
+ * All live traffic lands on bucket of current slot, so writers do not take any lock here.
+ * Count and sum are kept in striped {@link LongAdder}/{@link DoubleAdder} cells, so concurrent writers mostly update different cells,
+ * max and min are kept as raw bits of double and updated by CAS only when amount is really bigger(smaller).
+ * Lock is taken only once per slot when bucket is reused for new slot.
+ * <p>
+ * Writer which checked the tag and was delayed until bucket is reused for slot {@link StatisticsWindow#size()} slots later
+ * will add its amount to the new slot. We accept it, as far as transactions of so old slot are already out of window.
+ * <p>
+ * Optionally bucket keeps {@link AmountHistogram} of amounts(~6 KB per bucket), so percentiles of any set of buckets
+ * can be calculated by adding their histograms. Histogram cells are incremented atomically, without lock as well.
+ */
+class WindowBucket {
+
+    static final long EMPTY = Long.MIN_VALUE;
+
+    private static final long INITIAL_MAX = Double.doubleToRawLongBits(0);
+
+    private static final long INITIAL_MIN = Double.doubleToRawLongBits(Double.MAX_VALUE);
+
+    private volatile long epochSlot = EMPTY;
+
+    /**
+     * How many times bucket was reused for newer slot while keeping data of older one, changed under lock
+     */
+    private volatile long reuses;
+
+    private final LongAdder count = new LongAdder();
+
+    private final DoubleAdder sum = new DoubleAdder();
+
+    private final AtomicLong max = new AtomicLong(INITIAL_MAX);
+
+    private final AtomicLong min = new AtomicLong(INITIAL_MIN);
+
+    /**
+     * Counts of amounts per {@link AmountHistogram} bucket, null if histogram is not kept
+     */
+    private final AtomicLongArray histogram;
+
+    WindowBucket(boolean keepHistogram) {
+        histogram = keepHistogram ? new AtomicLongArray(AmountHistogram.SIZE) : null;
+    }
+
+    /**
+     * Adds transaction amount to the bucket. If bucket keeps data for older slot it is reset first.
+     * If bucket already keeps data for newer slot, transaction is too old for the window and ignored.
+     */
+    void add(long epochSlot, double amount) {
+        add(epochSlot, 1, amount, amount, amount);
+        addToHistogram(epochSlot, amount);
+    }
+
+    /**
+     * Adds statistics of several transactions of the same slot, pre-aggregated by caller, to the bucket.
+     */
+    void add(long epochSlot, int count, double sum, double max, double min) {
+        if (!holds(epochSlot)) {
+            return;
+        }
+        this.count.add(count);
+        this.sum.add(sum);
+        accumulateMax(max);
+        accumulateMin(min);
+    }
+
+    /**
+     * Counts amount in the histogram only. It is used together with pre-aggregated {@link #add(long, int, double, double, double)},
+     * as far as distribution of amounts can not be pre-aggregated to a few numbers.
+     */
+    void addToHistogram(long epochSlot, double amount) {
+        if (histogram != null && holds(epochSlot)) {
+            histogram.incrementAndGet(AmountHistogram.indexOf(amount));
+        }
+    }
+
+    /**
+     * Adds data of this bucket to given statistics if bucket keeps data for slot in [fromSlot, toSlot] range.
+     * If bucket was reused for another slot while reading, its data is not added.
+     */
+    void collect(PeriodStatistics statistics, long fromSlot, long toSlot) {
+        long slot = epochSlot;
+        if (slot < fromSlot || slot > toSlot) {
+            return;
+        }
+        int bucketCount = (int) count.sum();
+        double bucketSum = sum.sum();
+        double bucketMax = Double.longBitsToDouble(max.get());
+        double bucketMin = Double.longBitsToDouble(min.get());
+        if (epochSlot == slot) {
+            statistics.accumulate(bucketCount, bucketSum, bucketMax, bucketMin);
+        }
+    }
+
+    /**
+     * Adds histogram of this bucket to given counts if bucket keeps data for slot in [fromSlot, toSlot] range.
+     * Unlike {@link #collect(PeriodStatistics, long, long)} counts are added while reading, so if bucket is reused
+     * at the same time, part of its new data can be added. It happens only for slots which are out of window already.
+     */
+    void collectHistogram(long[] counts, long fromSlot, long toSlot) {
+        long slot = epochSlot;
+        if (histogram == null || slot < fromSlot || slot > toSlot) {
+            return;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += histogram.get(i);
+        }
+    }
+
+    /**
+     * Writes fixed size record of the bucket: slot, count, sum, max, min and histogram if it is kept.
+     * If bucket was reused for another slot while writing, it is written as empty.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        long slot = epochSlot;
+        long bucketCount = count.sum();
+        double bucketSum = sum.sum();
+        long bucketMax = max.get();
+        long bucketMin = min.get();
+        boolean consistent = epochSlot == slot;
+        out.writeLong(consistent ? slot : EMPTY);
+        out.writeLong(consistent ? bucketCount : 0);
+        out.writeDouble(consistent ? bucketSum : 0);
+        out.writeLong(consistent ? bucketMax : INITIAL_MAX);
+        out.writeLong(consistent ? bucketMin : INITIAL_MIN);
+        if (histogram != null) {
+            for (int i = 0; i < histogram.length(); i++) {
+                out.writeLong(consistent ? histogram.get(i) : 0);
+            }
+        }
+    }
+
+    /**
+     * Replaces data of the bucket with record written by {@link #writeTo(DataOutput)}. Record of given slot or later one is skipped,
+     * bucket is left empty then.
+     */
+    synchronized void readFrom(DataInput in, long beforeSlot) throws IOException {
+        reset(in.readLong());
+        count.add(in.readLong());
+        sum.add(in.readDouble());
+        max.set(in.readLong());
+        min.set(in.readLong());
+        if (histogram != null) {
+            for (int i = 0; i < histogram.length(); i++) {
+                histogram.set(i, in.readLong());
+            }
+        }
+        if (epochSlot >= beforeSlot) {
+            reset(EMPTY);
+        }
+    }
+
+    /**
+     * Resets bucket if it keeps data for slot older than given one.
+     *
+     * @return true if bucket was reset
+     */
+    synchronized boolean evictBefore(long epochSlot) {
+        if (this.epochSlot == EMPTY || this.epochSlot >= epochSlot) {
+            return false;
+        }
+        reset(EMPTY);
+        return true;
+    }
+
+    long getReuses() {
+        return reuses;
+    }
+
+    boolean holdsDataSince(long epochSlot) {
+        long slot = this.epochSlot;
+        return slot != EMPTY && slot >= epochSlot && count.sum() > 0;
+    }
+
+    /**
+     * Makes sure bucket keeps data for given slot, resetting it if it keeps data for older slot.
+     *
+     * @return false if bucket keeps data for newer slot
+     */
+    private boolean holds(long epochSlot) {
+        long currentSlot = this.epochSlot;
+        return currentSlot == epochSlot || currentSlot < epochSlot && rotate(epochSlot);
+    }
+
+    /**
+     * Reuses bucket for newer slot. Several writers of new slot can come here at the same time, only first one resets the bucket.
+     *
+     * @return false if meanwhile bucket was reused for even newer slot
+     */
+    private synchronized boolean rotate(long epochSlot) {
+        if (this.epochSlot < epochSlot) {
+            if (this.epochSlot != EMPTY) {
+                reuses++;
+            }
+            reset(epochSlot);
+        }
+        return this.epochSlot == epochSlot;
+    }
+
+    private void reset(long epochSlot) {
+        count.reset();
+        sum.reset();
+        max.set(INITIAL_MAX);
+        min.set(INITIAL_MIN);
+        if (histogram != null) {
+            for (int i = 0; i < histogram.length(); i++) {
+                histogram.set(i, 0);
+            }
+        }
+        this.epochSlot = epochSlot;
+    }
+
+    private void accumulateMax(double amount) {
+        long current;
+        while (amount > Double.longBitsToDouble(current = max.get())) {
+            if (max.compareAndSet(current, Double.doubleToRawLongBits(amount))) {
+                return;
+            }
+        }
+    }
+
+    private void accumulateMin(double amount) {
+        long current;
+        while (amount < Double.longBitsToDouble(current = min.get())) {
+            if (min.compareAndSet(current, Double.doubleToRawLongBits(amount))) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.api.statistics.service;
+
+/**
+ * Bean describing how many buckets of one statistics window keep data of the period it covers.
+ */
+public class WindowOccupancy {
+
+    private long slotWidthInMillis;
+
+    private int buckets;
+
+    private int activeBuckets;
+
+    private long reusedBuckets;
+
+    public WindowOccupancy(long slotWidthInMillis, int buckets, int activeBuckets, long reusedBuckets) {
+        this.slotWidthInMillis = slotWidthInMillis;
+        this.buckets = buckets;
+        this.activeBuckets = activeBuckets;
+        this.reusedBuckets = reusedBuckets;
+    }
+
+    public long getSlotWidthInMillis() {
+        return slotWidthInMillis;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @return amount of buckets keeping data of slots inside the window
+     */
+    public int getActiveBuckets() {
+        return activeBuckets;
+    }
+
+    /**
+     * @return how many times buckets were reset lazily, when reused for newer slot
+     */
+    public long getReusedBuckets() {
+        return reusedBuckets;
+    }
+}
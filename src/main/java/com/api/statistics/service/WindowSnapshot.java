@@ -0,0 +1,42 @@
+package com.api.statistics.service;
+
+/**
+ * Immutable statistical data of all closed slots of the window, folded once per slot.
+ * Together with the bucket of open slot it gives statistics for the whole window.
+ */
+final class WindowSnapshot {
+
+    /**
+     * Slot which was open when snapshot was taken. Its bucket and only its bucket is not folded into this snapshot.
+     */
+    private final long openSlot;
+
+    private final int count;
+
+    private final double sum;
+
+    private final double max;
+
+    private final double min;
+
+    WindowSnapshot(long openSlot, PeriodStatistics closedSlots) {
+        this.openSlot = openSlot;
+        this.count = closedSlots.getCount();
+        this.sum = closedSlots.getSum();
+        this.max = closedSlots.getMax();
+        this.min = closedSlots.getMin();
+    }
+
+    long getOpenSlot() {
+        return openSlot;
+    }
+
+    /**
+     * @return new statistics object containing data of closed slots, open slot data can be accumulated to it.
+     */
+    PeriodStatistics toPeriodStatistics() {
+        PeriodStatistics statistics = new PeriodStatistics();
+        statistics.accumulate(count, sum, max, min);
+        return statistics;
+    }
+}
@@ -0,0 +1,54 @@
+package com.api.statistics.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Binary state of one statistics window exported by /statistics/state: magic number, version, time state was taken,
+ * layout of the window and fixed size record per bucket, see {@link WindowBucket#writeTo(java.io.DataOutput)}.
+ * Every bucket record keeps its epoch slot, so windows of several instances with the same slot width are merged
+ * by collecting the same slots from each of them.
+ */
+final class WindowState {
+
+    private static final int MAGIC = 0x57494E44;
+
+    private static final int VERSION = 1;
+
+    private WindowState() {
+    }
+
+    static void write(OutputStream output, StatisticsWindow window) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        window.writeLayout(out);
+        window.writeBuckets(out);
+        out.flush();
+    }
+
+    /**
+     * Reads buckets of the state into given window. Layout is checked first, so state of other window is rejected
+     * before anything is read into the window.
+     *
+     * @throws IOException if input is not a state of window with the same layout or is truncated
+     */
+    static void read(InputStream input, StatisticsWindow window) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a statistics window state or unsupported version");
+        }
+        // time of the exporting instance is not used, staleness is measured by local clock when state is fetched
+        in.readLong();
+        if (!window.readLayout(in)) {
+            throw new IOException("Window state has other amount of slots, slot width or histograms than local window");
+        }
+        window.readBuckets(in);
+    }
+}
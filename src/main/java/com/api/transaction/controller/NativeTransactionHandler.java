@@ -0,0 +1,86 @@
+package com.api.transaction.controller;
+
+import com.api.transaction.service.AsyncTransactionPersister;
+import com.api.transaction.service.IngestAdmission;
+import com.api.transaction.service.IngestResult;
+import com.api.transaction.service.LeanTransactionSaveService;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+import java.io.IOException;
+
+/**
+ * Native Undertow handler of POST /transactions, used instead of Spring MVC when nativehandlers.enabled is set.
+ * Body is received asynchronously and transaction is parsed, added to statistics and acknowledged on IO thread,
+ * persistence is handed off to {@link AsyncTransactionPersister}, so IO thread never waits for database.
+ * Body is parsed like /transactions/lean body: only amount, timestamp and transaction id are read.
+ * Responds with 201, 204 for transaction older than statistics period, 200 for duplicate, 400 for invalid body, 422 for transaction too far in the future,
+ * 503 if persistence queue or statistics pipeline ring is full or 429/503 if request is shed by {@link IngestAdmission}.
+ */
+public class NativeTransactionHandler implements HttpHandler {
+
+    private final LeanTransactionSaveService leanTransactionSaveService;
+
+    private final AsyncTransactionPersister persister;
+
+    private final IngestAdmission ingestAdmission;
+
+    public NativeTransactionHandler(LeanTransactionSaveService leanTransactionSaveService, AsyncTransactionPersister persister,
+                                    IngestAdmission ingestAdmission) {
+        this.leanTransactionSaveService = leanTransactionSaveService;
+        this.persister = persister;
+        this.ingestAdmission = ingestAdmission;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        exchange.setMaxEntitySize(LeanTransactionSaveService.MAX_BODY_SIZE);
+        exchange.getRequestReceiver().receiveFullBytes(this::accept, this::reject);
+    }
+
+    private void accept(HttpServerExchange exchange, byte[] body) {
+        IngestResult result = ingestAdmission.admit();
+        if (result == IngestResult.ACCEPTED) {
+            long start = exchange.getRequestStartTime() != -1 ? exchange.getRequestStartTime() : ingestAdmission.startTimer();
+            result = leanTransactionSaveService.acceptTransaction(body, 0, body.length, persister);
+            ingestAdmission.recordLatency(start);
+        }
+        switch (result) {
+            case ACCEPTED:
+                exchange.setStatusCode(StatusCodes.CREATED);
+                break;
+            case TOO_OLD:
+                exchange.setStatusCode(StatusCodes.NO_CONTENT);
+                break;
+            case DUPLICATE:
+                exchange.setStatusCode(StatusCodes.OK);
+                break;
+            case FUTURE:
+                exchange.setStatusCode(StatusCodes.UNPROCESSABLE_ENTITY);
+                break;
+            case REJECTED:
+                exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+                exchange.getResponseHeaders().put(Headers.RETRY_AFTER, "1");
+                break;
+            case THROTTLED:
+                exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS);
+                exchange.getResponseHeaders().put(Headers.RETRY_AFTER, "1");
+                break;
+            default:
+                exchange.setStatusCode(StatusCodes.BAD_REQUEST);
+        }
+        exchange.endExchange();
+    }
+
+    /**
+     * Body could not be read, e.g. it is too big or connection was closed
+     */
+    private void reject(HttpServerExchange exchange, IOException e) {
+        if (!exchange.isResponseStarted()) {
+            exchange.setStatusCode(StatusCodes.BAD_REQUEST);
+        }
+        exchange.endExchange();
+    }
+}
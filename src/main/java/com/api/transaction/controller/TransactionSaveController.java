@@ -1,16 +1,28 @@
 package com.api.transaction.controller;
 
 import com.api.transaction.repository.BankTransaction;
+import com.api.transaction.service.DuplicateTransactionException;
+import com.api.transaction.service.IngestAdmission;
+import com.api.transaction.service.IngestResult;
+import com.api.transaction.service.LeanTransactionSaveService;
+import com.api.transaction.service.TransactionBatchResult;
+import com.api.transaction.service.TransactionBatchSaveService;
 import com.api.transaction.service.TransactionSaveService;
+import io.undertow.servlet.handlers.ServletRequestContext;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
-import java.time.Instant;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
 
 /**
  *
@@ -22,15 +34,104 @@ public class TransactionSaveController {
     int statisticPeriodFromNow;
     @Inject
     TransactionSaveService transactionSaveService;
+    @Inject
+    TransactionBatchSaveService transactionBatchSaveService;
+    @Inject
+    LeanTransactionSaveService leanTransactionSaveService;
+    @Inject
+    IngestAdmission ingestAdmission;
+    @Inject
+    Clock clock;
 
 
+    /**
+     * Responds with 201, 204 if transaction is older than statistics period, 200 if transaction with the same transactionId
+     * and timestamp is already saved(retry), 422 if it is too far in the future, or 429/503 without saving it if ingest is overloaded,
+     * see {@link IngestAdmission}.
+     */
     @RequestMapping(path = "/transactions")
     public ResponseEntity saveBankTransaction(@RequestBody BankTransaction bankTransaction) {
-        BankTransaction transaction = transactionSaveService.saveTransaction(bankTransaction);
-        if (Instant.now().toEpochMilli() - transaction.getTimestamp() > statisticPeriodFromNow * 1000) {
+        IngestResult admission = ingestAdmission.admit();
+        if (admission != IngestResult.ACCEPTED) {
+            return ResponseEntity.status(shedStatus(admission)).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        long start = requestStart();
+        BankTransaction transaction;
+        try {
+            transaction = transactionSaveService.saveTransaction(bankTransaction);
+        } catch (DuplicateTransactionException e) {
+            return new ResponseEntity(HttpStatus.OK);
+        }
+        ingestAdmission.recordLatency(start);
+        if (clock.millis() - transaction.getTimestamp() > statisticPeriodFromNow * 1000) {
             return new ResponseEntity(HttpStatus.NO_CONTENT);
         }
         return new ResponseEntity(HttpStatus.CREATED);
     }
 
+    /**
+     * Lean version of /transactions for body with amount and timestamp only, see {@link LeanTransactionSaveService}.
+     * Responds with 201, 204 if transaction is older than statistics period, 200 if it is duplicate, 400 if body is invalid,
+     * 422 if it is too far in the future or 429/503 if it is shed, always without body.
+     */
+    @RequestMapping(path = "/transactions/lean", method = RequestMethod.POST)
+    public void saveLeanTransaction(InputStream body, HttpServletResponse response) throws IOException {
+        IngestResult result = ingestAdmission.admit();
+        if (result == IngestResult.ACCEPTED) {
+            long start = requestStart();
+            result = leanTransactionSaveService.saveTransaction(body);
+            ingestAdmission.recordLatency(start);
+        }
+        switch (result) {
+            case ACCEPTED:
+                response.setStatus(HttpStatus.CREATED.value());
+                break;
+            case TOO_OLD:
+                response.setStatus(HttpStatus.NO_CONTENT.value());
+                break;
+            case DUPLICATE:
+                response.setStatus(HttpStatus.OK.value());
+                break;
+            case FUTURE:
+                response.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+                break;
+            case REJECTED:
+            case THROTTLED:
+                response.setStatus(shedStatus(result).value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                break;
+            default:
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+        }
+    }
+
+    /**
+     * Saves many transactions at once. Body is JSON array of transactions or newline delimited JSON.
+     * Batch is admitted by queue depth and latency of single transactions as well, but its own latency is not measured.
+     *
+     * @return counts of transactions added to statistics, too old for statistics, too far in the future, invalid and duplicate ones
+     */
+    @RequestMapping(path = "/transactions/batch", method = RequestMethod.POST)
+    public ResponseEntity<TransactionBatchResult> saveBankTransactions(InputStream body) throws IOException {
+        IngestResult admission = ingestAdmission.admit();
+        if (admission != IngestResult.ACCEPTED) {
+            return ResponseEntity.status(shedStatus(admission)).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(transactionBatchSaveService.saveTransactions(body));
+    }
+
+    /**
+     * @return start of the request recorded by Undertow(see {@link com.api.server.AdmissionConfiguration}), so that latency
+     * includes waiting for worker thread, or current time if it is not recorded
+     */
+    private long requestStart() {
+        ServletRequestContext context = ServletRequestContext.current();
+        long start = context == null ? -1 : context.getExchange().getRequestStartTime();
+        return start != -1 ? start : ingestAdmission.startTimer();
+    }
+
+    private static HttpStatus shedStatus(IngestResult result) {
+        return result == IngestResult.THROTTLED ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
 }
@@ -2,9 +2,11 @@ package com.api.transaction.repository;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 
 /**
- * Bean holding data about single transaction.
+ * Bean holding data about single transaction. Account, merchant and currency are optional, statistics is also kept per each of them.
+ * Transaction id is optional too, it is given by client to deduplicate retries and is not saved.
  */
 @Entity
 @Table(name = "bank_transaction")
@@ -20,6 +22,19 @@ public class BankTransaction {
     @NotNull
     private Long timestamp;
 
+    @Size(max = 64)
+    private String account;
+
+    @Size(max = 64)
+    private String merchant;
+
+    @Size(max = 64)
+    private String currency;
+
+    @Transient
+    @Size(max = 64)
+    private String transactionId;
+
     public BankTransaction(double amount, Long timestamp) {
         this.amount = amount;
         this.timestamp = timestamp;
@@ -51,4 +66,36 @@ public class BankTransaction {
     public void setAmount(Double amount) {
         this.amount = amount;
     }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public String getMerchant() {
+        return merchant;
+    }
+
+    public void setMerchant(String merchant) {
+        this.merchant = merchant;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(String transactionId) {
+        this.transactionId = transactionId;
+    }
 }
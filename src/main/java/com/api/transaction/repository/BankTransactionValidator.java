@@ -0,0 +1,36 @@
+package com.api.transaction.repository;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Set;
+
+/**
+ * Checks bean validation constraints of {@link BankTransaction} like Hibernate does before insert, for stores which do not save entity through JPA.
+ */
+class BankTransactionValidator {
+
+    private final Validator validator;
+
+    /**
+     * Validator built from default validation provider, for stores created outside of the application context
+     */
+    BankTransactionValidator() {
+        this(Validation.buildDefaultValidatorFactory().getValidator());
+    }
+
+    BankTransactionValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * @throws ConstraintViolationException if transaction is not valid, it is answered with 400 as for jpa store
+     */
+    void validate(BankTransaction bankTransaction) {
+        Set<ConstraintViolation<BankTransaction>> violations = validator.validate(bankTransaction);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.api.transaction.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.function.Consumer;
+
+/**
+ * Default store saving every transaction synchronously through JPA repository.
+ * Batches are inserted synchronously too, but with one JDBC batch insert.
+ * Transactions appended without entity are inserted with plain JDBC insert, still synchronously.
+ */
+@Component
+@ConditionalOnProperty(name = "transactions.store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaTransactionStore implements TransactionStore {
+
+    private BankTransactionRepository bankTransactionRepository;
+
+    private TransactionBatchInserter inserter;
+
+    private TransactionBatchReader reader;
+
+    @Inject
+    public JpaTransactionStore(BankTransactionRepository bankTransactionRepository, JdbcTemplate jdbcTemplate) {
+        this.bankTransactionRepository = bankTransactionRepository;
+        this.inserter = new TransactionBatchInserter(jdbcTemplate);
+        this.reader = new TransactionBatchReader(jdbcTemplate);
+    }
+
+    @Override
+    public BankTransaction save(BankTransaction bankTransaction) {
+        return bankTransactionRepository.save(bankTransaction);
+    }
+
+    @Override
+    public void append(long timestamp, double amount) {
+        inserter.insert(timestamp, amount);
+    }
+
+    @Override
+    public void saveAll(TransactionBatch batch) {
+        inserter.insert(batch);
+    }
+
+    @Override
+    public void replay(long fromTimestamp, TransactionBatch chunk, Consumer<TransactionBatch> consumer) {
+        reader.read(fromTimestamp, chunk, consumer);
+    }
+}
@@ -0,0 +1,146 @@
+package com.api.transaction.repository;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * One file of {@link MappedLogTransactionStore}. File is preallocated for #capacity fixed width records and mapped into memory,
+ * so append is two writes to memory. Record is 16 bytes: timestamp with flipped sign bit followed by amount.
+ * Sign bit is flipped so that written record never starts with zero, and the first zero record marks the end of written data
+ * when segment is opened again.
+ */
+class LogSegment {
+
+    static final int RECORD_SIZE = 16;
+
+    private static final long WRITTEN = Long.MIN_VALUE;
+
+    private final Path path;
+
+    private final long firstSequence;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int capacity;
+
+    /**
+     * Amount of written records, guarded by lock of the store
+     */
+    private int size;
+
+    /**
+     * The latest timestamp of written records, guarded by lock of the store
+     */
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    private LogSegment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        while (size < capacity && buffer.getLong(size * RECORD_SIZE) != 0) {
+            maxTimestamp = Math.max(maxTimestamp, buffer.getLong(size * RECORD_SIZE) ^ WRITTEN);
+            size++;
+        }
+    }
+
+    /**
+     * Opens existing segment file or creates new one with given capacity. Existing file keeps its own capacity.
+     *
+     * @param firstSequence sequence number of the first record of the segment in the whole log
+     */
+    static LogSegment open(Path path, long firstSequence, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int records = (int) Math.max(capacity, channel.size() / RECORD_SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) records * RECORD_SIZE);
+            return new LogSegment(path, firstSequence, channel, buffer, records);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the latest timestamp of written records, Long.MIN_VALUE if there are none
+     */
+    long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Writes record after the last one. Caller should check that segment is not full.
+     */
+    void append(long timestamp, double amount) {
+        int offset = size * RECORD_SIZE;
+        buffer.putDouble(offset + 8, amount);
+        buffer.putLong(offset, timestamp ^ WRITTEN);
+        size++;
+        if (timestamp > maxTimestamp) {
+            maxTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Flushes written records to the disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Reads first #records records with timestamp not older than given one into the chunk, consumer is called each time chunk is full.
+     */
+    void read(int records, long fromTimestamp, TransactionBatch chunk, Consumer<TransactionBatch> consumer) {
+        for (int i = 0; i < records; i++) {
+            long timestamp = buffer.getLong(i * RECORD_SIZE) ^ WRITTEN;
+            if (timestamp >= fromTimestamp) {
+                chunk.add(timestamp, buffer.getDouble(i * RECORD_SIZE + 8));
+                if (chunk.isFull()) {
+                    consumer.accept(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes segment without records, e.g. preallocated one which was not used.
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+}
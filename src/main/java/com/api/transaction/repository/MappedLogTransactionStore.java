@@ -0,0 +1,337 @@
+package com.api.transaction.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Store appending transactions to binary log on local disk instead of database. Log is split into segment files of
+ * #segmentRecords fixed width records(see {@link LogSegment}), segment is memory mapped, so append is just a write to memory
+ * and costs microseconds. When segment is full new one is started, files are named by sequence number of their first record,
+ * so log is read in order of file names.
+ * <p>
+ * Written records are flushed to disk by separate syncer thread every #forceIntervalInMillis(group commit),
+ * {@link #getForcedCount()} shows how many appended transactions are durable. Records not flushed yet survive restart
+ * of the application, but can be lost if whole machine fails.
+ * <p>
+ * Syncer also creates and maps next segment in advance and flushes full segments, so append which starts new segment
+ * only switches to the prepared one and does not touch the file system(appends are done on server IO threads in native handlers mode).
+ * Append waits for the file system only if log is filled faster than syncer prepares segments.
+ */
+@Component
+@ConditionalOnProperty(name = "transactions.store.type", havingValue = "mapped-log")
+public class MappedLogTransactionStore implements TransactionStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedLogTransactionStore.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+
+    private final int segmentRecords;
+
+    private final long forceIntervalInMillis;
+
+    private final BankTransactionValidator validator;
+
+    /**
+     * All segments from the oldest one, the last one is current, guarded by this
+     */
+    private final List<LogSegment> segments = new ArrayList<>();
+
+    private LogSegment current;
+
+    /**
+     * Next segment created in advance by syncer, null until it is prepared, guarded by this
+     */
+    private LogSegment next;
+
+    /**
+     * Whether syncer is creating next segment now, guarded by this
+     */
+    private boolean preparing;
+
+    /**
+     * Full segments which are not flushed yet, guarded by this
+     */
+    private final List<LogSegment> unforced = new ArrayList<>();
+
+    private long appendedCount;
+
+    private final AtomicLong forcedCount = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread syncer;
+
+    public MappedLogTransactionStore(String directory, int segmentRecords, long forceIntervalInMillis) {
+        this(new BankTransactionValidator(), directory, segmentRecords, forceIntervalInMillis);
+    }
+
+    @Inject
+    public MappedLogTransactionStore(Validator validator,
+                                     @Value("${transactions.store.mappedlog.directory}") String directory,
+                                     @Value("${transactions.store.mappedlog.segmentrecords}") int segmentRecords,
+                                     @Value("${transactions.store.mappedlog.forceintervalinmillis}") long forceIntervalInMillis) {
+        this(new BankTransactionValidator(validator), directory, segmentRecords, forceIntervalInMillis);
+    }
+
+    private MappedLogTransactionStore(BankTransactionValidator validator, String directory, int segmentRecords, long forceIntervalInMillis) {
+        if (segmentRecords <= 0 || segmentRecords > Integer.MAX_VALUE / LogSegment.RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment should keep from 1 to " + Integer.MAX_VALUE / LogSegment.RECORD_SIZE
+                    + " records, but was " + segmentRecords);
+        }
+        this.directory = Paths.get(directory);
+        this.segmentRecords = segmentRecords;
+        this.forceIntervalInMillis = forceIntervalInMillis;
+        this.validator = validator;
+    }
+
+    /**
+     * Opens existing segments, appends continue after the last written record.
+     */
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long firstSequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            segments.add(LogSegment.open(file, firstSequence, segmentRecords));
+        }
+        // segment prepared in advance is not used until previous one is full
+        while (segments.size() > 1 && segments.get(segments.size() - 1).size() == 0 && !segments.get(segments.size() - 2).isFull()) {
+            segments.remove(segments.size() - 1).delete();
+        }
+        if (segments.isEmpty()) {
+            segments.add(LogSegment.open(segmentPath(0), 0, segmentRecords));
+        }
+        current = segments.get(segments.size() - 1);
+        appendedCount = current.getFirstSequence() + current.size();
+        forcedCount.set(appendedCount);
+        running = true;
+        syncer = new Thread(this::syncLoop, "transaction-log-syncer");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Stops syncer thread, flushes and closes all segments.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        if (syncer != null) {
+            syncer.interrupt();
+            syncer.join();
+        }
+        synchronized (this) {
+            for (LogSegment segment : unforced) {
+                segment.force();
+            }
+            unforced.clear();
+            current.force();
+            forcedCount.set(appendedCount);
+            for (LogSegment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            if (next != null) {
+                next.delete();
+                next = null;
+            }
+        }
+    }
+
+    /**
+     * Transaction is validated before it is appended, as far as it is not inserted through JPA.
+     */
+    @Override
+    public BankTransaction save(BankTransaction bankTransaction) {
+        validator.validate(bankTransaction);
+        append(bankTransaction.getTimestamp(), bankTransaction.getAmount());
+        return bankTransaction;
+    }
+
+    @Override
+    public synchronized void saveAll(TransactionBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            append(batch.getTimestamp(i), batch.getAmount(i));
+        }
+    }
+
+    /**
+     * Reads segments sequentially, including records which are not flushed to disk yet. Segments are skipped
+     * if their latest timestamp is older than given one, so usually only the last few segments are read.
+     */
+    @Override
+    public void replay(long fromTimestamp, TransactionBatch chunk, Consumer<TransactionBatch> consumer) {
+        List<LogSegment> written = new ArrayList<>();
+        LogSegment last;
+        int lastSize;
+        synchronized (this) {
+            for (LogSegment segment : segments) {
+                if (segment.getMaxTimestamp() >= fromTimestamp) {
+                    written.add(segment);
+                }
+            }
+            last = current;
+            lastSize = current.size();
+        }
+        for (LogSegment segment : written) {
+            segment.read(segment == last ? lastSize : segment.size(), fromTimestamp, chunk, consumer);
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Appends transaction to the current segment, starting new segment if it is full.
+     */
+    @Override
+    public synchronized void append(long timestamp, double amount) {
+        if (current.isFull()) {
+            roll();
+        }
+        current.append(timestamp, amount);
+        appendedCount++;
+    }
+
+    /**
+     * Append is a write to mapped memory, new segment is prepared in advance by syncer thread.
+     */
+    @Override
+    public boolean isAppendNonBlocking() {
+        return true;
+    }
+
+    /**
+     * @return amount of transactions appended to the log
+     */
+    public synchronized long getAppendedCount() {
+        return appendedCount;
+    }
+
+    /**
+     * @return amount of appended transactions flushed to disk
+     */
+    public long getForcedCount() {
+        return forcedCount.get();
+    }
+
+    /**
+     * @return amount of segment files
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Switches to the next segment prepared by syncer, full segment is flushed by syncer too.
+     * Segment is created here only if syncer has not prepared it yet.
+     */
+    private void roll() {
+        while (preparing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for new segment of transaction log", e);
+            }
+        }
+        unforced.add(current);
+        if (next != null) {
+            current = next;
+            next = null;
+        } else {
+            try {
+                current = LogSegment.open(segmentPath(appendedCount), appendedCount, segmentRecords);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create new segment of transaction log", e);
+            }
+        }
+        segments.add(current);
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private void syncLoop() {
+        while (running) {
+            try {
+                Thread.sleep(forceIntervalInMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            LogSegment segment;
+            List<LogSegment> full;
+            long appended;
+            long nextSequence = -1;
+            synchronized (this) {
+                segment = current;
+                appended = appendedCount;
+                full = new ArrayList<>(unforced);
+                unforced.clear();
+                if (next == null) {
+                    preparing = true;
+                    nextSequence = current.getFirstSequence() + current.capacity();
+                }
+            }
+            try {
+                for (LogSegment fullSegment : full) {
+                    fullSegment.force();
+                }
+                segment.force();
+                forcedCount.set(appended);
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not flush transaction log segment {}", segment.getPath(), e);
+            }
+            if (nextSequence >= 0) {
+                prepare(nextSequence);
+            }
+        }
+    }
+
+    /**
+     * Creates segment which follows the current one, appends wait for it meanwhile if current one is full.
+     */
+    private void prepare(long firstSequence) {
+        LogSegment prepared = null;
+        try {
+            prepared = LogSegment.open(segmentPath(firstSequence), firstSequence, segmentRecords);
+        } catch (IOException e) {
+            LOGGER.error("Could not create new segment of transaction log", e);
+        }
+        synchronized (this) {
+            preparing = false;
+            next = prepared;
+            notifyAll();
+        }
+    }
+}
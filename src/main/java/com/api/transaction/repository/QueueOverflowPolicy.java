@@ -0,0 +1,19 @@
+package com.api.transaction.repository;
+
+/**
+ * What {@link WriteBehindTransactionStore} does when its queue is full.
+ */
+public enum QueueOverflowPolicy {
+    /**
+     * Request thread waits until flusher frees space in the queue.
+     */
+    BLOCK,
+    /**
+     * Transaction is rejected with {@link TransactionQueueFullException}.
+     */
+    REJECT,
+    /**
+     * Request thread inserts transaction into database by itself.
+     */
+    CALLER_RUNS
+}
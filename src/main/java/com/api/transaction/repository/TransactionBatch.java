@@ -0,0 +1,60 @@
+package com.api.transaction.repository;
+
+/**
+ * Reusable chunk of transactions kept in primitive arrays. It is used for bulk ingest,
+ * so thousands of transactions can be passed to statistics and storage without creating {@link BankTransaction} for each.
+ */
+public class TransactionBatch {
+
+    private final long[] timestamps;
+
+    private final double[] amounts;
+
+    private int size;
+
+    public TransactionBatch(int capacity) {
+        timestamps = new long[capacity];
+        amounts = new double[capacity];
+    }
+
+    /**
+     * @return false if batch is full and transaction was not added
+     */
+    public boolean add(long timestamp, double amount) {
+        if (isFull()) {
+            return false;
+        }
+        timestamps[size] = timestamp;
+        amounts[size] = amount;
+        size++;
+        return true;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getAmount(int index) {
+        return amounts[index];
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == timestamps.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
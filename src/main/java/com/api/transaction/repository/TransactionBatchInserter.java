@@ -0,0 +1,62 @@
+package com.api.transaction.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Inserts many transactions with one JDBC batch insert. Hibernate can not batch inserts of entities with identity id,
+ * so for bulk inserts JPA repository is bypassed and id is generated by database.
+ */
+class TransactionBatchInserter {
+
+    static final String INSERT_SQL = "insert into bank_transaction (amount, timestamp) values (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    TransactionBatchInserter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    void insert(TransactionBatch batch) {
+        insert(new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
+                preparedStatement.setDouble(1, batch.getAmount(i));
+                preparedStatement.setLong(2, batch.getTimestamp(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+    }
+
+    void insert(long[] timestamps, double[] amounts, int count) {
+        insert(new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
+                preparedStatement.setDouble(1, amounts[i]);
+                preparedStatement.setLong(2, timestamps[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+
+    void insert(long timestamp, double amount) {
+        jdbcTemplate.update(INSERT_SQL, amount, timestamp);
+    }
+
+    private void insert(BatchPreparedStatementSetter setter) {
+        if (setter.getBatchSize() > 0) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, setter);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.api.transaction.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.function.Consumer;
+
+/**
+ * Reads transactions from database through cursor, chunk by chunk, so table is never loaded into memory.
+ * Rows are fetched from database by chunk capacity at once.
+ */
+class TransactionBatchReader {
+
+    static final String SELECT_SINCE_SQL = "select timestamp, amount from bank_transaction where timestamp >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    TransactionBatchReader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    void read(long fromTimestamp, TransactionBatch chunk, Consumer<TransactionBatch> consumer) {
+        chunk.clear();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_SINCE_SQL);
+            statement.setFetchSize(chunk.capacity());
+            statement.setLong(1, fromTimestamp);
+            return statement;
+        }, resultSet -> {
+            chunk.add(resultSet.getLong(1), resultSet.getDouble(2));
+            if (chunk.isFull()) {
+                consumer.accept(chunk);
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+            chunk.clear();
+        }
+    }
+}
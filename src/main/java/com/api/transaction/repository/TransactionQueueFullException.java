@@ -0,0 +1,11 @@
+package com.api.transaction.repository;
+
+/**
+ * Thrown when transaction can not be accepted because persistence is falling behind.
+ */
+public class TransactionQueueFullException extends RuntimeException {
+
+    public TransactionQueueFullException(String message) {
+        super(message);
+    }
+}
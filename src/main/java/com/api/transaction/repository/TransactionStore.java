@@ -0,0 +1,47 @@
+package com.api.transaction.repository;
+
+import java.util.function.Consumer;
+
+/**
+ * Storage where single transactions are kept as historical data. Implementation is chosen by transactions.store.type property.
+ */
+public interface TransactionStore {
+
+    /**
+     * Saves transaction. Depending on implementation transaction can be saved later,
+     * in this case returned transaction will not have id.
+     */
+    BankTransaction save(BankTransaction bankTransaction);
+
+    /**
+     * Saves single transaction given by its amount and timestamp, without creating entity. Used by lean ingest path,
+     * write-behind and mapped-log stores do not allocate here.
+     */
+    void append(long timestamp, double amount);
+
+    /**
+     * @return true if {@link #append(long, double)} never waits for database, so it can be called from server IO thread
+     */
+    default boolean isAppendNonBlocking() {
+        return false;
+    }
+
+    /**
+     * @return amount of saved transactions not persisted yet, read without locking, so it can be checked on every request
+     */
+    default int getQueueDepth() {
+        return 0;
+    }
+
+    /**
+     * Saves all transactions of the batch with as few database round trips as possible.
+     */
+    void saveAll(TransactionBatch batch);
+
+    /**
+     * Reads saved transactions with timestamp not older than given one. Transactions are read into given chunk,
+     * and consumer is called each time chunk is full(and once more for the rest), so all transactions are never kept in memory.
+     * Chunk is cleared after consumer is called.
+     */
+    void replay(long fromTimestamp, TransactionBatch chunk, Consumer<TransactionBatch> consumer);
+}
@@ -0,0 +1,310 @@
+package com.api.transaction.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.validation.Validator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Store which does not insert transaction in request thread. Transactions are put into bounded queue
+ * and separate flusher thread inserts them with JDBC batch inserts. Batch is inserted when it has
+ * #batchSize transactions or when #flushIntervalInMillis passed since flusher started to wait for it, whatever happens first.
+ * Durability is acknowledged per batch: {@link #getPersistedCount()} is increased after whole batch is inserted.
+ * <p>
+ * Queue is kept as preallocated arrays of primitives, so putting transaction to queue does not create any objects.
+ * What happens when queue is full is configured by {@link QueueOverflowPolicy}.
+ */
+@Component
+@ConditionalOnProperty(name = "transactions.store.type", havingValue = "write-behind")
+public class WriteBehindTransactionStore implements TransactionStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindTransactionStore.class);
+
+    private final TransactionBatchInserter inserter;
+
+    private final TransactionBatchReader reader;
+
+    private final BankTransactionValidator validator;
+
+    private final int batchSize;
+
+    private final long flushIntervalInNanos;
+
+    private final QueueOverflowPolicy overflowPolicy;
+
+    private final long[] timestamps;
+
+    private final double[] amounts;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Index of the first queued transaction and amount of queued transactions, changed under #lock.
+     * Size is volatile, so {@link #getQueueDepth()} reads it without lock.
+     */
+    private int head;
+
+    private volatile int size;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private final AtomicLong persistedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public WriteBehindTransactionStore(JdbcTemplate jdbcTemplate, int capacity, int batchSize, long flushIntervalInMillis,
+                                       QueueOverflowPolicy overflowPolicy) {
+        this(jdbcTemplate, new BankTransactionValidator(), capacity, batchSize, flushIntervalInMillis, overflowPolicy);
+    }
+
+    @Inject
+    public WriteBehindTransactionStore(JdbcTemplate jdbcTemplate, Validator validator,
+                                       @Value("${transactions.store.writebehind.capacity}") int capacity,
+                                       @Value("${transactions.store.writebehind.batchsize}") int batchSize,
+                                       @Value("${transactions.store.writebehind.flushintervalinmillis}") long flushIntervalInMillis,
+                                       @Value("${transactions.store.writebehind.overflow}") QueueOverflowPolicy overflowPolicy) {
+        this(jdbcTemplate, new BankTransactionValidator(validator), capacity, batchSize, flushIntervalInMillis, overflowPolicy);
+    }
+
+    private WriteBehindTransactionStore(JdbcTemplate jdbcTemplate, BankTransactionValidator validator, int capacity, int batchSize,
+                                        long flushIntervalInMillis, QueueOverflowPolicy overflowPolicy) {
+        if (batchSize <= 0 || capacity < batchSize) {
+            throw new IllegalArgumentException("Batch size should be positive and not bigger than capacity, but was "
+                    + batchSize + " and " + capacity);
+        }
+        this.inserter = new TransactionBatchInserter(jdbcTemplate);
+        this.reader = new TransactionBatchReader(jdbcTemplate);
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.flushIntervalInNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalInMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.timestamps = new long[capacity];
+        this.amounts = new double[capacity];
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::flushLoop, "transaction-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stops flusher thread after all queued transactions are inserted.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            flusher.join();
+        }
+    }
+
+    /**
+     * Transaction is validated before it is queued, as far as it is not inserted through JPA.
+     */
+    @Override
+    public BankTransaction save(BankTransaction bankTransaction) {
+        validator.validate(bankTransaction);
+        append(bankTransaction.getTimestamp(), bankTransaction.getAmount());
+        return bankTransaction;
+    }
+
+    /**
+     * Puts all transactions of the batch into the queue, they will be inserted together with other queued transactions.
+     * With {@link QueueOverflowPolicy#REJECT} batch is queued all or nothing: place for the whole batch is checked under the lock first,
+     * so caller which gets exception knows that none of its transactions will be inserted.
+     *
+     * @throws TransactionQueueFullException if queue has no place for the whole batch and {@link QueueOverflowPolicy#REJECT} is configured
+     */
+    @Override
+    public void saveAll(TransactionBatch batch) {
+        if (overflowPolicy != QueueOverflowPolicy.REJECT) {
+            for (int i = 0; i < batch.size(); i++) {
+                append(batch.getTimestamp(i), batch.getAmount(i));
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            if (timestamps.length - size < batch.size()) {
+                throw new TransactionQueueFullException("Transaction queue has no place for batch of " + batch.size() + " transactions");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                append(batch.getTimestamp(i), batch.getAmount(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads transactions already inserted into database, queued transactions are not read.
+     */
+    @Override
+    public void replay(long fromTimestamp, TransactionBatch chunk, Consumer<TransactionBatch> consumer) {
+        reader.read(fromTimestamp, chunk, consumer);
+    }
+
+    /**
+     * Puts transaction into the queue.
+     *
+     * @throws TransactionQueueFullException if queue is full and {@link QueueOverflowPolicy#REJECT} is configured
+     */
+    @Override
+    public void append(long timestamp, double amount) {
+        lock.lock();
+        try {
+            while (size == timestamps.length) {
+                switch (overflowPolicy) {
+                    case REJECT:
+                        throw new TransactionQueueFullException("Transaction queue is full");
+                    case CALLER_RUNS:
+                        lock.unlock();
+                        try {
+                            insert(new long[]{timestamp}, new double[]{amount}, 1);
+                        } finally {
+                            lock.lock();
+                        }
+                        return;
+                    default:
+                        notFull.awaitUninterruptibly();
+                }
+            }
+            int tail = (head + size) % timestamps.length;
+            timestamps[tail] = timestamp;
+            amounts[tail] = amount;
+            size++;
+            if (size == 1 || size == batchSize) {
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append only puts transaction into the queue, but with BLOCK and CALLER_RUNS policies it waits for database when queue is full.
+     */
+    @Override
+    public boolean isAppendNonBlocking() {
+        return overflowPolicy == QueueOverflowPolicy.REJECT;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return size;
+    }
+
+    /**
+     * @return amount of transactions inserted into database
+     */
+    public long getPersistedCount() {
+        return persistedCount.get();
+    }
+
+    /**
+     * @return amount of transactions which were dropped because their batch insert failed
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return amount of transactions waiting in the queue
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        long[] batchTimestamps = new long[batchSize];
+        double[] batchAmounts = new double[batchSize];
+        while (true) {
+            int drained;
+            try {
+                drained = drain(batchTimestamps, batchAmounts);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (drained < 0) {
+                return;
+            }
+            insert(batchTimestamps, batchAmounts, drained);
+        }
+    }
+
+    /**
+     * Waits for the batch and moves it from the queue to given arrays.
+     *
+     * @return amount of drained transactions or -1 if store is stopped and queue is empty
+     */
+    private int drain(long[] batchTimestamps, double[] batchAmounts) throws InterruptedException {
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (!running) {
+                    return -1;
+                }
+                notEmpty.await(flushIntervalInNanos, TimeUnit.NANOSECONDS);
+            }
+            long waitNanos = flushIntervalInNanos;
+            while (size < batchSize && running && waitNanos > 0) {
+                waitNanos = notEmpty.awaitNanos(waitNanos);
+            }
+            int drained = Math.min(size, batchSize);
+            for (int i = 0; i < drained; i++) {
+                int index = (head + i) % timestamps.length;
+                batchTimestamps[i] = timestamps[index];
+                batchAmounts[i] = amounts[index];
+            }
+            head = (head + drained) % timestamps.length;
+            size -= drained;
+            notFull.signalAll();
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insert(long[] batchTimestamps, double[] batchAmounts, int count) {
+        try {
+            inserter.insert(batchTimestamps, batchAmounts, count);
+            persistedCount.addAndGet(count);
+        } catch (RuntimeException e) {
+            failedCount.addAndGet(count);
+            LOGGER.error("Could not insert batch of {} transactions", count, e);
+        }
+    }
+}
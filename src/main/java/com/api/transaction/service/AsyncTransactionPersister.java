@@ -0,0 +1,93 @@
+package com.api.transaction.service;
+
+import com.api.metrics.service.HotPathMetrics;
+import com.api.transaction.repository.TransactionQueueFullException;
+import com.api.transaction.repository.TransactionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands transactions accepted by native handlers over to {@link TransactionStore} without waiting for it.
+ * If store appends without blocking(write-behind store with REJECT policy or mapped-log store), transaction is appended
+ * in caller thread, because store queues it anyway. Otherwise(jpa store) it is appended by small pool of persister threads
+ * with bounded queue, and caller is told when queue is full. Transaction is acknowledged before it is persisted,
+ * so if insert fails it is lost, the same as with write-behind store.
+ */
+@Component
+@ConditionalOnProperty(name = "nativehandlers.enabled", havingValue = "true")
+public class AsyncTransactionPersister {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTransactionPersister.class);
+
+    private final TransactionStore transactionStore;
+
+    private final HotPathMetrics metrics;
+
+    private final ThreadPoolExecutor persisters;
+
+    @Inject
+    public AsyncTransactionPersister(TransactionStore transactionStore, HotPathMetrics metrics,
+                                     @Value("${nativehandlers.persistthreads}") int threads,
+                                     @Value("${nativehandlers.persistqueuesize}") int queueSize) {
+        this.transactionStore = transactionStore;
+        this.metrics = metrics;
+        AtomicInteger number = new AtomicInteger();
+        this.persisters = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "transaction-persister-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return false if transaction can not be queued
+     */
+    public boolean persist(long timestamp, double amount) {
+        if (transactionStore.isAppendNonBlocking()) {
+            try {
+                append(timestamp, amount);
+                return true;
+            } catch (TransactionQueueFullException e) {
+                return false;
+            }
+        }
+        try {
+            persisters.execute(() -> {
+                try {
+                    append(timestamp, amount);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Could not persist transaction with timestamp {}", timestamp, e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits until queued transactions are persisted.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        persisters.shutdown();
+        persisters.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void append(long timestamp, double amount) {
+        long start = metrics.startTimer();
+        transactionStore.append(timestamp, amount);
+        metrics.recordPersist(start);
+    }
+}
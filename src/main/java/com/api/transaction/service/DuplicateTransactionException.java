@@ -0,0 +1,12 @@
+package com.api.transaction.service;
+
+/**
+ * Thrown when transaction with the same transaction id and timestamp was already saved, see {@link TransactionDeduplicator}.
+ * Retries are expected, so stack trace is not filled.
+ */
+public class DuplicateTransactionException extends RuntimeException {
+
+    public DuplicateTransactionException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,11 @@
+package com.api.transaction.service;
+
+/**
+ * Thrown when transaction timestamp is later than now by more than clock skew tolerance(statistics.maxfutureinmillis).
+ */
+public class FutureTransactionException extends RuntimeException {
+
+    public FutureTransactionException(String message) {
+        super(message);
+    }
+}
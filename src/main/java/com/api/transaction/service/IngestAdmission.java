@@ -0,0 +1,132 @@
+package com.api.transaction.service;
+
+import com.api.statistics.service.StatisticsPipeline;
+import com.api.transaction.repository.TransactionStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control of ingest(transactions.admission properties). Requests are shed before anything is saved when
+ * <ol>
+ * <li>transactions waiting for persistence(write-behind queue) or for aggregation(pipeline ring) are more than #maxQueueDepth:
+ * request gets 503, as far as backlog will not go away by itself soon,</li>
+ * <li>moving average of single transaction ingest latency(from receiving request) is over #maxLatencyInNanos: request gets 429 with probability
+ * 1 - limit / latency, so the more latency is over the limit the more requests are shed, and admitted ones keep measuring latency.</li>
+ * </ol>
+ * So under overload queues stay short and latency of admitted requests stays near the limit, instead of all requests
+ * waiting for full queue. Latency of every {@link #LATENCY_SAMPLING}th request on average is sampled, so request threads
+ * rarely write the same field. Average older than {@link #STALE_LATENCY_NANOS} is ignored.
+ */
+@Component
+public class IngestAdmission {
+
+    static final int LATENCY_SAMPLING = 8;
+
+    private static final long STALE_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final TransactionStore transactionStore;
+
+    private final StatisticsPipeline statisticsPipeline;
+
+    private final boolean enabled;
+
+    private final int maxQueueDepth;
+
+    private final long maxLatencyInNanos;
+
+    /**
+     * Exponential moving average of sampled latencies, each sample moves it by 1/8 of difference.
+     * Written without CAS, lost update only makes average slightly less smooth.
+     */
+    private volatile long latencyInNanos;
+
+    private volatile long latencySampledAt;
+
+    private final LongAdder throttled = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    @Inject
+    public IngestAdmission(TransactionStore transactionStore, Optional<StatisticsPipeline> statisticsPipeline,
+                           @Value("${transactions.admission.enabled}") boolean enabled,
+                           @Value("${transactions.admission.maxqueuedepth}") int maxQueueDepth,
+                           @Value("${transactions.admission.maxlatencyinmillis}") long maxLatencyInMillis) {
+        this.transactionStore = transactionStore;
+        this.statisticsPipeline = statisticsPipeline.orElse(null);
+        this.enabled = enabled;
+        this.maxQueueDepth = maxQueueDepth;
+        this.maxLatencyInNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyInMillis);
+    }
+
+    /**
+     * @return ACCEPTED if request can be served, otherwise REJECTED or THROTTLED it should be answered with
+     */
+    public IngestResult admit() {
+        if (!enabled) {
+            return IngestResult.ACCEPTED;
+        }
+        int queueDepth = transactionStore.getQueueDepth() + (statisticsPipeline == null ? 0 : statisticsPipeline.getDepth());
+        if (queueDepth > maxQueueDepth) {
+            rejected.increment();
+            return IngestResult.REJECTED;
+        }
+        long latency = latencyInNanos;
+        if (latency > maxLatencyInNanos && System.nanoTime() - latencySampledAt < STALE_LATENCY_NANOS
+                && ThreadLocalRandom.current().nextLong(latency) >= maxLatencyInNanos) {
+            throttled.increment();
+            return IngestResult.THROTTLED;
+        }
+        return IngestResult.ACCEPTED;
+    }
+
+    /**
+     * @return start of admitted request in nanos, 0 if admission control is switched off
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Samples latency of single transaction request started at given time. Controllers pass time request was received by server
+     * when it is known, so that time of waiting for worker thread is included.
+     */
+    public void recordLatency(long start) {
+        if (enabled && ThreadLocalRandom.current().nextInt(LATENCY_SAMPLING) == 0) {
+            long now = System.nanoTime();
+            long average = latencyInNanos;
+            latencyInNanos = average + (now - start - average) / 8;
+            latencySampledAt = now;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return moving average of single transaction ingest latency in micros
+     */
+    public long getLatencyInMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latencyInNanos);
+    }
+
+    /**
+     * @return amount of requests shed with 429 because of latency
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return amount of requests shed with 503 because of queue depth
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package com.api.transaction.service;
+
+/**
+ * Outcome of saving single transaction by {@link LeanTransactionSaveService}.
+ */
+public enum IngestResult {
+    /**
+     * Transaction is saved and added to statistics
+     */
+    ACCEPTED,
+    /**
+     * Transaction is saved, but it is older than statistics period
+     */
+    TOO_OLD,
+    /**
+     * Body is not a transaction with amount and timestamp, nothing is saved
+     */
+    INVALID,
+    /**
+     * Timestamp is later than clock skew tolerance allows, nothing is saved
+     */
+    FUTURE,
+    /**
+     * Transaction with the same id and timestamp is already saved, see {@link TransactionDeduplicator}, nothing is saved again
+     */
+    DUPLICATE,
+    /**
+     * Transaction can not be persisted now, because persistence queue is full or ingest is overloaded, nothing is saved
+     */
+    REJECTED,
+    /**
+     * Ingest latency is over the limit, request is shed to keep latency of others, nothing is saved
+     */
+    THROTTLED
+}
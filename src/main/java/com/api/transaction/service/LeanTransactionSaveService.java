@@ -0,0 +1,118 @@
+package com.api.transaction.service;
+
+import com.api.metrics.service.HotPathMetrics;
+import com.api.statistics.service.StatisticsService;
+import com.api.transaction.repository.TransactionStore;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lean ingest path for single transaction. Body is read into per thread buffer, parsed by {@link TransactionPayload} into primitives
+ * and handed to {@link TransactionStore#append(long, double)} and to statistics directly, without entity, Jackson data binding,
+ * Hibernate or boxing. With write-behind or mapped-log store nothing is allocated per transaction here,
+ * jpa store still inserts it synchronously with plain JDBC.
+ * Only amount, timestamp and transaction id are read, so account, merchant and currency are not saved and not counted per dimension.
+ * Transaction with id already seen for its timestamp is acknowledged as duplicate without saving it, see {@link TransactionDeduplicator}.
+ */
+@Component
+public class LeanTransactionSaveService {
+
+    public static final int MAX_BODY_SIZE = 4096;
+
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[MAX_BODY_SIZE]);
+
+    private static final ThreadLocal<TransactionPayload> PAYLOADS = ThreadLocal.withInitial(TransactionPayload::new);
+
+    private TransactionStore transactionStore;
+
+    private StatisticsService statisticsService;
+
+    private HotPathMetrics metrics;
+
+    private TransactionDeduplicator deduplicator;
+
+    @Inject
+    public LeanTransactionSaveService(TransactionStore transactionStore, StatisticsService statisticsService, HotPathMetrics metrics,
+                                      TransactionDeduplicator deduplicator) {
+        this.transactionStore = transactionStore;
+        this.statisticsService = statisticsService;
+        this.metrics = metrics;
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Reads whole body, body bigger than {@link #MAX_BODY_SIZE} is invalid.
+     */
+    public IngestResult saveTransaction(InputStream body) throws IOException {
+        byte[] buffer = BUFFERS.get();
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = body.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        if (length == buffer.length && body.read() != -1) {
+            return IngestResult.INVALID;
+        }
+        return saveTransaction(buffer, 0, length);
+    }
+
+    /**
+     * Same as {@link #saveTransaction(byte[], int, int)}, but transaction is handed to given persister, which saves it later,
+     * so this method never waits for database and can be called from server IO thread. In pipeline mode it does not wait
+     * for aggregator either, transaction is rejected if pipeline ring is full.
+     */
+    public IngestResult acceptTransaction(byte[] body, int offset, int length, AsyncTransactionPersister persister) {
+        TransactionPayload payload = PAYLOADS.get();
+        if (!payload.parse(body, offset, length)) {
+            return IngestResult.INVALID;
+        }
+        if (rejectsFuture(payload.getTimestamp())) {
+            return IngestResult.FUTURE;
+        }
+        if (deduplicator.isDuplicate(payload.getTransactionId(), payload.getTimestamp())) {
+            return IngestResult.DUPLICATE;
+        }
+        // place in pipeline ring is reserved before transaction is persisted, so that IO thread never waits for aggregator
+        long reservation = statisticsService.reserveRecentStatistics();
+        if (reservation == StatisticsService.RING_FULL || !persister.persist(payload.getTimestamp(), payload.getAmount())) {
+            statisticsService.cancelReservation(reservation);
+            deduplicator.forget(payload.getTransactionId(), payload.getTimestamp());
+            return IngestResult.REJECTED;
+        }
+        return statisticsService.updateRecentStatistics(payload.getTimestamp(), payload.getAmount(), reservation)
+                ? IngestResult.ACCEPTED : IngestResult.TOO_OLD;
+    }
+
+    public IngestResult saveTransaction(byte[] body, int offset, int length) {
+        TransactionPayload payload = PAYLOADS.get();
+        if (!payload.parse(body, offset, length)) {
+            return IngestResult.INVALID;
+        }
+        if (rejectsFuture(payload.getTimestamp())) {
+            return IngestResult.FUTURE;
+        }
+        if (deduplicator.isDuplicate(payload.getTransactionId(), payload.getTimestamp())) {
+            return IngestResult.DUPLICATE;
+        }
+        long start = metrics.startTimer();
+        try {
+            transactionStore.append(payload.getTimestamp(), payload.getAmount());
+        } catch (RuntimeException e) {
+            deduplicator.forget(payload.getTransactionId(), payload.getTimestamp());
+            throw e;
+        }
+        metrics.recordPersist(start);
+        return statisticsService.updateRecentStatistics(payload.getTimestamp(), payload.getAmount()) ? IngestResult.ACCEPTED : IngestResult.TOO_OLD;
+    }
+
+    private boolean rejectsFuture(long timestamp) {
+        if (statisticsService.isTooFarInFuture(timestamp)) {
+            metrics.countRejectedFuture(1);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+package com.api.transaction.service;
+
+import com.api.statistics.service.StatisticsService;
+import com.api.transaction.repository.TransactionBatch;
+import com.api.transaction.repository.TransactionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Statistical data is kept only in memory, so it is lost on restart. This service rebuilds it on startup
+ * from saved transactions of the longest period statistics is kept for(including rollups). It runs after all beans are created,
+ * but before web server is started, so no requests are served with incomplete statistics.
+ * Transactions are read by timestamp range(there is index on timestamp column) chunk by chunk,
+ * so recovery time depends only on amount of transactions in the window, not on the size of the table.
+ * <p>
+ * If checkpoints are switched on(statistics.checkpoint.enabled), buckets of slots closed at checkpoint time are first read
+ * from the last checkpoint, and only transactions since the slot open at checkpoint time are replayed, each window getting
+ * the ones it does not have from checkpoint. So future transactions and ones added while checkpoint was taken are not counted twice,
+ * and recovery time depends on the size of the windows, slot of the coarsest one and time passed since checkpoint.
+ * Transactions which arrived after checkpoint, but belong to slots closed at checkpoint time, are not recovered.
+ */
+@Component
+public class StatisticsRecoveryService implements SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsRecoveryService.class);
+
+    private TransactionStore transactionStore;
+
+    private StatisticsService statisticsService;
+
+    private int chunkSize;
+
+    private boolean enabled;
+
+    /**
+     * Checkpoint file, null if checkpoints are switched off
+     */
+    private Path checkpoint;
+
+    @Inject
+    public StatisticsRecoveryService(TransactionStore transactionStore, StatisticsService statisticsService,
+                                     @Value("${transactions.batch.chunksize}") int chunkSize,
+                                     @Value("${statistics.recovery.enabled}") boolean enabled,
+                                     @Value("${statistics.checkpoint.enabled}") boolean checkpointEnabled,
+                                     @Value("${statistics.checkpoint.file}") String checkpoint) {
+        this.transactionStore = transactionStore;
+        this.statisticsService = statisticsService;
+        this.chunkSize = chunkSize;
+        this.enabled = enabled;
+        this.checkpoint = checkpointEnabled ? Paths.get(checkpoint) : null;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) {
+            recover();
+        }
+    }
+
+    /**
+     * Reads checkpoint if it is kept and adds saved transactions of the window, which are newer than checkpoint, to statistics.
+     *
+     * @return amount of transactions added to statistics of the main window
+     */
+    public int recover() {
+        long startedAt = System.currentTimeMillis();
+        // the same clock checkpoint time is taken by
+        long fromTimestamp = statisticsService.currentTimeMillis() - statisticsService.getRetentionInMillis();
+        long checkpointTime = readCheckpoint(fromTimestamp);
+        if (checkpointTime >= 0) {
+            fromTimestamp = Math.max(fromTimestamp, statisticsService.getReplayFrom(checkpointTime));
+        }
+        int[] recovered = new int[1];
+        transactionStore.replay(fromTimestamp, new TransactionBatch(chunkSize),
+                chunk -> recovered[0] += statisticsService.updateRecoveredStatistics(chunk, checkpointTime));
+        LOGGER.info("Recovered statistics of {} transactions in {} ms", recovered[0], System.currentTimeMillis() - startedAt);
+        return recovered[0];
+    }
+
+    /**
+     * @return checkpoint time or -1 if checkpoint is not kept, does not exist or is older than the longest window
+     */
+    private long readCheckpoint(long notOlderThan) {
+        if (checkpoint == null) {
+            return -1;
+        }
+        try {
+            long checkpointTime = statisticsService.readCheckpoint(checkpoint, notOlderThan);
+            if (checkpointTime >= 0) {
+                LOGGER.info("Statistics is read from checkpoint taken {} ms ago", System.currentTimeMillis() - checkpointTime);
+            }
+            return checkpointTime;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read statistics checkpoint {}, all transactions of the window are replayed", checkpoint, e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.api.transaction.service;
+
+/**
+ * Counts of transactions processed by one bulk ingest request.
+ */
+public class TransactionBatchResult {
+
+    /**
+     * Saved transactions which are added to statistics
+     */
+    private int accepted;
+
+    /**
+     * Saved transactions which are too old to be added to statistics
+     */
+    private int tooOld;
+
+    /**
+     * Transactions without amount or timestamp, they are not saved
+     */
+    private int invalid;
+
+    /**
+     * Transactions with timestamp later than clock skew tolerance allows, they are not saved
+     */
+    private int future;
+
+    /**
+     * Transactions with transaction id and timestamp already saved, they are not saved again
+     */
+    private int duplicate;
+
+    public int getAccepted() {
+        return accepted;
+    }
+
+    public int getTooOld() {
+        return tooOld;
+    }
+
+    public int getInvalid() {
+        return invalid;
+    }
+
+    public int getFuture() {
+        return future;
+    }
+
+    public int getDuplicate() {
+        return duplicate;
+    }
+
+    void addSaved(int saved, int accepted) {
+        this.accepted += accepted;
+        this.tooOld += saved - accepted;
+    }
+
+    void addInvalid() {
+        invalid++;
+    }
+
+    void addFuture() {
+        future++;
+    }
+
+    void addDuplicate() {
+        duplicate++;
+    }
+}
@@ -0,0 +1,196 @@
+package com.api.transaction.service;
+
+import com.api.metrics.service.HotPathMetrics;
+import com.api.statistics.service.StatisticsService;
+import com.api.transaction.repository.TransactionBatch;
+import com.api.transaction.repository.TransactionStore;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Service saving many transactions sent in one request. Body can be JSON array of transactions or
+ * newline delimited JSON(one transaction object per line). Body is read with Jackson streaming parser,
+ * transactions are collected into chunks of #chunkSize and each chunk is saved with one batch insert
+ * and added to statistics at once, so whole list is never kept in memory.
+ * Please note that chunks are saved while body is read, so if body is broken in the middle,
+ * chunks read before are already saved. Transactions with bad fields, e.g. amount which is not finite number, are only counted as invalid.
+ * Transactions with transaction id are deduplicated by {@link TransactionDeduplicator}, so such body can be safely sent again:
+ * ids of the chunk which was not saved are forgotten.
+ */
+@Component
+public class TransactionBatchSaveService {
+
+    private JsonFactory jsonFactory;
+
+    private TransactionStore transactionStore;
+
+    private StatisticsService statisticsService;
+
+    private HotPathMetrics metrics;
+
+    private TransactionDeduplicator deduplicator;
+
+    private int chunkSize;
+
+    @Inject
+    public TransactionBatchSaveService(ObjectMapper objectMapper, TransactionStore transactionStore, StatisticsService statisticsService,
+                                       HotPathMetrics metrics, TransactionDeduplicator deduplicator,
+                                       @Value("${transactions.batch.chunksize}") int chunkSize) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.transactionStore = transactionStore;
+        this.statisticsService = statisticsService;
+        this.metrics = metrics;
+        this.deduplicator = deduplicator;
+        this.chunkSize = chunkSize;
+    }
+
+    public TransactionBatchResult saveTransactions(InputStream body) throws IOException {
+        TransactionBatchResult result = new TransactionBatchResult();
+        TransactionBatch batch = new TransactionBatch(chunkSize);
+        // transaction id hashes of the chunk, to forget them if chunk is not saved
+        long[] ids = new long[chunkSize];
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "Transaction object expected, but was " + token);
+                }
+                readTransaction(parser, batch, ids, result);
+                if (batch.isFull()) {
+                    save(batch, ids, result);
+                }
+                token = parser.nextToken();
+            }
+        } catch (IOException | RuntimeException e) {
+            // transactions read since the last saved chunk are not saved, so retry of the body should not find their ids
+            forget(batch, ids);
+            throw e;
+        }
+        save(batch, ids, result);
+        return result;
+    }
+
+    /**
+     * Reads fields of one transaction object. Parser should be positioned on the start of the object.
+     */
+    private void readTransaction(JsonParser parser, TransactionBatch batch, long[] ids, TransactionBatchResult result) throws IOException {
+        Double amount = null;
+        Long timestamp = null;
+        long id = TransactionDeduplicator.NO_ID;
+        boolean valid = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            try {
+                if ("amount".equals(field)) {
+                    amount = readAmount(parser, value);
+                } else if ("timestamp".equals(field)) {
+                    timestamp = readTimestamp(parser, value);
+                } else if ("transactionId".equals(field)) {
+                    Long parsedId = readTransactionId(parser, value);
+                    if (parsedId == null) {
+                        valid = false;
+                    } else {
+                        id = parsedId;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            } catch (NumberFormatException e) {
+                valid = false;
+            }
+        }
+        if (valid && amount != null && timestamp != null && statisticsService.isTooFarInFuture(timestamp)) {
+            metrics.countRejectedFuture(1);
+            result.addFuture();
+        } else if (valid && amount != null && timestamp != null && deduplicator.isDuplicate(id, timestamp)) {
+            result.addDuplicate();
+        } else if (valid && amount != null && timestamp != null) {
+            ids[batch.size()] = id;
+            batch.add(timestamp, amount);
+        } else {
+            result.addInvalid();
+        }
+    }
+
+    /**
+     * @return amount or null if it is not number, NaN or infinite(e.g. "NaN" string or literal overflowing double),
+     * such amount would spoil sum, average and max of the whole window
+     */
+    private Double readAmount(JsonParser parser, JsonToken value) throws IOException {
+        Double amount;
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            amount = parser.getDoubleValue();
+        } else if (value == JsonToken.VALUE_STRING) {
+            amount = Double.valueOf(parser.getText());
+        } else {
+            parser.skipChildren();
+            return null;
+        }
+        return Double.isFinite(amount) ? amount : null;
+    }
+
+    private Long readTimestamp(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            return Long.valueOf(parser.getText());
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * @return hash of id, {@link TransactionDeduplicator#NO_ID} for null or null if id is not string or number
+     */
+    private Long readTransactionId(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING || value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return TransactionDeduplicator.hash(parser.getText());
+        }
+        if (value == JsonToken.VALUE_NULL) {
+            return TransactionDeduplicator.NO_ID;
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private void save(TransactionBatch batch, long[] ids, TransactionBatchResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = metrics.startTimer();
+        try {
+            transactionStore.saveAll(batch);
+        } catch (RuntimeException e) {
+            forget(batch, ids);
+            throw e;
+        }
+        metrics.recordPersist(start);
+        int accepted = statisticsService.updateRecentStatistics(batch);
+        result.addSaved(batch.size(), accepted);
+        batch.clear();
+    }
+
+    /**
+     * Forgets ids of the chunk which was not saved and clears it.
+     */
+    private void forget(TransactionBatch batch, long[] ids) {
+        for (int i = 0; i < batch.size(); i++) {
+            deduplicator.forget(ids[i], batch.getTimestamp(i));
+        }
+        batch.clear();
+    }
+}
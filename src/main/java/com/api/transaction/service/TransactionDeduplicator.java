@@ -0,0 +1,178 @@
+package com.api.transaction.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deduplication of retried transactions by optional client transaction id(transactions.dedup properties).
+ * Retry of transaction carries the same id and the same timestamp, so id is remembered in {@link TransactionIdTable}
+ * of the slot its timestamp belongs to, and only that table is looked up. Tables form a ring like statistics window does:
+ * table of slot is reused for slot #size later, so ids are remembered at least as long as transaction is counted
+ * in statistics(period plus clock skew tolerance), and memory is #size * #capacityPerSlot * 8 bytes, allocated once.
+ * Nothing is read from database, id is not saved.
+ * <p>
+ * Id is 64 bit hash of its text: bytes of JSON string(or number) as they are in the body, entity id encoded to UTF-8,
+ * so the same id is matched by all endpoints unless it has escape sequences.
+ * Deduplication is best effort: when table of the slot is full id is not remembered(counted as overflow) and transaction is accepted,
+ * id remembered while table is reused for next slot can be lost.
+ */
+@Component
+public class TransactionDeduplicator {
+
+    /**
+     * Id hash meaning transaction has no id
+     */
+    public static final long NO_ID = TransactionIdTable.EMPTY;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final boolean enabled;
+
+    private final long slotWidthInMillis;
+
+    private final TransactionIdTable[] tables;
+
+    private final LongAdder duplicates = new LongAdder();
+
+    private final LongAdder overflows = new LongAdder();
+
+    @Inject
+    public TransactionDeduplicator(@Value("${transactions.dedup.enabled}") boolean enabled,
+                                   @Value("${statistics.periodinsec}") int period,
+                                   @Value("${statistics.maxfutureinmillis}") long maxFutureInMillis,
+                                   @Value("${transactions.dedup.slotinmillis}") long slotWidthInMillis,
+                                   @Value("${transactions.dedup.capacityperslot}") int capacityPerSlot) {
+        if (slotWidthInMillis <= 0 || Integer.bitCount(capacityPerSlot) != 1) {
+            throw new IllegalArgumentException("Slot width should be positive and capacity per slot power of two, but were "
+                    + slotWidthInMillis + " and " + capacityPerSlot);
+        }
+        this.enabled = enabled;
+        this.slotWidthInMillis = slotWidthInMillis;
+        // one more table, so that table of the oldest slot of the window is not reused by slot which just started
+        int size = enabled ? (int) ((period * 1000L + maxFutureInMillis + slotWidthInMillis - 1) / slotWidthInMillis) + 1 : 0;
+        tables = new TransactionIdTable[size];
+        for (int i = 0; i < size; i++) {
+            tables[i] = new TransactionIdTable(capacityPerSlot);
+        }
+    }
+
+    /**
+     * Remembers id of transaction with given timestamp.
+     *
+     * @param id hash by {@link #hash(CharSequence)} or {@link #hash(byte[], int, int)}, {@link #NO_ID} is never duplicate
+     * @return true if transaction with the same id and timestamp slot is already remembered, then it should not be saved again
+     */
+    public boolean isDuplicate(long id, long timestamp) {
+        if (!enabled || id == NO_ID) {
+            return false;
+        }
+        long epochSlot = Math.floorDiv(timestamp, slotWidthInMillis);
+        int result = tableFor(epochSlot).add(epochSlot, id);
+        if (result == TransactionIdTable.DUPLICATE) {
+            duplicates.increment();
+            return true;
+        }
+        if (result == TransactionIdTable.UNTRACKED) {
+            overflows.increment();
+        }
+        return false;
+    }
+
+    /**
+     * Forgets id remembered by {@link #isDuplicate(long, long)}, when transaction could not be saved, so that its retry is accepted.
+     */
+    public void forget(long id, long timestamp) {
+        if (!enabled || id == NO_ID) {
+            return;
+        }
+        long epochSlot = Math.floorDiv(timestamp, slotWidthInMillis);
+        tableFor(epochSlot).remove(epochSlot, id);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return amount of transactions recognized as duplicates
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return amount of ids which were not remembered, because table of their slot was full or reused for newer slot
+     */
+    public long getOverflowCount() {
+        return overflows.sum();
+    }
+
+    /**
+     * @return hash of id, {@link #NO_ID} if id is null or empty
+     */
+    public static long hash(CharSequence id) {
+        if (id == null || id.length() == 0) {
+            return NO_ID;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < id.length(); i++) {
+            int codePoint = id.charAt(i);
+            if (Character.isHighSurrogate((char) codePoint) && i + 1 < id.length() && Character.isLowSurrogate(id.charAt(i + 1))) {
+                codePoint = Character.toCodePoint((char) codePoint, id.charAt(++i));
+            }
+            // hashed as UTF-8 bytes, the same as raw body bytes are hashed
+            if (codePoint < 0x80) {
+                hash = (hash ^ codePoint) * FNV_PRIME;
+            } else if (codePoint < 0x800) {
+                hash = (hash ^ (0xc0 | codePoint >> 6)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint & 0x3f)) * FNV_PRIME;
+            } else if (codePoint < 0x10000) {
+                hash = (hash ^ (0xe0 | codePoint >> 12)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint >> 6 & 0x3f)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint & 0x3f)) * FNV_PRIME;
+            } else {
+                hash = (hash ^ (0xf0 | codePoint >> 18)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint >> 12 & 0x3f)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint >> 6 & 0x3f)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint & 0x3f)) * FNV_PRIME;
+            }
+        }
+        return finish(hash);
+    }
+
+    /**
+     * @return hash of id given as UTF-8 bytes, {@link #NO_ID} if there are no bytes
+     */
+    public static long hash(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return NO_ID;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ (bytes[i] & 0xff)) * FNV_PRIME;
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Mixes FNV-1a hash with finalizer of MurmurHash3, so that low bits used as table index are well distributed,
+     * and moves it off values reserved by {@link TransactionIdTable}.
+     */
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == TransactionIdTable.EMPTY || hash == TransactionIdTable.FORGOTTEN ? hash + 2 : hash;
+    }
+
+    private TransactionIdTable tableFor(long epochSlot) {
+        return tables[(int) Math.floorMod(epochSlot, (long) tables.length)];
+    }
+}
@@ -0,0 +1,117 @@
+package com.api.transaction.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Open addressing set of 64 bit transaction id hashes of one time slot, used by {@link TransactionDeduplicator}.
+ * Like {@link com.api.statistics.service.StatisticsWindow} bucket, table is preallocated, tagged with epoch slot it keeps ids for
+ * and cleared in place when id of newer slot arrives, so nothing is allocated after startup.
+ * <p>
+ * Ids are put by CAS into empty cells of {@link AtomicLongArray} with linear probing, so request threads do not take any lock,
+ * lock is taken only once per slot when table is cleared. Probing stops after {@link #MAX_PROBES} cells, so lookup time is bounded
+ * even when table is almost full: then id is not remembered. Removed id is replaced by {@link #FORGOTTEN} marker instead of
+ * {@link #EMPTY}, so that probing does not stop before ids put after it.
+ */
+class TransactionIdTable {
+
+    static final long EMPTY = 0;
+
+    static final long FORGOTTEN = 1;
+
+    static final int ADDED = 0;
+
+    static final int DUPLICATE = 1;
+
+    /**
+     * Id is not remembered, because table is full or keeps ids of newer slot
+     */
+    static final int UNTRACKED = 2;
+
+    static final int MAX_PROBES = 32;
+
+    private static final long NO_SLOT = Long.MIN_VALUE;
+
+    private volatile long epochSlot = NO_SLOT;
+
+    private final AtomicLongArray ids;
+
+    private final int mask;
+
+    /**
+     * @param capacity power of two
+     */
+    TransactionIdTable(int capacity) {
+        ids = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Remembers id of transaction of given slot. If table keeps ids of older slot it is cleared first.
+     *
+     * @param id hash other than {@link #EMPTY} and {@link #FORGOTTEN}
+     * @return ADDED, DUPLICATE if id is already remembered for this slot or UNTRACKED
+     */
+    int add(long epochSlot, long id) {
+        if (!holds(epochSlot)) {
+            return UNTRACKED;
+        }
+        int index = (int) id & mask;
+        for (int probes = 0; probes < MAX_PROBES; ) {
+            long current = ids.get(index);
+            if (current == id) {
+                return DUPLICATE;
+            }
+            if (current == EMPTY) {
+                if (ids.compareAndSet(index, EMPTY, id)) {
+                    return ADDED;
+                }
+                // another id was put into this cell meanwhile, it can be the same id
+                continue;
+            }
+            index = (index + 1) & mask;
+            probes++;
+        }
+        return UNTRACKED;
+    }
+
+    /**
+     * Removes id remembered for given slot, so transaction with this id is accepted again.
+     */
+    void remove(long epochSlot, long id) {
+        if (this.epochSlot != epochSlot) {
+            return;
+        }
+        int index = (int) id & mask;
+        for (int probes = 0; probes < MAX_PROBES; probes++) {
+            long current = ids.get(index);
+            if (current == EMPTY) {
+                return;
+            }
+            if (current == id) {
+                ids.compareAndSet(index, id, FORGOTTEN);
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Makes sure table keeps ids of given slot, clearing it if it keeps ids of older slot.
+     *
+     * @return false if table keeps ids of newer slot
+     */
+    private boolean holds(long epochSlot) {
+        long currentSlot = this.epochSlot;
+        return currentSlot == epochSlot || currentSlot < epochSlot && rotate(epochSlot);
+    }
+
+    private synchronized boolean rotate(long epochSlot) {
+        if (this.epochSlot < epochSlot) {
+            for (int i = 0; i < ids.length(); i++) {
+                ids.set(i, EMPTY);
+            }
+            this.epochSlot = epochSlot;
+        }
+        return this.epochSlot == epochSlot;
+    }
+}
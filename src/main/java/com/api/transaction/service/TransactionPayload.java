@@ -0,0 +1,316 @@
+package com.api.transaction.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mutable flyweight for {"amount": ..., "timestamp": ...} body of single transaction, with hand-rolled parser.
+ * One instance per thread is reused for every request, and body is parsed in place, so parsing does not allocate
+ * unless amount has more than 15 significant digits or big exponent(then it falls back to {@link Double#parseDouble(String)}).
+ * Like entity binding, amount and timestamp can be JSON numbers or strings with numbers. Optional transactionId string or number
+ * is not kept, only its hash for {@link TransactionDeduplicator} is calculated, other fields are skipped.
+ * Parser does not throw, broken body is reported by return value, as far as exceptions would allocate too.
+ */
+final class TransactionPayload {
+
+    /**
+     * Powers of ten represented exactly as double
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final byte[] AMOUNT = "amount".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TRANSACTION_ID = "transactionId".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+
+    private int position;
+
+    private int limit;
+
+    private long timestamp;
+
+    private double amount;
+
+    private long transactionId;
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    double getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return hash of transaction id, {@link TransactionDeduplicator#NO_ID} if body has no id
+     */
+    long getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return true if bytes are JSON object with numeric amount and timestamp, then they can be read by getters
+     */
+    boolean parse(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+        this.transactionId = TransactionDeduplicator.NO_ID;
+        boolean hasAmount = false;
+        boolean hasTimestamp = false;
+        if (!consume('{')) {
+            return false;
+        }
+        if (!consume('}')) {
+            do {
+                if (!consume('"')) {
+                    return false;
+                }
+                int keyStart = position;
+                int keyEnd = skipString();
+                if (keyEnd < 0 || !consume(':')) {
+                    return false;
+                }
+                if (matches(AMOUNT, keyStart, keyEnd)) {
+                    hasAmount = readAmount();
+                    if (!hasAmount) {
+                        return false;
+                    }
+                } else if (matches(TIMESTAMP, keyStart, keyEnd)) {
+                    hasTimestamp = readTimestamp();
+                    if (!hasTimestamp) {
+                        return false;
+                    }
+                } else if (matches(TRANSACTION_ID, keyStart, keyEnd)) {
+                    if (!readTransactionId()) {
+                        return false;
+                    }
+                } else if (!skipValue()) {
+                    return false;
+                }
+            } while (consume(','));
+            if (!consume('}')) {
+                return false;
+            }
+        }
+        skipWhitespace();
+        return position == limit && hasAmount && hasTimestamp;
+    }
+
+    private boolean readAmount() {
+        skipWhitespace();
+        boolean quoted = peek() == '"';
+        if (quoted) {
+            position++;
+        }
+        int start = position;
+        boolean negative = peek() == '-';
+        if (negative) {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        while (position < limit) {
+            byte current = buffer[position];
+            if (current == '.' && !fraction) {
+                fraction = true;
+            } else if (current >= '0' && current <= '9') {
+                anyDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (current - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else {
+                    exact = false;
+                    if (!fraction) {
+                        exponent++;
+                    }
+                }
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (!anyDigit) {
+            return false;
+        }
+        if (position < limit && (buffer[position] == 'e' || buffer[position] == 'E')) {
+            position++;
+            boolean negativeExponent = peek() == '-';
+            if (negativeExponent || peek() == '+') {
+                position++;
+            }
+            int exponentValue = 0;
+            int exponentStart = position;
+            while (position < limit && buffer[position] >= '0' && buffer[position] <= '9') {
+                exponentValue = Math.min(exponentValue * 10 + (buffer[position] - '0'), 1000);
+                position++;
+            }
+            if (position == exponentStart) {
+                return false;
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+        if (exact && digits <= 15 && exponent >= -22 && exponent <= 22) {
+            // both mantissa and power of ten are exact doubles, so one multiplication or division is rounded correctly
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            amount = negative ? -value : value;
+        } else {
+            amount = Double.parseDouble(new String(buffer, start, position - start, StandardCharsets.US_ASCII));
+        }
+        // literal overflowing double is parsed as infinity, it would spoil statistics of the whole window
+        return Double.isFinite(amount) && (!quoted || consumeNow('"'));
+    }
+
+    private boolean readTimestamp() {
+        skipWhitespace();
+        boolean quoted = peek() == '"';
+        if (quoted) {
+            position++;
+        }
+        boolean negative = peek() == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < limit && buffer[position] >= '0' && buffer[position] <= '9') {
+            if (++digits > 18) {
+                return false;
+            }
+            value = value * 10 + (buffer[position] - '0');
+            position++;
+        }
+        if (digits == 0) {
+            return false;
+        }
+        timestamp = negative ? -value : value;
+        return !quoted || consumeNow('"');
+    }
+
+    /**
+     * Hashes bytes of string(without quotes) or number, null means no id. Escape sequences are hashed as they are.
+     */
+    private boolean readTransactionId() {
+        skipWhitespace();
+        if (consumeNow('"')) {
+            int start = position;
+            int end = skipString();
+            if (end < 0) {
+                return false;
+            }
+            transactionId = TransactionDeduplicator.hash(buffer, start, end - start);
+            return true;
+        }
+        int start = position;
+        while (position < limit && (buffer[position] >= '0' && buffer[position] <= '9' || buffer[position] == '-'
+                || buffer[position] == '+' || buffer[position] == '.' || buffer[position] == 'e' || buffer[position] == 'E')) {
+            position++;
+        }
+        if (position > start) {
+            transactionId = TransactionDeduplicator.hash(buffer, start, position - start);
+            return true;
+        }
+        if (limit - position >= NULL.length && matches(NULL, position, position + NULL.length)) {
+            position += NULL.length;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips value of not used field: string, number, literal, object or array.
+     */
+    private boolean skipValue() {
+        skipWhitespace();
+        int start = position;
+        int depth = 0;
+        while (position < limit) {
+            byte current = buffer[position++];
+            if (current == '"') {
+                if (skipString() < 0) {
+                    return false;
+                }
+            } else if (current == '{' || current == '[') {
+                depth++;
+            } else if (current == '}' || current == ']') {
+                if (depth == 0) {
+                    position--;
+                    return position > start;
+                }
+                depth--;
+            } else if (current == ',' && depth == 0) {
+                position--;
+                return position > start;
+            }
+        }
+        return depth == 0;
+    }
+
+    /**
+     * Skips string body, position should be after opening quote.
+     *
+     * @return index of closing quote or -1 if string is not closed
+     */
+    private int skipString() {
+        while (position < limit) {
+            byte current = buffer[position++];
+            if (current == '\\') {
+                position++;
+            } else if (current == '"') {
+                return position - 1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(byte[] key, int start, int end) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consume(char expected) {
+        skipWhitespace();
+        return consumeNow(expected);
+    }
+
+    private boolean consumeNow(char expected) {
+        if (position < limit && buffer[position] == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private int peek() {
+        return position < limit ? buffer[position] : -1;
+    }
+
+    private void skipWhitespace() {
+        while (position < limit && (buffer[position] == ' ' || buffer[position] == '\n' || buffer[position] == '\r' || buffer[position] == '\t')) {
+            position++;
+        }
+    }
+}
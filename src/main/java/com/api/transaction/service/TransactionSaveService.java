@@ -1,8 +1,10 @@
 package com.api.transaction.service;
 
+import com.api.metrics.service.HotPathMetrics;
+import com.api.statistics.service.DimensionStatisticsService;
 import com.api.statistics.service.StatisticsService;
 import com.api.transaction.repository.BankTransaction;
-import com.api.transaction.repository.BankTransactionRepository;
+import com.api.transaction.repository.TransactionStore;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
@@ -10,24 +12,63 @@ import javax.inject.Inject;
 /**
  * Service saving data in  database(currently in memory database is configured) and updating in statistics data kept in memory.
  * Please note that when getting statistical data database will not be used. I use it to keep historical data.
+ * How transaction is saved depends on configured {@link TransactionStore}: it can be inserted synchronously or queued
+ * for batch insert, statistics data is updated immediately in both cases.
+ * Statistics per account, merchant and currency is updated only here, transactions saved by batches do not have them.
+ * Transaction with transaction id is saved only once within statistics window, see {@link TransactionDeduplicator}.
  */
 @Component
 public class TransactionSaveService {
 
-    private BankTransactionRepository bankTransactionRepository;
+    private TransactionStore transactionStore;
 
     private StatisticsService statisticsService;
 
+    private DimensionStatisticsService dimensionStatisticsService;
+
+    private HotPathMetrics metrics;
+
+    private TransactionDeduplicator deduplicator;
+
     @Inject
-    public TransactionSaveService(BankTransactionRepository bankTransactionRepository, StatisticsService statisticsService) {
-        this.bankTransactionRepository = bankTransactionRepository;
+    public TransactionSaveService(TransactionStore transactionStore, StatisticsService statisticsService,
+                                  DimensionStatisticsService dimensionStatisticsService, HotPathMetrics metrics,
+                                  TransactionDeduplicator deduplicator) {
+        this.transactionStore = transactionStore;
         this.statisticsService = statisticsService;
+        this.dimensionStatisticsService = dimensionStatisticsService;
+        this.metrics = metrics;
+        this.deduplicator = deduplicator;
     }
 
+    /**
+     * @throws FutureTransactionException    if transaction is too far in the future, then it is not saved
+     * @throws DuplicateTransactionException if transaction with the same id and timestamp is already saved, then it is not saved again
+     */
     public BankTransaction saveTransaction(BankTransaction bankTransaction) {
-        BankTransaction savedTransaction = bankTransactionRepository.save(bankTransaction);
+        Long timestamp = bankTransaction.getTimestamp();
+        if (timestamp != null && statisticsService.isTooFarInFuture(timestamp)) {
+            metrics.countRejectedFuture(1);
+            throw new FutureTransactionException("Transaction timestamp " + timestamp + " is too far in the future");
+        }
+        long id = TransactionDeduplicator.hash(bankTransaction.getTransactionId());
+        if (timestamp != null && deduplicator.isDuplicate(id, timestamp)) {
+            throw new DuplicateTransactionException("Transaction " + bankTransaction.getTransactionId() + " is already saved");
+        }
+        long start = metrics.startTimer();
+        BankTransaction savedTransaction;
+        try {
+            savedTransaction = transactionStore.save(bankTransaction);
+        } catch (RuntimeException e) {
+            if (timestamp != null) {
+                deduplicator.forget(id, timestamp);
+            }
+            throw e;
+        }
+        metrics.recordPersist(start);
 
         statisticsService.updateRecentStatistics(savedTransaction);
+        dimensionStatisticsService.updateStatistics(savedTransaction);
 
         return savedTransaction;
     }
@@ -1,7 +1,12 @@
-create table bank_transaction
+create table if not exists bank_transaction
 (
-   id BIGINT not null,
+   id BIGINT auto_increment not null,
    amount DOUBLE not null,
-   create_date_in_milis BIGINT not null,
+   timestamp BIGINT not null,
+   account VARCHAR(64),
+   merchant VARCHAR(64),
+   currency VARCHAR(64),
    primary key(id)
-);
\ No newline at end of file
+);
+-- statistics recovery reads transactions of last seconds on startup
+create index if not exists bank_transaction_timestamp_idx on bank_transaction(timestamp);
@@ -0,0 +1,46 @@
+package com.api.clock;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * UTC clock which is moved by tests only, so time dependent behaviour is tested without sleeping.
+ */
+public class ManualClock extends Clock {
+
+    private volatile long millis;
+
+    public ManualClock(long millis) {
+        this.millis = millis;
+    }
+
+    public void set(long millis) {
+        this.millis = millis;
+    }
+
+    public void advance(long deltaInMillis) {
+        millis += deltaInMillis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        throw new UnsupportedOperationException("Manual clock is kept in UTC only");
+    }
+}
@@ -0,0 +1,18 @@
+package com.api.clock;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Runs application with {@link ManualClock} instead of {@link CachedClock}, so endpoint tests move time by hand.
+ */
+@TestConfiguration
+public class ManualClockConfiguration {
+
+    @Bean
+    @Primary
+    public ManualClock manualClock() {
+        return new ManualClock(System.currentTimeMillis());
+    }
+}
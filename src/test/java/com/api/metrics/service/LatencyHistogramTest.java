@@ -0,0 +1,48 @@
+package com.api.metrics.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void givenRandomLatencies_whenSummarize_percentilesAreCloseToExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] latencies = new long[100000];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (long) Math.exp(random.nextGaussian() + 9);
+            histogram.record(latencies[i]);
+        }
+        Arrays.sort(latencies);
+
+        LatencySummary summary = histogram.summarize();
+
+        assertEquals(summary.getCount(), latencies.length);
+        assertEquals(summary.getMax(), latencies[latencies.length - 1] / 1000.0, 0);
+        assertEquals(summary.getP50(), latencies[latencies.length / 2 - 1] / 1000.0, latencies[latencies.length / 2 - 1] / 1000.0 * 0.07);
+        assertEquals(summary.getP99(), latencies[latencies.length * 99 / 100 - 1] / 1000.0, latencies[latencies.length * 99 / 100 - 1] / 1000.0 * 0.07);
+    }
+
+    @Test
+    public void givenAnyLatency_whenIndexOf_bucketValueIsClose() {
+        for (long nanos = 0; nanos < 1L << 40; nanos = nanos * 3 / 2 + 1) {
+            double value = LatencyHistogram.valueOf(LatencyHistogram.indexOf(nanos));
+            assertTrue(Math.abs(value - nanos) <= Math.max(1, nanos * 0.07));
+        }
+        assertEquals(LatencyHistogram.indexOf(Long.MAX_VALUE), LatencyHistogram.SIZE - 1);
+    }
+
+    @Test
+    public void givenNoLatencies_whenSummarize_emptySummaryReturned() {
+        LatencySummary summary = new LatencyHistogram().summarize();
+
+        assertEquals(summary.getCount(), 0);
+        assertEquals(summary.getP99(), 0, 0);
+    }
+}
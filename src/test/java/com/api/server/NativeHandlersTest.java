@@ -0,0 +1,85 @@
+package com.api.server;
+
+import com.api.Application;
+import com.api.clock.ManualClock;
+import com.api.clock.ManualClockConfiguration;
+import com.api.statistics.service.StatisticsWindow;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {Application.class, ManualClockConfiguration.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // own database, so that transactions saved here are not recovered into statistics of other test contexts
+        properties = {"nativehandlers.enabled=true", "spring.datasource.url=jdbc:h2:mem:nativehandlers"})
+public class NativeHandlersTest {
+
+    @Inject
+    private TestRestTemplate restTemplate;
+
+    @Inject
+    private StatisticsWindow recentStatistics;
+
+    @Inject
+    private ManualClock clock;
+
+    @Before
+    public void setUp() {
+        recentStatistics.evictBefore(Long.MAX_VALUE);
+        // requests of a test are made at the start of the next slot(second), ETag changes only when clock is moved to the next one
+        clock.set(clock.millis() - clock.millis() % 1000 + 1000);
+    }
+
+    private ResponseEntity<String> postTransaction(String json) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity("/transactions", new HttpEntity<>(json, headers), String.class);
+    }
+
+    @Test
+    public void givenNativeHandlers_whenPostTransactionAndGetStatistics_thenServedWithoutServlet() {
+        long timestamp = clock.millis();
+
+        assertEquals(HttpStatus.CREATED, postTransaction("{\"amount\": 12.5, \"timestamp\": " + timestamp + "}").getStatusCode());
+        assertEquals(HttpStatus.NO_CONTENT, postTransaction("{\"amount\": 1, \"timestamp\": " + (timestamp - 100 * 1000) + "}").getStatusCode());
+        ResponseEntity<String> invalid = postTransaction("{\"amount\": 1, \"timestamp\": null}");
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        // servlet path would respond with JSON error
+        assertNull(invalid.getBody());
+
+        ResponseEntity<Map> statistics = restTemplate.getForEntity("/statistics", Map.class);
+        assertEquals(1, statistics.getBody().get("count"));
+        assertEquals(12.5, statistics.getBody().get("max"));
+
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch(statistics.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange("/statistics", HttpMethod.GET, new HttpEntity<>(conditional), String.class)
+                .getStatusCode());
+
+        clock.advance(1000);
+        assertEquals(HttpStatus.OK, restTemplate.exchange("/statistics", HttpMethod.GET, new HttpEntity<>(conditional), String.class)
+                .getStatusCode());
+    }
+
+    @Test
+    public void givenNativeHandlers_whenOtherEndpointsCalled_thenServedBySpringMvc() {
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/statistics?window=15m", String.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity("/statistics?window=hour", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/metrics", String.class).getStatusCode());
+    }
+}
@@ -0,0 +1,97 @@
+package com.api.statistics.controller;
+
+import com.api.Application;
+import com.api.clock.ManualClock;
+import com.api.clock.ManualClockConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.inject.Inject;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+/**
+ * ETag of statistics changes when window moves by one slot, so application is run with clock moved by the test only.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {Application.class, ManualClockConfiguration.class},
+        // own database, so transactions saved at manual time are not recovered into statistics of other test contexts
+        properties = "spring.datasource.url=jdbc:h2:mem:etag")
+public class StatisticsETagEndpointTest {
+
+    @Inject
+    private WebApplicationContext webApplicationContext;
+
+    @Inject
+    private ManualClock clock;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        this.mockMvc = webAppContextSetup(webApplicationContext).build();
+        // requests of a test are made at the start of the next slot(second)
+        clock.set(clock.millis() - clock.millis() % 1000 + 1000);
+    }
+
+    @Test
+    public void givenETagOfStatistics_whenCallStatisticsAgain_thenReturn304UntilTransactionSaved() throws Exception {
+        saveTransaction();
+        String eTag = getETag();
+
+        mockMvc.perform(get("/statistics").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/statistics?window=1h").header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+
+        saveTransaction();
+        mockMvc.perform(get("/statistics").header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+        assertNotEquals(eTag, getETag());
+    }
+
+    @Test
+    public void givenETagOfStatistics_whenClockMovesWithinSlot_thenReturn304() throws Exception {
+        saveTransaction();
+        String eTag = getETag();
+
+        clock.advance(999);
+
+        mockMvc.perform(get("/statistics").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void givenETagOfStatistics_whenClockMovesToNextSlot_thenReturnNewETag() throws Exception {
+        saveTransaction();
+        String eTag = getETag();
+
+        clock.advance(1000);
+
+        mockMvc.perform(get("/statistics").header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+        assertNotEquals(eTag, getETag());
+    }
+
+    private void saveTransaction() throws Exception {
+        String json = "{\"amount\": 3, \"timestamp\": \"" + clock.millis() + "\"}";
+        mockMvc.perform(post("/transactions").content(json).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+    }
+
+    private String getETag() throws Exception {
+        return mockMvc.perform(get("/statistics"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+    }
+}
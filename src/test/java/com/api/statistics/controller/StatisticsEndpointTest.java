@@ -8,15 +8,20 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 import javax.inject.Inject;
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
 import static org.hamcrest.core.Is.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -57,4 +62,127 @@ public class StatisticsEndpointTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void givenWindowParameter_whenCallStatistics_thenStatisticsForWindowReturned() throws Exception {
+        mockMvc.perform(
+                get("/statistics?window=1h")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                get("/statistics?window=15m")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void givenUnsupportedWindow_whenCallStatistics_thenReturn400() throws Exception {
+        mockMvc.perform(
+                get("/statistics?window=48h")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(
+                get("/statistics?window=hour")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenTransactionWithMerchant_whenCallDimensionStatistics_thenStatisticsOfMerchantReturned() throws Exception {
+        long timestamp = Instant.now().toEpochMilli();
+        String json = "{\"amount\": 12.5, \"timestamp\": " + timestamp + ", \"merchant\": \"endpoint-merchant\", \"currency\": \"EUR\"}";
+        mockMvc.perform(
+                post("/transactions")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(
+                get("/statistics/dimension?by=merchant&key=endpoint-merchant")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("count", is(1)))
+                .andExpect(jsonPath("max", is(12.5)));
+        mockMvc.perform(
+                get("/statistics/top?by=merchant&k=5")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].key", is("endpoint-merchant")));
+    }
+
+    @Test
+    public void givenUnknownDimensionOrTooBigK_whenCallTop_thenReturn400() throws Exception {
+        mockMvc.perform(
+                get("/statistics/top?by=country")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(
+                get("/statistics/top?by=merchant&k=100000")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenState_whenCallStatisticsState_thenBinaryStateReturned() throws Exception {
+        MvcResult result = mockMvc.perform(get("/statistics/state"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM_VALUE, result.getResponse().getContentType());
+        // magic number and version, time, layout of 60 + 2(statistics.maxfutureinmillis) one second buckets and 40 bytes per bucket
+        assertEquals(4 + 4 + 8 + 4 + 8 + 1 + 62 * 40, result.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    public void givenRange_whenCallStatistics_thenStatisticsForRangeReturned() throws Exception {
+        mockMvc.perform(
+                get("/statistics?from=-30m&to=-2m")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                get("/statistics?from=30s")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenPercentilesNotKept_whenCallStatisticsWithPercentiles_thenReturn400() throws Exception {
+        mockMvc.perform(
+                get("/statistics")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("p50").doesNotExist());
+        mockMvc.perform(
+                get("/statistics?percentiles=true")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenStatisticsRead_whenCallMetrics_thenCountersAndLatenciesReturned() throws Exception {
+        mockMvc.perform(
+                get("/statistics")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(
+                get("/metrics")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("enabled", is(true)))
+                .andExpect(jsonPath("transactions.late").exists())
+                .andExpect(jsonPath("latency.read.p99").exists())
+                .andExpect(jsonPath("windows[0].buckets", is(62)))
+                .andExpect(jsonPath("admission.enabled", is(true)));
+    }
+
+    @Test
+    public void givenStreamSubscribed_whenTickPassed_thenStatisticsEventReceived() throws Exception {
+        MvcResult result = mockMvc.perform(
+                get("/statistics/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> result.getResponse().getContentAsString().startsWith("data:{\"max\""));
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.api.statistics.controller;
+
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StreamSubscriberTest {
+
+    @Test
+    public void givenSlowClient_whenStatisticsOffered_publisherIsNotBlockedAndClientGetsLatestStatistics() throws Exception {
+        CountDownLatch firstSendStarted = new CountDownLatch(1);
+        CountDownLatch releaseClient = new CountDownLatch(1);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        SseEmitter slowEmitter = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                firstSendStarted.countDown();
+                try {
+                    releaseClient.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                builder.build().stream()
+                        .filter(data -> data.getData() instanceof byte[])
+                        .forEach(data -> sent.add(new String((byte[]) data.getData(), StandardCharsets.UTF_8)));
+            }
+        };
+        ExecutorService senders = Executors.newSingleThreadExecutor();
+        StreamSubscriber subscriber = new StreamSubscriber(slowEmitter, s -> {
+        });
+
+        subscriber.offer(bytes("1"), senders);
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        subscriber.offer(bytes("2"), senders);
+        subscriber.offer(bytes("3"), senders);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        releaseClient.countDown();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> sent.size() == 2);
+        assertEquals(sent.get(0), "1");
+        assertEquals(sent.get(1), "3");
+        senders.shutdown();
+    }
+
+    @Test
+    public void givenClientDisconnected_whenStatisticsOffered_subscriberIsClosed() throws Exception {
+        SseEmitter brokenEmitter = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        ExecutorService senders = Executors.newSingleThreadExecutor();
+        List<StreamSubscriber> closed = new CopyOnWriteArrayList<>();
+        StreamSubscriber subscriber = new StreamSubscriber(brokenEmitter, closed::add);
+
+        subscriber.offer(bytes("1"), senders);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> closed.size() == 1);
+        senders.shutdown();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,145 @@
+package com.api.statistics.service;
+
+import com.api.clock.ManualClock;
+import com.api.transaction.repository.BankTransaction;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DimensionStatisticsServiceTest {
+
+    private static BankTransaction transaction(double amount, long timestamp, String account, String merchant) {
+        BankTransaction transaction = new BankTransaction(amount, timestamp);
+        transaction.setAccount(account);
+        transaction.setMerchant(merchant);
+        return transaction;
+    }
+
+    @Test
+    public void givenTransactionsOfSeveralMerchants_whenGetStatistics_thenOnlyTransactionsOfMerchantCounted() {
+        DimensionStatisticsService service = new DimensionStatisticsService(true, 60, 12, 100, 4, 16);
+        long now = System.currentTimeMillis();
+        service.updateStatistics(transaction(10, now, "a1", "m1"));
+        service.updateStatistics(transaction(30, now - 1000, "a2", "m1"));
+        service.updateStatistics(transaction(50, now, "a1", "m2"));
+        service.updateStatistics(transaction(70, now - 61000, "a1", "m1"));
+
+        PeriodStatistics merchant = service.getStatistics(Dimension.MERCHANT, "m1");
+        assertEquals(2, merchant.getCount());
+        assertEquals(40, merchant.getSum(), 0);
+        assertEquals(30, merchant.getMax(), 0);
+        assertEquals(10, merchant.getMin(), 0);
+
+        PeriodStatistics account = service.getStatistics(Dimension.ACCOUNT, "a1");
+        assertEquals(2, account.getCount());
+        assertEquals(0, service.getStatistics(Dimension.CURRENCY, "EUR").getCount());
+        assertEquals(0, service.getStatistics(Dimension.MERCHANT, "unknown").getCount());
+    }
+
+    @Test
+    public void givenMoreKeysThanCap_whenUpdateStatistics_thenExtraKeysAreNotTracked() {
+        DimensionStatisticsService service = new DimensionStatisticsService(true, 60, 12, 3, 4, 16);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            service.updateStatistics(transaction(1, now, null, "m" + i));
+        }
+
+        assertEquals(3, service.getKeyCount(Dimension.MERCHANT));
+        assertEquals(2, service.getUntrackedCount(Dimension.MERCHANT));
+        assertEquals(0, service.getKeyCount(Dimension.ACCOUNT));
+    }
+
+    @Test
+    public void givenKeysIdleForWholeWindow_whenCapReached_thenIdleKeysEvicted() {
+        ManualClock clock = new ManualClock(1_000_000);
+        DimensionStatisticsService service = new DimensionStatisticsService(true, 1, 10, 2, 4, 16, clock);
+        service.updateStatistics(transaction(1, clock.millis(), null, "old1"));
+        service.updateStatistics(transaction(1, clock.millis(), null, "old2"));
+        clock.advance(1200);
+        service.updateStatistics(transaction(1, clock.millis(), null, "new"));
+
+        assertEquals(1, service.getKeyCount(Dimension.MERCHANT));
+        assertEquals(0, service.getUntrackedCount(Dimension.MERCHANT));
+        assertEquals(1, service.getStatistics(Dimension.MERCHANT, "new").getCount());
+    }
+
+    @Test
+    public void givenTransactionWithinClockSkewTolerance_whenUpdateStatistics_thenOldestSlotOfWindowKept() {
+        // 500 ms before end of 5 second slot
+        ManualClock clock = new ManualClock(999_999_500L);
+        DimensionStatisticsService service = new DimensionStatisticsService(true, 60, 12, 100, 4, 16, 2000, clock);
+        // the oldest slot of the window and slot after the current one, 12 slots apart
+        service.updateStatistics(transaction(1, 999_940_100L, null, "m1"));
+        service.updateStatistics(transaction(2, clock.millis() + 1000, null, "m1"));
+
+        PeriodStatistics merchant = service.getStatistics(Dimension.MERCHANT, "m1");
+        assertEquals(2, merchant.getCount());
+        assertEquals(3, merchant.getSum(), 0);
+    }
+
+    @Test
+    public void givenSkewedMerchants_whenGetTop_thenMostFrequentReturnedFirst() {
+        DimensionStatisticsService service = new DimensionStatisticsService(true, 60, 12, 1000, 2, 4);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 200; i++) {
+            service.updateStatistics(transaction(2, now, null, i % 2 == 0 ? "hot" : "cold" + i));
+        }
+        for (int i = 0; i < 50; i++) {
+            service.updateStatistics(transaction(1, now, null, "warm"));
+        }
+
+        List<HeavyHitter> top = service.getTop(Dimension.MERCHANT, 2);
+        assertEquals(2, top.size());
+        assertEquals("hot", top.get(0).getKey());
+        assertTrue(top.get(0).getCount() >= 100);
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 100);
+        assertEquals("warm", top.get(1).getKey());
+    }
+
+    @Test
+    public void givenMoreKeysThanCounters_whenGetTop_thenEveryTransactionCountedOnceByDistinctKeys() {
+        HeavyHitters heavyHitters = new HeavyHitters(1, 8, 60000);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            heavyHitters.add("m" + random.nextInt(50), 1, 1000);
+        }
+
+        List<HeavyHitter> top = heavyHitters.top(100, 1000);
+        assertEquals(8, top.size());
+        assertEquals(8, top.stream().map(HeavyHitter::getKey).distinct().count());
+        // Space-Saving keeps total count of the stream in its counters
+        assertEquals(1000, top.stream().mapToLong(HeavyHitter::getCount).sum());
+    }
+
+    @Test
+    public void givenWriterHoldingWindowOfEvictedKey_whenNextEviction_thenLateTransactionMovedToNewWindow() {
+        DimensionIndex index = new DimensionIndex(12, 10, new HeavyHitters(1, 4, 60000));
+        index.add("m1", 100, 1, 100, 0);
+        KeyWindow evicted = index.getWindow("m1");
+        assertEquals(1, index.evictIdle(101));
+        assertEquals(0, index.getKeyCount());
+
+        // writer got the window before it was removed
+        evicted.add(105, 2);
+        index.evictIdle(101);
+
+        PeriodStatistics statistics = new PeriodStatistics();
+        index.getWindow("m1").collect(statistics, 101);
+        assertEquals(1, statistics.getCount());
+        assertEquals(2, statistics.getSum(), 0);
+        assertEquals(1, index.getKeyCount());
+    }
+
+    @Test
+    public void givenDisabled_whenUpdateStatistics_thenNothingKept() {
+        DimensionStatisticsService service = new DimensionStatisticsService(false, 60, 12, 100, 4, 16);
+        service.updateStatistics(transaction(10, System.currentTimeMillis(), "a1", "m1"));
+
+        assertEquals(0, service.getStatistics(Dimension.ACCOUNT, "a1").getCount());
+        assertEquals(0, service.getTop(Dimension.MERCHANT, 10).size());
+    }
+}
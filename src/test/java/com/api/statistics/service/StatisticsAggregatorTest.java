@@ -0,0 +1,157 @@
+package com.api.statistics.service;
+
+import com.api.clock.ManualClock;
+import com.api.metrics.service.HotPathMetrics;
+import com.api.transaction.repository.BankTransaction;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatisticsAggregatorTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    private StatisticsService local;
+
+    @Before
+    public void setUp() {
+        local = new StatisticsService(new StatisticsWindow(60), 60);
+    }
+
+    @After
+    public void tearDown() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    /**
+     * Starts HTTP server on random local port serving /statistics/state of given service, as another instance would.
+     *
+     * @return base url of the server
+     */
+    private String startPeer(StatisticsService peer) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/statistics/state", exchange -> {
+            ByteArrayOutputStream state = new ByteArrayOutputStream();
+            peer.writeState(state);
+            exchange.sendResponseHeaders(200, state.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                state.writeTo(body);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void pullAll(StatisticsAggregator aggregator) {
+        aggregator.getPeers().forEach(aggregator::pull);
+    }
+
+    @Test
+    public void givenWindowState_whenRead_thenSameBucketsRestored() throws IOException {
+        long now = System.currentTimeMillis();
+        local.updateRecentStatistics(new BankTransaction(10, now));
+        local.updateRecentStatistics(new BankTransaction(30, now - 5000));
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        local.writeState(state);
+
+        StatisticsWindow window = new StatisticsWindow(60);
+        WindowState.read(new ByteArrayInputStream(state.toByteArray()), window);
+
+        PeriodStatistics statistics = new PeriodStatistics();
+        local.collectForLastSeconds(statistics, window, now);
+        assertEquals(2, statistics.getCount());
+        assertEquals(30, statistics.getMax(), 0);
+        assertEquals(10, statistics.getMin(), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void givenStateOfWindowWithOtherSlots_whenRead_thenRejected() throws IOException {
+        StatisticsService peer = new StatisticsService(new StatisticsWindow(1 << 16), 60);
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        peer.writeState(state);
+
+        WindowState.read(new ByteArrayInputStream(state.toByteArray()), new StatisticsWindow(60));
+    }
+
+    @Test
+    public void givenSeveralPeers_whenGetStatistics_thenWindowsMerged() throws IOException {
+        long now = System.currentTimeMillis();
+        StatisticsService first = new StatisticsService(new StatisticsWindow(60), 60);
+        StatisticsService second = new StatisticsService(new StatisticsWindow(60), 60);
+        local.updateRecentStatistics(new BankTransaction(5, now));
+        first.updateRecentStatistics(new BankTransaction(10, now - 1000));
+        first.updateRecentStatistics(new BankTransaction(20, now));
+        second.updateRecentStatistics(new BankTransaction(100, now - 30000));
+        second.updateRecentStatistics(new BankTransaction(1000, now - 70000));
+        StatisticsAggregator aggregator = new StatisticsAggregator(local, startPeer(first) + "," + startPeer(second) + "/", 500, 3000, 1000);
+
+        pullAll(aggregator);
+        ClusterStatistics statistics = aggregator.getStatistics();
+
+        assertEquals(4, statistics.getCount());
+        assertEquals(135, statistics.getSum(), 0);
+        assertEquals(100, statistics.getMax(), 0);
+        assertEquals(5, statistics.getMin(), 0);
+        assertEquals(2, statistics.getPeers());
+        assertEquals(2, statistics.getFreshPeers());
+    }
+
+    @Test
+    public void givenPeerDownOrStale_whenGetStatistics_thenItsStateNotMerged() throws IOException {
+        ManualClock clock = new ManualClock(System.currentTimeMillis());
+        local = new StatisticsService(new StatisticsWindow(60), new StatisticsRollups(), new HotPathMetrics(), clock, 60);
+        StatisticsService first = new StatisticsService(new StatisticsWindow(60), 60);
+        first.updateRecentStatistics(new BankTransaction(10, clock.millis()));
+        StatisticsAggregator aggregator = new StatisticsAggregator(local, startPeer(first) + ",http://localhost:1", 500, 200, 200, clock);
+
+        pullAll(aggregator);
+        assertEquals(1, aggregator.getStatistics().getCount());
+        assertEquals(1, aggregator.getStatistics().getFreshPeers());
+
+        clock.advance(300);
+        ClusterStatistics statistics = aggregator.getStatistics();
+        assertEquals(0, statistics.getCount());
+        assertEquals(0, statistics.getFreshPeers());
+    }
+
+    @Test
+    public void givenPeerPulledAgain_whenGetStatistics_thenOnlyLatestStateMerged() throws IOException {
+        StatisticsService peer = new StatisticsService(new StatisticsWindow(60), 60);
+        long now = System.currentTimeMillis();
+        peer.updateRecentStatistics(new BankTransaction(10, now));
+        StatisticsAggregator aggregator = new StatisticsAggregator(local, startPeer(peer), 500, 3000, 1000);
+
+        pullAll(aggregator);
+        peer.updateRecentStatistics(new BankTransaction(20, now - 2000));
+        pullAll(aggregator);
+        pullAll(aggregator);
+
+        ClusterStatistics statistics = aggregator.getStatistics();
+        assertEquals(2, statistics.getCount());
+        assertEquals(30, statistics.getSum(), 0);
+    }
+
+    @Test
+    public void givenPeerWithOtherSlotWidth_whenPull_thenItsStateNotMerged() throws IOException {
+        StatisticsService peer = new StatisticsService(new StatisticsWindow(600, 100), 60);
+        peer.updateRecentStatistics(new BankTransaction(10, System.currentTimeMillis()));
+        StatisticsAggregator aggregator = new StatisticsAggregator(local, startPeer(peer), 500, 3000, 1000);
+
+        pullAll(aggregator);
+
+        assertEquals(0, aggregator.getStatistics().getCount());
+        assertEquals(0, aggregator.getStatistics().getFreshPeers());
+    }
+}
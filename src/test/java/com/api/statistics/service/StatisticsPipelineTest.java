@@ -0,0 +1,232 @@
+package com.api.statistics.service;
+
+import com.api.transaction.repository.TransactionBatch;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StatisticsPipeline pipeline;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    public void givenFullRing_whenOffer_thenRejectedUntilDrained() {
+        IngestRing ring = new IngestRing(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i, i));
+        }
+        assertFalse(ring.offer(4, 4));
+        assertEquals(4, ring.size());
+
+        TransactionBatch batch = new TransactionBatch(3);
+        assertEquals(3, ring.drain(batch));
+        assertEquals(2, batch.getTimestamp(2));
+        assertTrue(ring.offer(4, 4));
+        batch.clear();
+        assertEquals(2, ring.drain(batch));
+        assertEquals(4, batch.getTimestamp(1));
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void givenManyPublishers_whenPipelineEnabled_thenAllTransactionsAppliedByAggregator() throws InterruptedException {
+        StatisticsService statisticsService = new StatisticsService(new StatisticsWindow(60), 60);
+        // small ring, so publishers have to wait for aggregator
+        pipeline = new StatisticsPipeline(statisticsService, 64, 16);
+        pipeline.start();
+        int publishers = 8;
+        int perPublisher = 10000;
+        long now = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(publishers);
+        for (int p = 0; p < publishers; p++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perPublisher; i++) {
+                    statisticsService.updateRecentStatistics(now - i % 1000, 1 + i % 10);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> pipeline.getDepth() == 0
+                && statisticsService.getStatisticsForLastSeconds().getCount() == publishers * perPublisher);
+        PeriodStatistics statistics = statisticsService.getStatisticsForLastSeconds();
+        assertEquals(publishers * perPublisher * 5.5, statistics.getSum(), 0);
+        assertEquals(10, statistics.getMax(), 0);
+        assertEquals(1, statistics.getMin(), 0);
+    }
+
+    @Test
+    public void givenOldTransaction_whenPublished_thenReportedAsTooOld() {
+        StatisticsService statisticsService = new StatisticsService(new StatisticsWindow(60), 60);
+        pipeline = new StatisticsPipeline(statisticsService, 64, 16);
+        pipeline.start();
+
+        assertTrue(statisticsService.updateRecentStatistics(System.currentTimeMillis(), 1));
+        assertFalse(statisticsService.updateRecentStatistics(System.currentTimeMillis() - 61000, 1));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> statisticsService.getStatisticsForLastSeconds().getCount() == 1);
+    }
+
+    @Test
+    public void givenSnapshotPublished_whenLateTransactionApplied_thenItIsVisibleImmediately() {
+        StatisticsService statisticsService = new StatisticsService(new StatisticsWindow(60), 60);
+        pipeline = new StatisticsPipeline(statisticsService, 64, 16);
+        pipeline.start();
+        statisticsService.updateRecentStatistics(System.currentTimeMillis(), 1);
+        await().atMost(1, TimeUnit.SECONDS).until(() -> statisticsService.getStatisticsForLastSeconds().getCount() == 1);
+
+        statisticsService.updateRecentStatistics(System.currentTimeMillis() - 5000, 1);
+
+        await().atMost(200, TimeUnit.MILLISECONDS).until(() -> statisticsService.getStatisticsForLastSeconds().getCount() == 2);
+    }
+
+    @Test
+    public void givenPipelineEnabled_whenBatchEvictionAndCheckpoint_thenWindowIsWrittenAndReadByAggregatorOnly() throws IOException {
+        Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        StatisticsWindow window = new StatisticsWindow(60) {
+            @Override
+            public void add(long epochSlot, int count, double sum, double max, double min) {
+                threads.add(Thread.currentThread().getName());
+                super.add(epochSlot, count, sum, max, min);
+            }
+
+            @Override
+            public int evictBefore(long epochSlot) {
+                threads.add(Thread.currentThread().getName());
+                return super.evictBefore(epochSlot);
+            }
+
+            @Override
+            void writeBuckets(DataOutput out) throws IOException {
+                threads.add(Thread.currentThread().getName());
+                super.writeBuckets(out);
+            }
+        };
+        StatisticsService statisticsService = new StatisticsService(window, 60);
+        pipeline = new StatisticsPipeline(statisticsService, 64, 16);
+        pipeline.start();
+        long now = System.currentTimeMillis();
+        TransactionBatch batch = new TransactionBatch(3);
+        batch.add(now, 1);
+        batch.add(now - 1000, 2);
+        batch.add(now - 61000, 3);
+
+        assertEquals(statisticsService.updateRecentStatistics(batch), 2);
+        statisticsService.cleanupOldData();
+        statisticsService.writeCheckpoint(folder.getRoot().toPath().resolve("checkpoint"));
+
+        assertEquals(threads, Collections.singleton("statistics-aggregator"));
+        assertEquals(statisticsService.getStatisticsForLastSeconds().getCount(), 2);
+    }
+
+    @Test
+    public void givenBatchFailedToApply_whenPublishMore_thenAggregatorStillApplies() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        StatisticsService statisticsService = new StatisticsService(new StatisticsWindow(60), 60) {
+            @Override
+            int applyPipelineBatch(TransactionBatch batch) {
+                if (failing.getAndSet(false)) {
+                    throw new IllegalStateException("Broken batch");
+                }
+                return super.applyPipelineBatch(batch);
+            }
+        };
+        pipeline = new StatisticsPipeline(statisticsService, 64, 16);
+        pipeline.start();
+        pipeline.publish(System.currentTimeMillis(), 1);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !failing.get());
+
+        for (int i = 0; i < 100; i++) {
+            pipeline.publish(System.currentTimeMillis(), 2);
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> statisticsService.getStatisticsForLastSeconds().getCount() == 100);
+    }
+
+    @Test
+    public void givenReservedPlace_whenStop_thenWaitsUntilItIsPublished() throws InterruptedException {
+        StatisticsService statisticsService = new StatisticsService(new StatisticsWindow(60), 60);
+        pipeline = new StatisticsPipeline(statisticsService, 64, 16);
+        pipeline.start();
+        long sequence = pipeline.reserve();
+        Thread stopping = new Thread(() -> {
+            try {
+                pipeline.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopping.start();
+        stopping.join(200);
+        assertTrue(stopping.isAlive());
+
+        pipeline.publish(sequence, System.currentTimeMillis(), 5);
+        stopping.join(5000);
+
+        assertFalse(stopping.isAlive());
+        assertEquals(1, statisticsService.getStatisticsForLastSeconds().getCount());
+    }
+
+    @Test
+    public void givenStoppedPipeline_whenCall_thenTaskRunByCaller() throws InterruptedException {
+        StatisticsService statisticsService = new StatisticsService(new StatisticsWindow(60), 60);
+        pipeline = new StatisticsPipeline(statisticsService, 64, 16);
+        pipeline.start();
+        assertEquals(pipeline.call(() -> Thread.currentThread().getName()), "statistics-aggregator");
+        pipeline.stop();
+
+        assertEquals(pipeline.call(() -> Thread.currentThread().getName()), Thread.currentThread().getName());
+    }
+
+    @Test
+    public void givenFullRing_whenReserve_thenRejectedWithoutWaitingAndCancelledPlacesSkipped() {
+        StatisticsService statisticsService = new StatisticsService(new StatisticsWindow(60), 60);
+        pipeline = new StatisticsPipeline(statisticsService, 4, 16);
+        // aggregator is not started yet, so ring is not drained
+        statisticsService.usePipeline(pipeline);
+        long now = System.currentTimeMillis();
+        long[] reservations = new long[4];
+        for (int i = 0; i < reservations.length; i++) {
+            reservations[i] = statisticsService.reserveRecentStatistics();
+        }
+
+        assertEquals(statisticsService.reserveRecentStatistics(), StatisticsService.RING_FULL);
+        assertEquals(pipeline.getFullRejections(), 1);
+
+        assertTrue(statisticsService.updateRecentStatistics(now, 1, reservations[0]));
+        statisticsService.cancelReservation(reservations[1]);
+        assertTrue(statisticsService.updateRecentStatistics(now, 2, reservations[2]));
+        statisticsService.cancelReservation(reservations[3]);
+        pipeline.start();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> pipeline.getDepth() == 0
+                && statisticsService.getStatisticsForLastSeconds().getCount() == 2);
+        assertEquals(statisticsService.getStatisticsForLastSeconds().getSum(), 3, 0);
+    }
+}
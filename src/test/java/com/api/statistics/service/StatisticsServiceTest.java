@@ -1,57 +1,68 @@
 package com.api.statistics.service;
 
+import com.api.clock.ManualClock;
+import com.api.metrics.service.HotPathMetrics;
 import com.api.transaction.repository.BankTransaction;
+import com.api.transaction.repository.TransactionBatch;
 import org.awaitility.Duration;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.concurrent.ConcurrentHashMap;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class StatisticsServiceTest {
 
     private StatisticsService statisticsService;
 
-    private ConcurrentHashMap<LocalDateTime, PeriodStatistics> recentStatistics;
+    private StatisticsWindow recentStatistics;
 
     private int statisticsPeriodFromNow = 60;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
 
     @Before
     public void setUp() {
-        recentStatistics = new ConcurrentHashMap<>();
+        recentStatistics = new StatisticsWindow(statisticsPeriodFromNow);
         statisticsService = new StatisticsService(recentStatistics, statisticsPeriodFromNow);
 
     }
 
     @Test
     public void givenFirstTransaction_whenUpdatingRecent_OneStatisticsAdded() {
-        LocalDateTime transactionDate = LocalDateTime.now();
-        long timestampInUTC = transactionDate.atZone(ZoneId.systemDefault()).toEpochSecond() * 1000;
+        long timestampInUTC = System.currentTimeMillis();
         double amount = 10.0;
         BankTransaction transaction = new BankTransaction(amount, timestampInUTC);
 
         statisticsService.updateRecentStatistics(transaction);
 
-        assertEquals(recentStatistics.size(), 1);
-        LocalDateTime transactionSecond = transactionDate.withNano(0);
-        assertNotNull(recentStatistics.get(transactionSecond));
+        assertEquals(recentStatistics.activeBuckets(0), 1);
+        PeriodStatistics transactionSecond = recentStatistics.collect(timestampInUTC / 1000, timestampInUTC / 1000);
+        assertEquals(transactionSecond.getCount(), 1);
 
 
     }
 
     @Test
     public void givenTransactionsInDifferentSeconds_whenUpdateRecentInParallel_2statisticsAdded() {
-        LocalDateTime transactionDate = LocalDateTime.now();
-        long timestampInUTC1 = transactionDate.atZone(ZoneId.systemDefault()).toEpochSecond() * 1000;
+        long timestampInUTC1 = System.currentTimeMillis();
         double amount = 10.0;
 
         ExecutorService executorService = Executors.newFixedThreadPool(5);
@@ -65,7 +76,7 @@ public class StatisticsServiceTest {
                     }
                 })
                 .forEach(runnable -> executorService.submit(runnable));
-        await().atMost(Duration.ONE_MINUTE).until(() -> recentStatistics.size() == 10);
+        await().atMost(Duration.ONE_MINUTE).until(() -> recentStatistics.activeBuckets(0) == 10);
 
         executorService.shutdown();
 
@@ -73,8 +84,8 @@ public class StatisticsServiceTest {
 
     @Test
     public void givenTransactionInSameSecond_whenUpdateRecent_statisticsAreMerged() {
-        LocalDateTime transactionDate = LocalDateTime.now();
-        long timestampInUTC = transactionDate.atZone(ZoneId.systemDefault()).toEpochSecond() * 1000;
+        long transactionSecond = System.currentTimeMillis() / 1000;
+        long timestampInUTC = transactionSecond * 1000;
         double amount = 10.0;
 
         BankTransaction transaction1 = new BankTransaction(amount, timestampInUTC);
@@ -82,52 +93,52 @@ public class StatisticsServiceTest {
         ExecutorService executorService = Executors.newFixedThreadPool(2);
         executorService.execute(() -> statisticsService.updateRecentStatistics(transaction1));
         executorService.execute(() -> statisticsService.updateRecentStatistics(transaction2));
-        await().atMost(Duration.ONE_MINUTE).until(() -> recentStatistics.size() == 1);
+        await().atMost(Duration.ONE_MINUTE)
+                .until(() -> recentStatistics.collect(transactionSecond, transactionSecond).getCount() == 2);
 
-        assertEquals(recentStatistics.size(), 1);
-        PeriodStatistics statistics = recentStatistics.get(transactionDate.withNano(0));
+        assertEquals(recentStatistics.activeBuckets(0), 1);
+        PeriodStatistics statistics = recentStatistics.collect(transactionSecond, transactionSecond);
         assertNotNull(statistics);
         assertEquals(statistics.getCount(), 2);
         assertEquals(statistics.getMax(), amount, 0);
         assertEquals(statistics.getMin(), amount - 5, 0);
         assertEquals(statistics.getAvg(), (amount + amount - 5) / 2, 0);
+        executorService.shutdown();
     }
 
     @Test
     public void givenPeriodStatisticsForLastMinute_whenGetStatisticsForLastMinute_correctStatisticReturned() {
-        LocalDateTime transactionDate = LocalDateTime.now();
-        int n = 59; // this amount of statistics we want to create in a loop.
-        // statistics data is incremental from iteration step so later we can check by formulas
+        long nowSecond = System.currentTimeMillis() / 1000;
+        int n = 58; // this amount of seconds we want to fill in a loop.
+        // amount is incremental from iteration step so later we can check by formulas
         IntStream.range(1, n + 1)
-                .mapToObj(i -> new PeriodStatistics(i + 1, i, i, i, 2 * i))
-                .forEach(periodStatistics ->
-                        recentStatistics.put(transactionDate.minusSeconds(periodStatistics.getCount()), periodStatistics));
+                .forEach(i -> recentStatistics.add(nowSecond - i, i));
 
         PeriodStatistics periodStatistics = statisticsService.getStatisticsForLastSeconds();
 
         assertNotNull(periodStatistics);
         int totalCount = periodStatistics.getCount();
-        assertEquals(periodStatistics.getMax(), n + 1, 0);
+        assertEquals(periodStatistics.getMax(), n, 0);
         assertEquals(periodStatistics.getMin(), 1, 0);
-        assertEquals(totalCount, n * (n + 1) / 2);// sum of numbers from 1 to n
-        assertEquals(periodStatistics.getAvg(), 2 * (n + 1) * n / (2 * totalCount), 0);
+        assertEquals(totalCount, n);
+        assertEquals(periodStatistics.getSum(), n * (n + 1) / 2, 0);// sum of numbers from 1 to n
+        assertEquals(periodStatistics.getAvg(), (double) (n + 1) / 2, 0);
     }
 
     @Test
     public void givenOldStatistics_whenGetStatisticsForLastMinute_oldStatisticsExcluded() {
-        LocalDateTime transactionDate = LocalDateTime.now();
-        PeriodStatistics validPeriodStatistics = new PeriodStatistics(11, 10, 10, 2, 2 * 10);
-        PeriodStatistics expiredPeriodStatistics = new PeriodStatistics(12, 14, 18, 7, 2 * 100);
-        recentStatistics.put(transactionDate, validPeriodStatistics);
-        recentStatistics.put(transactionDate.minusSeconds(100), expiredPeriodStatistics);
+        long nowSecond = System.currentTimeMillis() / 1000;
+        recentStatistics.add(nowSecond, 10);
+        recentStatistics.add(nowSecond, 2);
+        recentStatistics.add(nowSecond - 100, 18);
 
         PeriodStatistics periodStatistics = statisticsService.getStatisticsForLastSeconds();
 
         assertNotNull(periodStatistics);
-        assertEquals(periodStatistics.getMax(), validPeriodStatistics.getMax(), 0);
-        assertEquals(periodStatistics.getMin(), validPeriodStatistics.getMin(), 0);
-        assertEquals(periodStatistics.getCount(), validPeriodStatistics.getCount());
-        assertEquals(periodStatistics.getAvg(), validPeriodStatistics.getSum() / validPeriodStatistics.getCount(), 0);
+        assertEquals(periodStatistics.getMax(), 10, 0);
+        assertEquals(periodStatistics.getMin(), 2, 0);
+        assertEquals(periodStatistics.getCount(), 2);
+        assertEquals(periodStatistics.getAvg(), 6, 0);
     }
 
     @Test
@@ -141,17 +152,419 @@ public class StatisticsServiceTest {
 
     @Test
     public void givenOldStatisticsInRecentstatistics_whenCleanUpOldData_oldStatisticsIsRemoved() {
-        LocalDateTime transactionDate = LocalDateTime.now();
-        PeriodStatistics validPeriodStatistics = new PeriodStatistics(11, 10, 10, 2, 2 * 10);
-        PeriodStatistics expiredPeriodStatistics = new PeriodStatistics(12, 14, 18, 7, 2 * 100);
-        recentStatistics.put(transactionDate, validPeriodStatistics);
-        recentStatistics.put(transactionDate.minusSeconds(100), expiredPeriodStatistics);
+        long nowSecond = System.currentTimeMillis() / 1000;
+        recentStatistics.add(nowSecond, 10);
+        recentStatistics.add(nowSecond - 100, 18);
 
         statisticsService.cleanupOldData();
 
-        assertEquals(recentStatistics.size(), 1);
-        assertNotNull(recentStatistics.get(transactionDate));
+        assertEquals(recentStatistics.activeBuckets(0), 1);
+        assertEquals(recentStatistics.collect(nowSecond, nowSecond).getCount(), 1);
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void givenStaleBucket_whenTransactionForSameSlotArrives_bucketIsReset() {
+        long nowSecond = System.currentTimeMillis() / 1000;
+        recentStatistics.add(nowSecond - statisticsPeriodFromNow, 18);
+
+        recentStatistics.add(nowSecond, 10);
+
+        assertEquals(recentStatistics.activeBuckets(0), 1);
+        PeriodStatistics statistics = recentStatistics.collect(0, Long.MAX_VALUE);
+        assertEquals(statistics.getCount(), 1);
+        assertEquals(statistics.getMax(), 10, 0);
+    }
+
+    @Test
+    public void givenBucketWithNewerSecond_whenOldTransactionForSameSlotArrives_transactionIgnored() {
+        long nowSecond = System.currentTimeMillis() / 1000;
+        recentStatistics.add(nowSecond, 10);
+
+        recentStatistics.add(nowSecond - statisticsPeriodFromNow, 18);
+
+        PeriodStatistics statistics = recentStatistics.collect(0, Long.MAX_VALUE);
+        assertEquals(statistics.getCount(), 1);
+        assertEquals(statistics.getMax(), 10, 0);
+    }
+
+    @Test
+    public void givenManyWritersInSameSecond_whenUpdateRecent_noUpdatesLost() throws InterruptedException {
+        long timestampInUTC = System.currentTimeMillis() / 1000 * 1000;
+        int writers = 8;
+        int transactionsPerWriter = 10000;
+        ExecutorService executorService = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        IntStream.range(0, writers)
+                .forEach(writer -> executorService.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    IntStream.range(0, transactionsPerWriter)
+                            .forEach(i -> statisticsService.updateRecentStatistics(new BankTransaction(writer * transactionsPerWriter + i + 1, timestampInUTC)));
+                }));
+
+        start.countDown();
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+
+        int total = writers * transactionsPerWriter;
+        PeriodStatistics statistics = recentStatistics.collect(timestampInUTC / 1000, timestampInUTC / 1000);
+        assertEquals(statistics.getCount(), total);
+        assertEquals(statistics.getMax(), total, 0);
+        assertEquals(statistics.getMin(), 1, 0);
+        assertEquals(statistics.getSum(), (double) total * (total + 1) / 2, 0);
+    }
+
+    @Test
+    public void givenSnapshotPublished_whenGetStatisticsForLastMinute_closedAndOpenSecondsAreAccumulated() {
+        long nowSecond = System.currentTimeMillis() / 1000;
+        recentStatistics.add(nowSecond - 10, 18);
+        recentStatistics.add(nowSecond - 100, 30);
+        statisticsService.publishSnapshot();
+
+        statisticsService.updateRecentStatistics(new BankTransaction(2, System.currentTimeMillis()));
+        PeriodStatistics periodStatistics = statisticsService.getStatisticsForLastSeconds();
+
+        assertEquals(periodStatistics.getCount(), 2);
+        assertEquals(periodStatistics.getMax(), 18, 0);
+        assertEquals(periodStatistics.getMin(), 2, 0);
+        assertEquals(periodStatistics.getAvg(), 10, 0);
+    }
+
+    @Test
+    public void givenBatchOfTransactions_whenUpdateRecent_aggregatedPerSecondAndOldOnesIgnored() {
+        long timestampInUTC = System.currentTimeMillis() / 1000 * 1000;
+        TransactionBatch batch = new TransactionBatch(10);
+        batch.add(timestampInUTC, 10);
+        batch.add(timestampInUTC + 100, 4);
+        batch.add(timestampInUTC - 5000, 20);
+        batch.add(timestampInUTC - 100 * 1000, 50);// 100 sec
+
+        int accepted = statisticsService.updateRecentStatistics(batch);
+
+        assertEquals(accepted, 3);
+        assertEquals(recentStatistics.activeBuckets(0), 2);
+        PeriodStatistics currentSecond = recentStatistics.collect(timestampInUTC / 1000, timestampInUTC / 1000);
+        assertEquals(currentSecond.getCount(), 2);
+        assertEquals(currentSecond.getMax(), 10, 0);
+        assertEquals(currentSecond.getMin(), 4, 0);
+        PeriodStatistics periodStatistics = statisticsService.getStatisticsForLastSeconds();
+        assertEquals(periodStatistics.getCount(), 3);
+        assertEquals(periodStatistics.getSum(), 34, 0);
+    }
+
+    @Test
+    public void givenSubSecondSlots_whenGetStatisticsForLastMinute_windowStartIsAccurateToSlot() {
+        StatisticsWindow window = new StatisticsWindow(statisticsPeriodFromNow * 10, 100);
+        StatisticsService service = new StatisticsService(window, statisticsPeriodFromNow);
+        long now = System.currentTimeMillis();
+        service.updateRecentStatistics(new BankTransaction(10, now - 59800));
+        service.updateRecentStatistics(new BankTransaction(2, now));
+        window.add(window.slotOf(now - 60150), 100);
+
+        PeriodStatistics periodStatistics = service.getStatisticsForLastSeconds();
+
+        assertEquals(periodStatistics.getCount(), 2);
+        assertEquals(periodStatistics.getMax(), 10, 0);
+        assertEquals(periodStatistics.getMin(), 2, 0);
+    }
+
+    @Test
+    public void givenRollups_whenGetStatisticsForLongerPeriods_transactionsOfPeriodAccumulated() {
+        StatisticsRollups rollups = new StatisticsRollups(new StatisticsWindow(60, 60 * 1000L), new StatisticsWindow(24, 60 * 60 * 1000L));
+        StatisticsService service = new StatisticsService(recentStatistics, rollups, statisticsPeriodFromNow);
+        long now = System.currentTimeMillis();
+        service.updateRecentStatistics(new BankTransaction(1, now));
+        service.updateRecentStatistics(new BankTransaction(2, now - 30 * 1000));
+        service.updateRecentStatistics(new BankTransaction(3, now - 10 * 60 * 1000));
+        service.updateRecentStatistics(new BankTransaction(4, now - 3 * 60 * 60 * 1000));
+        service.updateRecentStatistics(new BankTransaction(5, now - 30 * 60 * 60 * 1000));
+
+        assertEquals(service.getStatisticsForLastSeconds().getCount(), 2);
+        assertEquals(service.getStatisticsForLast(60 * 1000).getCount(), 2);
+        assertEquals(service.getStatisticsForLast(15 * 60 * 1000).getCount(), 3);
+        assertEquals(service.getStatisticsForLast(60 * 60 * 1000).getCount(), 3);
+        PeriodStatistics day = service.getStatisticsForLast(24 * 60 * 60 * 1000);
+        assertEquals(day.getCount(), 4);
+        assertEquals(day.getSum(), 10, 0);
+        assertEquals(day.getMax(), 4, 0);
+        assertEquals(day.getMin(), 1, 0);
+    }
+
+    @Test
+    public void givenManualClock_whenClockAdvances_windowMovesWithoutWaiting() {
+        ManualClock clock = new ManualClock(1_000_000_000L);
+        StatisticsService service = new StatisticsService(recentStatistics, new StatisticsRollups(), new HotPathMetrics(), clock, statisticsPeriodFromNow);
+        assertTrue(service.updateRecentStatistics(clock.millis() - 59 * 1000, 1));
+        assertTrue(service.updateRecentStatistics(clock.millis(), 2));
+        assertEquals(service.getStatisticsForLastSeconds().getCount(), 2);
+
+        clock.advance(1000);
+        assertEquals(service.getStatisticsForLastSeconds().getCount(), 1);
+        assertEquals(service.getStatisticsForLastSeconds().getMax(), 2, 0);
+        assertEquals(service.updateRecentStatistics(clock.millis() - 61 * 1000, 3), false);
+
+        clock.advance(60 * 1000);
+        assertEquals(service.getStatisticsForLastSeconds().getCount(), 0);
+    }
+
+    @Test
+    public void givenTransactionFurtherInFutureThanTolerance_whenUpdateRecent_rejectedAndWindowKept() {
+        ManualClock clock = new ManualClock(1_000_000_000L);
+        StatisticsWindow window = new StatisticsWindow(statisticsPeriodFromNow + 2);
+        StatisticsService service = new StatisticsService(window, new StatisticsRollups(), new HotPathMetrics(), clock, statisticsPeriodFromNow, 2000);
+        assertTrue(service.updateRecentStatistics(clock.millis() - 30 * 1000, 1));
+
+        // bucket of this slot is the bucket of the slot 30 seconds ago
+        assertTrue(service.isTooFarInFuture(clock.millis() + 32 * 1000));
+        assertEquals(service.updateRecentStatistics(clock.millis() + 32 * 1000, 2), false);
+        assertTrue(service.updateRecentStatistics(clock.millis() + 2000, 3));
+
+        PeriodStatistics statistics = service.getStatisticsForLastSeconds();
+        assertEquals(statistics.getCount(), 2);
+        assertEquals(statistics.getSum(), 4, 0);
+    }
+
+    @Test
+    public void givenTransactionWithinClockSkewTolerance_whenUpdateRecent_oldestSlotOfEveryRollupKept() {
+        // 500 ms before end of an hour, so future transaction is in the next minute and hour
+        ManualClock clock = new ManualClock(1_000_800_000L - 500);
+        StatisticsRollups rollups = new StatisticsRollups(new StatisticsWindow(60, 60 * 1000L, false, 1),
+                new StatisticsWindow(24, 60 * 60 * 1000L, false, 1));
+        StatisticsService service = new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow, 1000, false, 2), rollups,
+                new HotPathMetrics(), clock, statisticsPeriodFromNow, 2000);
+        // the oldest slots of the last hour and of the last day
+        service.updateRecentStatistics(1_000_800_000L - 60 * 60 * 1000 + 100, 1);
+        service.updateRecentStatistics(1_000_800_000L - 24 * 60 * 60 * 1000 + 100, 2);
+
+        assertTrue(service.updateRecentStatistics(clock.millis() + 1000, 4));
+
+        PeriodStatistics hour = service.getStatisticsForLast(60 * 60 * 1000);
+        assertEquals(hour.getCount(), 2);
+        assertEquals(hour.getSum(), 5, 0);
+        PeriodStatistics day = service.getStatisticsForLast(24 * 60 * 60 * 1000);
+        assertEquals(day.getCount(), 3);
+        assertEquals(day.getSum(), 7, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenRollupWithoutFutureSlots_whenCreateServiceWithTolerance_exceptionThrown() {
+        new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow, 1000, false, 2),
+                new StatisticsRollups(new StatisticsWindow(60, 60 * 1000L)), new HotPathMetrics(), Clock.systemUTC(), statisticsPeriodFromNow, 2000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenWindowWithoutBucketsForTolerance_whenCreateService_exceptionThrown() {
+        new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow), new StatisticsRollups(), new HotPathMetrics(), Clock.systemUTC(),
+                statisticsPeriodFromNow, 2000);
+    }
+
+    @Test
+    public void givenRollups_whenCleanupOldDataAfterClockAdvanced_bucketsOutOfEveryLevelEvicted() {
+        ManualClock clock = new ManualClock(1_000_000_000L);
+        StatisticsWindow minutes = new StatisticsWindow(60, 60 * 1000L);
+        HotPathMetrics metrics = new HotPathMetrics();
+        StatisticsService service = new StatisticsService(recentStatistics, new StatisticsRollups(minutes), metrics, clock, statisticsPeriodFromNow);
+        service.updateRecentStatistics(clock.millis(), 1);
+
+        clock.advance(2 * 60 * 1000);
+        service.cleanupOldData();
+        assertEquals(recentStatistics.activeBuckets(Long.MIN_VALUE), 0);
+        assertEquals(minutes.activeBuckets(Long.MIN_VALUE), 1);
+
+        clock.advance(60 * 60 * 1000);
+        service.cleanupOldData();
+        assertEquals(minutes.activeBuckets(Long.MIN_VALUE), 0);
+        assertEquals(metrics.getEvicted(), 2);
+    }
+
+    @Test(expected = UnsupportedWindowException.class)
+    public void givenNoRollups_whenGetStatisticsForLongerPeriod_exceptionThrown() {
+        statisticsService.getStatisticsForLast(60 * 60 * 1000);
+    }
+
+    @Test
+    public void givenTransactions_whenGetStatisticsBetween_onlyTransactionsOfRangeAccumulated() {
+        long now = System.currentTimeMillis();
+        statisticsService.updateRecentStatistics(new BankTransaction(1, now - 10 * 1000));
+        statisticsService.updateRecentStatistics(new BankTransaction(2, now - 20 * 1000));
+        statisticsService.updateRecentStatistics(new BankTransaction(4, now - 40 * 1000));
+
+        PeriodStatistics range = statisticsService.getStatisticsBetween(30 * 1000, 15 * 1000);
+        assertEquals(range.getCount(), 1);
+        assertEquals(range.getMax(), 2, 0);
+
+        // index is updated by writes made after previous query
+        statisticsService.updateRecentStatistics(new BankTransaction(3, now - 25 * 1000));
+        range = statisticsService.getStatisticsBetween(30 * 1000, 15 * 1000);
+        assertEquals(range.getCount(), 2);
+        assertEquals(range.getSum(), 5, 0);
+        assertEquals(range.getMin(), 2, 0);
+
+        assertEquals(statisticsService.getStatisticsBetween(50 * 1000, 0).getCount(), 4);
+    }
+
+    @Test
+    public void givenRandomTransactions_whenGetStatisticsBetween_sameStatisticsAsIteratingThroughWindow() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1000; i++) {
+            recentStatistics.add(recentStatistics.slotOf(now - random.nextInt(statisticsPeriodFromNow * 1000)), random.nextInt(1000));
+            if (i % 100 == 0) {
+                statisticsService.getStatisticsBetween(statisticsPeriodFromNow * 1000, 0);
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            long fromSecondsAgo = 1 + random.nextInt(statisticsPeriodFromNow - 1);
+            long toSecondsAgo = random.nextInt((int) fromSecondsAgo);
+            long nowSlot = recentStatistics.slotOf(System.currentTimeMillis());
+            PeriodStatistics range = statisticsService.getStatisticsBetween(fromSecondsAgo * 1000, toSecondsAgo * 1000);
+            // statistics are checked only if second was not changed during query
+            if (nowSlot == recentStatistics.slotOf(System.currentTimeMillis())) {
+                PeriodStatistics expected = recentStatistics.collect(nowSlot - fromSecondsAgo + 1, nowSlot - toSecondsAgo);
+                assertEquals(range.getCount(), expected.getCount());
+                assertEquals(range.getSum(), expected.getSum(), 0.0001);
+                assertEquals(range.getMax(), expected.getMax(), 0);
+                assertEquals(range.getMin(), expected.getMin(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void givenHistogramsKept_whenGetStatisticsWithPercentiles_percentilesAreCloseToExact() {
+        StatisticsWindow window = new StatisticsWindow(statisticsPeriodFromNow, 1000, true);
+        StatisticsService service = new StatisticsService(window, statisticsPeriodFromNow);
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        double[] amounts = new double[10000];
+        TransactionBatch batch = new TransactionBatch(amounts.length / 2);
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = Math.exp(random.nextGaussian() * 2 + 5);
+            long timestamp = now - random.nextInt(50 * 1000);
+            if (i % 2 == 0) {
+                service.updateRecentStatistics(new BankTransaction(amounts[i], timestamp));
+            } else {
+                batch.add(timestamp, amounts[i]);
+            }
+        }
+        service.updateRecentStatistics(batch);
+        Arrays.sort(amounts);
+
+        PeriodStatistics periodStatistics = service.getStatisticsForLast(statisticsPeriodFromNow * 1000L, true);
+
+        assertEquals(periodStatistics.getCount(), amounts.length);
+        assertEquals(periodStatistics.getP50(), amounts[amounts.length / 2 - 1], amounts[amounts.length / 2 - 1] * 0.04);
+        assertEquals(periodStatistics.getP90(), amounts[amounts.length * 9 / 10 - 1], amounts[amounts.length * 9 / 10 - 1] * 0.04);
+        assertEquals(periodStatistics.getP99(), amounts[amounts.length * 99 / 100 - 1], amounts[amounts.length * 99 / 100 - 1] * 0.04);
+    }
+
+    @Test
+    public void givenOneAmount_whenGetStatisticsWithPercentiles_percentilesAreExact() {
+        StatisticsWindow window = new StatisticsWindow(statisticsPeriodFromNow, 1000, true);
+        StatisticsService service = new StatisticsService(window, statisticsPeriodFromNow);
+        service.updateRecentStatistics(new BankTransaction(12.3, System.currentTimeMillis()));
+
+        PeriodStatistics periodStatistics = service.getStatisticsForLast(10 * 1000, true);
+
+        assertEquals(periodStatistics.getP50(), 12.3, 0);
+        assertEquals(periodStatistics.getP99(), 12.3, 0);
+    }
+
+    @Test(expected = UnsupportedWindowException.class)
+    public void givenHistogramsNotKept_whenGetStatisticsWithPercentiles_exceptionThrown() {
+        statisticsService.getStatisticsForLast(statisticsPeriodFromNow * 1000L, true);
+    }
+
+    @Test
+    public void givenMetrics_whenTransactionsAddedAndOldDataCleaned_transactionsAndEvictionsCounted() {
+        HotPathMetrics metrics = new HotPathMetrics();
+        StatisticsWindow window = new StatisticsWindow(statisticsPeriodFromNow + 1);
+        StatisticsService service = new StatisticsService(window, new StatisticsRollups(), metrics, Clock.systemUTC(), statisticsPeriodFromNow, 1000);
+        long now = System.currentTimeMillis();
+        service.updateRecentStatistics(new BankTransaction(1, now - 1000));
+        service.updateRecentStatistics(new BankTransaction(2, now - 61 * 1000));
+        service.updateRecentStatistics(new BankTransaction(3, now + 500));
+        service.updateRecentStatistics(new BankTransaction(7, now + 5000));
+        TransactionBatch batch = new TransactionBatch(3);
+        batch.add(now - 2000, 4);
+        batch.add(now - 70 * 1000, 5);
+        batch.add(now + 5000, 8);
+        service.updateRecentStatistics(batch);
+        window.add(window.slotOf(now - 65 * 1000), 6);
+        service.getStatisticsForLastSeconds();
+        service.cleanupOldData();
+
+        assertEquals(metrics.getAccepted(), 3);
+        assertEquals(metrics.getLate(), 2);
+        assertEquals(metrics.getFuture(), 1);
+        assertEquals(metrics.getRejectedFuture(), 2);
+        assertEquals(metrics.getEvicted(), 1);
+        assertEquals(metrics.getAggregate().summarize().getCount(), 5);
+        assertEquals(metrics.getRead().summarize().getCount(), 1);
+        WindowOccupancy occupancy = service.getOccupancy().get(0);
+        assertEquals(occupancy.getBuckets(), statisticsPeriodFromNow + 1);
+        assertTrue(occupancy.getActiveBuckets() >= 2);
+    }
+
+    @Test
+    public void givenCheckpointWritten_whenReadByNewService_sameStatisticsOfClosedSlotsReturned() throws IOException {
+        ManualClock clock = new ManualClock(1_000_800_000L + 30 * 60 * 1000 + 500);
+        StatisticsService service = new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow, 1000, true, 2),
+                new StatisticsRollups(new StatisticsWindow(60, 60 * 1000L, true, 1)), new HotPathMetrics(), clock, statisticsPeriodFromNow, 2000);
+        long now = clock.millis();
+        service.updateRecentStatistics(now - 1000, 1);
+        service.updateRecentStatistics(now - 30 * 1000, 2);
+        service.updateRecentStatistics(now - 10 * 60 * 1000, 3);
+        // open and future slots are not read back, their transactions are replayed
+        service.updateRecentStatistics(now, 4);
+        service.updateRecentStatistics(now + 1500, 5);
+        Path checkpoint = folder.getRoot().toPath().resolve("statistics.checkpoint");
+        long checkpointTime = service.writeCheckpoint(checkpoint);
+
+        StatisticsService restored = new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow, 1000, true, 2),
+                new StatisticsRollups(new StatisticsWindow(60, 60 * 1000L, true, 1)), new HotPathMetrics(), clock, statisticsPeriodFromNow, 2000);
+        assertEquals(restored.readCheckpoint(checkpoint, now - 60 * 60 * 1000), checkpointTime);
+
+        assertEquals(restored.getStatisticsForLastSeconds().getCount(), 2);
+        PeriodStatistics hour = restored.getStatisticsForLast(60 * 60 * 1000, true);
+        assertEquals(hour.getCount(), 3);
+        assertEquals(hour.getSum(), 6, 0);
+        assertEquals(hour.getMin(), 1, 0);
+        assertEquals(hour.getP99(), 3, 0);
+        assertEquals(restored.getStatisticsBetween(40 * 1000, 20 * 1000).getCount(), 1);
+    }
+
+    @Test
+    public void givenCheckpointOfOtherLayoutOrTooOld_whenRead_checkpointIsIgnored() throws IOException {
+        statisticsService.updateRecentStatistics(new BankTransaction(1, System.currentTimeMillis()));
+        Path checkpoint = folder.getRoot().toPath().resolve("statistics.checkpoint");
+        long checkpointTime = statisticsService.writeCheckpoint(checkpoint);
+
+        StatisticsService otherLayout = new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow * 10, 100), statisticsPeriodFromNow);
+        assertEquals(otherLayout.readCheckpoint(checkpoint, 0), -1);
+        assertEquals(otherLayout.getStatisticsForLastSeconds().getCount(), 0);
+        StatisticsService sameLayout = new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow), statisticsPeriodFromNow);
+        assertEquals(sameLayout.readCheckpoint(checkpoint, checkpointTime + 1), -1);
+        assertEquals(sameLayout.readCheckpoint(folder.getRoot().toPath().resolve("missing"), 0), -1);
+        assertEquals(sameLayout.getStatisticsForLastSeconds().getCount(), 0);
+    }
+
+    @Test
+    public void givenStatisticsClock_whenWriteCheckpoint_checkpointTimeTakenFromIt() throws IOException {
+        ManualClock clock = new ManualClock(1_000_000_000L);
+        StatisticsService service = new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow), new StatisticsRollups(),
+                new HotPathMetrics(), clock, statisticsPeriodFromNow);
+        service.updateRecentStatistics(new BankTransaction(1, clock.millis() - 1000));
+        Path checkpoint = folder.getRoot().toPath().resolve("statistics.checkpoint");
+
+        assertEquals(service.writeCheckpoint(checkpoint), clock.millis());
+
+        StatisticsService restored = new StatisticsService(new StatisticsWindow(statisticsPeriodFromNow), new StatisticsRollups(),
+                new HotPathMetrics(), clock, statisticsPeriodFromNow);
+        assertEquals(restored.readCheckpoint(checkpoint, clock.millis()), clock.millis());
+        assertEquals(restored.getStatisticsForLastSeconds().getCount(), 1);
+    }
+}
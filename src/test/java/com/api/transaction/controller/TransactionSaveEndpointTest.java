@@ -12,8 +12,11 @@ import org.springframework.web.context.WebApplicationContext;
 
 import javax.inject.Inject;
 import java.time.Instant;
+import java.util.UUID;
 
+import static org.hamcrest.core.Is.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -86,4 +89,162 @@ public class TransactionSaveEndpointTest {
                 .andExpect(status().isBadRequest());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void givenJsonArrayOfTransactions_whenSaveBatch_countsReturned() throws Exception {
+        long timestamp = Instant.now().toEpochMilli();
+        long oldTimestamp = timestamp - 100 * 1000;// 100 sec
+
+        String json = "[{\"amount\": 10.0, \"timestamp\": " + timestamp + "},"
+                + "{\"amount\": \"12.5\", \"timestamp\": \"" + timestamp + "\"},"
+                + "{\"amount\": 7, \"timestamp\": " + oldTimestamp + "},"
+                + "{\"amount\": null, \"timestamp\": " + timestamp + "}]";
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("accepted", is(2)))
+                .andExpect(jsonPath("tooOld", is(1)))
+                .andExpect(jsonPath("invalid", is(1)));
+    }
+
+    @Test
+    public void givenNewlineDelimitedTransactions_whenSaveBatch_countsReturned() throws Exception {
+        long timestamp = Instant.now().toEpochMilli();
+
+        String json = "{\"amount\": 10.0, \"timestamp\": " + timestamp + "}\n"
+                + "{\"amount\": 11.0, \"timestamp\": " + timestamp + ", \"comment\": {\"text\": \"skipped\"}}\n";
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content(json)
+                        .contentType("application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("accepted", is(2)))
+                .andExpect(jsonPath("tooOld", is(0)))
+                .andExpect(jsonPath("invalid", is(0)));
+    }
+
+    @Test
+    public void givenBrokenJson_whenSaveBatch_shouldReturn400() throws Exception {
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content("[{\"amount\": 10.0, ")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenBatchBrokenAfterTransactionsWithId_whenRetried_transactionsSaved() throws Exception {
+        long timestamp = Instant.now().toEpochMilli();
+        String transactions = "{\"amount\": 10.5, \"timestamp\": " + timestamp + ", \"transactionId\": \"" + UUID.randomUUID() + "\"},"
+                + "{\"amount\": 2, \"timestamp\": " + timestamp + ", \"transactionId\": \"" + UUID.randomUUID() + "\"}";
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content("[" + transactions + ", {\"amount\": 10.0, ")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content("[" + transactions + "]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("accepted", is(2)))
+                .andExpect(jsonPath("duplicate", is(0)));
+    }
+
+    @Test
+    public void givenAmountWhichIsNotFiniteNumber_whenSaveBatch_countedAsInvalid() throws Exception {
+        long timestamp = Instant.now().toEpochMilli();
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content("[{\"amount\": \"NaN\", \"timestamp\": " + timestamp + "},"
+                                + "{\"amount\": \"Infinity\", \"timestamp\": " + timestamp + "},"
+                                + "{\"amount\": 1e400, \"timestamp\": " + timestamp + "},"
+                                + "{\"amount\": 10.0, \"timestamp\": " + timestamp + "}]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("accepted", is(1)))
+                .andExpect(jsonPath("invalid", is(3)));
+    }
+
+    @Test
+    public void givenAmountOverflowingDouble_whenSaveLeanTransaction_shouldReturn400() throws Exception {
+        mockMvc.perform(
+                post("/transactions/lean")
+                        .content("{\"amount\": 1e400, \"timestamp\": " + Instant.now().toEpochMilli() + "}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenTransactionsOnLeanPath_whenSaveTransaction_shouldReturnSameStatusesAsEntityPath() throws Exception {
+        long timestamp = Instant.now().toEpochMilli();
+        mockMvc.perform(
+                post("/transactions/lean")
+                        .content("{\"amount\": 10.5, \"timestamp\": " + timestamp + "}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        mockMvc.perform(
+                post("/transactions/lean")
+                        .content("{\"amount\": 10.5, \"timestamp\": " + (timestamp - 100 * 1000) + "}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(
+                post("/transactions/lean")
+                        .content("{\"amount\": 10.5, \"timestamp\": null}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenTransactionFurtherInFutureThanTolerance_whenSaveTransaction_shouldReturn422AndNotSave() throws Exception {
+        long future = Instant.now().toEpochMilli() + 60 * 1000;
+        mockMvc.perform(
+                post("/transactions")
+                        .content("{\"amount\": 10.5, \"timestamp\": " + future + "}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(
+                post("/transactions/lean")
+                        .content("{\"amount\": 10.5, \"timestamp\": " + future + "}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content("[{\"amount\": 1, \"timestamp\": " + future + "}, {\"amount\": 2, \"timestamp\": " + (future - 59 * 1000) + "}]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("accepted", is(1)))
+                .andExpect(jsonPath("future", is(1)));
+    }
+
+    @Test
+    public void givenRetriedTransactionWithId_whenSaveTransaction_shouldReturn200AndNotSaveAgain() throws Exception {
+        long timestamp = Instant.now().toEpochMilli();
+        String json = "{\"amount\": 10.5, \"timestamp\": " + timestamp + ", \"transactionId\": \"" + UUID.randomUUID() + "\"}";
+        mockMvc.perform(
+                post("/transactions")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        mockMvc.perform(
+                post("/transactions")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                post("/transactions/lean")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                post("/transactions/batch")
+                        .content("[" + json + ", " + json.replace("10.5", "2") + ", {\"amount\": 3, \"timestamp\": " + timestamp + "}]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("accepted", is(1)))
+                .andExpect(jsonPath("duplicate", is(2)));
+    }
+}
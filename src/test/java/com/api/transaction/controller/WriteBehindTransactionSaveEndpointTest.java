@@ -0,0 +1,53 @@
+package com.api.transaction.controller;
+
+import com.api.Application;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.inject.Inject;
+import java.time.Instant;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = Application.class, properties = "transactions.store.type=write-behind")
+public class WriteBehindTransactionSaveEndpointTest {
+
+    @Inject
+    private WebApplicationContext webApplicationContext;
+
+    MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        this.mockMvc = webAppContextSetup(webApplicationContext).build();
+    }
+
+    @Test
+    public void givenTransactionWithAmountNull_whenSaveTransaction_shouldReturn400() throws Exception {
+        mockMvc.perform(
+                post("/transactions")
+                        .content("{\"timestamp\": " + Instant.now().toEpochMilli() + "}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("error").isArray());
+    }
+
+    @Test
+    public void givenTransactionWithTimestampNull_whenSaveTransaction_shouldReturn400() throws Exception {
+        mockMvc.perform(
+                post("/transactions")
+                        .content("{\"amount\": 10.5}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+}
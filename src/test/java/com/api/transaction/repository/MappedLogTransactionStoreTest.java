@@ -0,0 +1,137 @@
+package com.api.transaction.repository;
+
+import org.awaitility.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.validation.ConstraintViolationException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MappedLogTransactionStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void givenTransactionsAppended_whenStoreIsReopened_allTransactionsReplayed() throws Exception {
+        MappedLogTransactionStore store = new MappedLogTransactionStore(folder.getRoot().getPath(), 10, 10);
+        store.start();
+        IntStream.range(0, 25).forEach(i -> store.save(new BankTransaction(i, 1000L + i)));
+        await().atMost(Duration.TEN_SECONDS).until(() -> store.getForcedCount() == 25);
+        assertEquals(store.getSegmentCount(), 3);
+        store.stop();
+
+        MappedLogTransactionStore reopened = new MappedLogTransactionStore(folder.getRoot().getPath(), 10, 10);
+        reopened.start();
+        reopened.append(2000L, 100);
+
+        List<Double> amounts = replay(reopened, 0);
+        assertEquals(amounts.size(), 26);
+        assertEquals(amounts.get(24), 24, 0);
+        assertEquals(amounts.get(25), 100, 0);
+        assertEquals(reopened.getAppendedCount(), 26);
+        reopened.stop();
+    }
+
+    @Test
+    public void givenBatchSaved_whenReplayFromTimestamp_onlyNewerTransactionsRead() throws Exception {
+        MappedLogTransactionStore store = new MappedLogTransactionStore(folder.getRoot().getPath(), 4, 10);
+        store.start();
+        TransactionBatch batch = new TransactionBatch(10);
+        IntStream.range(0, 10).forEach(i -> batch.add(1000L + i, i));
+        store.saveAll(batch);
+
+        List<Double> amounts = replay(store, 1005);
+
+        assertEquals(amounts.size(), 5);
+        assertEquals(amounts.get(0), 5, 0);
+        store.stop();
+    }
+
+    @Test
+    public void givenNextSegmentPrepared_whenSegmentIsFull_appendSwitchesToPreparedSegment() throws Exception {
+        MappedLogTransactionStore store = new MappedLogTransactionStore(folder.getRoot().getPath(), 4, 10);
+        store.start();
+        Path next = folder.getRoot().toPath().resolve("segment-0000000000000000004.log");
+        await().atMost(Duration.TEN_SECONDS).until(() -> Files.exists(next));
+        assertEquals(store.getSegmentCount(), 1);
+
+        IntStream.range(0, 6).forEach(i -> store.append(1000L + i, i));
+
+        assertEquals(store.getSegmentCount(), 2);
+        await().atMost(Duration.TEN_SECONDS).until(() -> store.getForcedCount() == 6);
+        assertEquals(replay(store, 0).size(), 6);
+        store.stop();
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("segment-0000000000000000008.log")));
+    }
+
+    @Test
+    public void givenPreparedSegmentLeftByCrash_whenStoreIsReopened_appendsContinueInUnfinishedSegment() throws Exception {
+        MappedLogTransactionStore crashed = new MappedLogTransactionStore(folder.getRoot().getPath(), 4, 10);
+        crashed.start();
+        IntStream.range(0, 2).forEach(i -> crashed.append(1000L + i, i));
+        await().atMost(Duration.TEN_SECONDS).until(() -> Files.exists(folder.getRoot().toPath().resolve("segment-0000000000000000004.log")));
+
+        MappedLogTransactionStore reopened = new MappedLogTransactionStore(folder.getRoot().getPath(), 4, 10);
+        reopened.start();
+        reopened.append(1002L, 2);
+
+        assertEquals(reopened.getSegmentCount(), 1);
+        assertEquals(reopened.getAppendedCount(), 3);
+        assertEquals(replay(reopened, 0).size(), 3);
+        reopened.stop();
+        crashed.stop();
+    }
+
+    @Test
+    public void givenTimestampsOutOfOrder_whenReplayAfterRestart_onlySegmentsWithNewerTimestampsRead() throws Exception {
+        MappedLogTransactionStore store = new MappedLogTransactionStore(folder.getRoot().getPath(), 4, 10);
+        store.start();
+        long[] timestamps = {1000, 1001, 5000, 1003, 1004, 1005, 1006, 1007, 1008, 900, 1010};
+        for (int i = 0; i < timestamps.length; i++) {
+            store.append(timestamps[i], i);
+        }
+        store.stop();
+
+        MappedLogTransactionStore reopened = new MappedLogTransactionStore(folder.getRoot().getPath(), 4, 10);
+        reopened.start();
+
+        assertEquals(replay(reopened, 4000), Collections.singletonList(2.0));
+        assertEquals(replay(reopened, 1006), Arrays.asList(2.0, 6.0, 7.0, 8.0, 10.0));
+        assertEquals(replay(reopened, 2000000), Collections.emptyList());
+        reopened.stop();
+    }
+
+    @Test(expected = ConstraintViolationException.class)
+    public void givenTransactionWithoutTimestamp_whenSave_constraintViolationThrown() throws Exception {
+        MappedLogTransactionStore store = new MappedLogTransactionStore(folder.getRoot().getPath(), 4, 10);
+        store.start();
+        try {
+            store.save(new BankTransaction(10, null));
+        } finally {
+            assertEquals(store.getAppendedCount(), 0);
+            store.stop();
+        }
+    }
+
+    private List<Double> replay(MappedLogTransactionStore store, long fromTimestamp) {
+        List<Double> amounts = new ArrayList<>();
+        store.replay(fromTimestamp, new TransactionBatch(3), chunk -> {
+            for (int i = 0; i < chunk.size(); i++) {
+                amounts.add(chunk.getAmount(i));
+            }
+        });
+        return amounts;
+    }
+}
@@ -0,0 +1,110 @@
+package com.api.transaction.repository;
+
+import org.awaitility.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.validation.ConstraintViolationException;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class WriteBehindTransactionStoreTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:writebehind;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("create table bank_transaction (id BIGINT auto_increment primary key, amount DOUBLE not null, timestamp BIGINT not null)");
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("drop table bank_transaction");
+    }
+
+    @Test
+    public void givenTransactionsQueued_whenBatchIsFlushed_allTransactionsInserted() throws InterruptedException {
+        WriteBehindTransactionStore store = new WriteBehindTransactionStore(jdbcTemplate, 100, 10, 50, QueueOverflowPolicy.BLOCK);
+        store.start();
+
+        IntStream.range(0, 25).forEach(i -> store.save(new BankTransaction(i, 1000L + i)));
+
+        await().atMost(Duration.TEN_SECONDS).until(() -> store.getPersistedCount() == 25);
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from bank_transaction", Integer.class).intValue(), 25);
+        assertEquals(jdbcTemplate.queryForObject("select sum(amount) from bank_transaction", Double.class), 300, 0);
+        store.stop();
+    }
+
+    @Test
+    public void givenTransactionWithoutAmount_whenSave_constraintViolationThrownAndNothingQueued() {
+        WriteBehindTransactionStore store = new WriteBehindTransactionStore(jdbcTemplate, 100, 10, 50, QueueOverflowPolicy.BLOCK);
+        BankTransaction transaction = new BankTransaction();
+        transaction.setTimestamp(1000L);
+
+        try {
+            store.save(transaction);
+            fail("Transaction without amount should not be queued");
+        } catch (ConstraintViolationException e) {
+            assertEquals(e.getConstraintViolations().size(), 1);
+        }
+        assertEquals(store.getQueueSize(), 0);
+    }
+
+    @Test(expected = TransactionQueueFullException.class)
+    public void givenQueueIsFull_whenRejectPolicy_exceptionThrown() {
+        WriteBehindTransactionStore store = new WriteBehindTransactionStore(jdbcTemplate, 2, 1, 50, QueueOverflowPolicy.REJECT);
+        // flusher is not started, so queue is not drained
+
+        IntStream.range(0, 3).forEach(i -> store.append(1000L + i, i));
+    }
+
+    @Test
+    public void givenQueueWithoutPlaceForWholeBatch_whenRejectPolicy_nothingOfBatchQueued() {
+        WriteBehindTransactionStore store = new WriteBehindTransactionStore(jdbcTemplate, 4, 1, 50, QueueOverflowPolicy.REJECT);
+        store.append(1000L, 1);
+        store.append(1001L, 2);
+        TransactionBatch batch = new TransactionBatch(3);
+        IntStream.range(0, 3).forEach(i -> batch.add(2000L + i, i));
+
+        try {
+            store.saveAll(batch);
+            fail("Batch bigger than free place should be rejected");
+        } catch (TransactionQueueFullException e) {
+            assertEquals(store.getQueueSize(), 2);
+        }
+        batch.clear();
+        batch.add(3000L, 3);
+        batch.add(3001L, 4);
+        store.saveAll(batch);
+        assertEquals(store.getQueueSize(), 4);
+    }
+
+    @Test
+    public void givenQueueIsFull_whenCallerRunsPolicy_transactionInsertedByCaller() {
+        WriteBehindTransactionStore store = new WriteBehindTransactionStore(jdbcTemplate, 2, 1, 50, QueueOverflowPolicy.CALLER_RUNS);
+
+        IntStream.range(0, 3).forEach(i -> store.append(1000L + i, i));
+
+        assertEquals(store.getQueueSize(), 2);
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from bank_transaction", Integer.class).intValue(), 1);
+    }
+
+    @Test
+    public void givenTransactionsQueued_whenStopped_remainingTransactionsInserted() throws InterruptedException {
+        WriteBehindTransactionStore store = new WriteBehindTransactionStore(jdbcTemplate, 100, 50, 60000, QueueOverflowPolicy.BLOCK);
+        store.start();
+        IntStream.range(0, 7).forEach(i -> store.append(1000L + i, i));
+
+        store.stop();
+
+        assertEquals(store.getPersistedCount(), 7);
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from bank_transaction", Integer.class).intValue(), 7);
+    }
+}
@@ -0,0 +1,90 @@
+package com.api.transaction.service;
+
+import com.api.transaction.repository.BankTransaction;
+import com.api.transaction.repository.TransactionBatch;
+import com.api.transaction.repository.TransactionStore;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IngestAdmissionTest {
+
+    /**
+     * Store which only reports given queue depth
+     */
+    private static class QueuedStore implements TransactionStore {
+
+        private int queueDepth;
+
+        @Override
+        public BankTransaction save(BankTransaction bankTransaction) {
+            return bankTransaction;
+        }
+
+        @Override
+        public void append(long timestamp, double amount) {
+        }
+
+        @Override
+        public void saveAll(TransactionBatch batch) {
+        }
+
+        @Override
+        public void replay(long fromTimestamp, TransactionBatch chunk, Consumer<TransactionBatch> consumer) {
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+    }
+
+    @Test
+    public void givenQueueDeeperThanLimit_whenAdmit_thenRejectedUntilQueueDrained() {
+        QueuedStore store = new QueuedStore();
+        IngestAdmission admission = new IngestAdmission(store, Optional.empty(), true, 100, 100);
+
+        store.queueDepth = 101;
+        assertEquals(IngestResult.REJECTED, admission.admit());
+        store.queueDepth = 100;
+        assertEquals(IngestResult.ACCEPTED, admission.admit());
+        assertEquals(1, admission.getRejectedCount());
+    }
+
+    @Test
+    public void givenLatencyFarOverLimit_whenAdmit_thenMostRequestsThrottled() {
+        IngestAdmission admission = new IngestAdmission(new QueuedStore(), Optional.empty(), true, 100, 10);
+        long tenSecondsAgo = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 100 * IngestAdmission.LATENCY_SAMPLING; i++) {
+            admission.recordLatency(tenSecondsAgo);
+        }
+
+        int throttled = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (admission.admit() == IngestResult.THROTTLED) {
+                throttled++;
+            }
+        }
+
+        assertTrue(admission.getLatencyInMicros() > TimeUnit.SECONDS.toMicros(1));
+        // requests are admitted with probability limit / latency, here less than 1%
+        assertTrue(throttled > 900);
+        assertEquals(throttled, admission.getThrottledCount());
+    }
+
+    @Test
+    public void givenAdmissionDisabled_whenOverloaded_thenEverythingAdmitted() {
+        QueuedStore store = new QueuedStore();
+        store.queueDepth = 1000;
+        IngestAdmission admission = new IngestAdmission(store, Optional.empty(), false, 100, 10);
+        admission.recordLatency(System.nanoTime() - TimeUnit.SECONDS.toNanos(10));
+
+        assertEquals(IngestResult.ACCEPTED, admission.admit());
+        assertEquals(0, admission.startTimer());
+    }
+}
@@ -0,0 +1,108 @@
+package com.api.transaction.service;
+
+import com.api.Application;
+import com.api.clock.ManualClock;
+import com.api.metrics.service.HotPathMetrics;
+import com.api.statistics.service.PeriodStatistics;
+import com.api.statistics.service.StatisticsRollups;
+import com.api.statistics.service.StatisticsService;
+import com.api.statistics.service.StatisticsWindow;
+import com.api.transaction.repository.TransactionStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.inject.Inject;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = Application.class)
+public class StatisticsRecoveryServiceTest {
+
+    @Inject
+    private StatisticsRecoveryService statisticsRecoveryService;
+
+    @Inject
+    private StatisticsService statisticsService;
+
+    @Inject
+    private StatisticsWindow recentStatistics;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private TransactionStore transactionStore;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("delete from bank_transaction");
+        recentStatistics.evictBefore(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void givenSavedTransactions_whenRecover_onlyTransactionsOfWindowAdded() {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update("insert into bank_transaction (amount, timestamp) values (?, ?)", 10.0, now);
+        jdbcTemplate.update("insert into bank_transaction (amount, timestamp) values (?, ?)", 20.0, now - 10 * 1000);
+        jdbcTemplate.update("insert into bank_transaction (amount, timestamp) values (?, ?)", 30.0, now - 100 * 1000);// 100 sec
+
+        int recovered = statisticsRecoveryService.recover();
+
+        assertEquals(recovered, 2);
+        PeriodStatistics periodStatistics = statisticsService.getStatisticsForLastSeconds();
+        assertEquals(periodStatistics.getCount(), 2);
+        assertEquals(periodStatistics.getMax(), 20, 0);
+        assertEquals(periodStatistics.getMin(), 10, 0);
+    }
+
+    @Test
+    public void givenCheckpointWithOpenAndFutureSlots_whenRecover_eachTransactionCountedOnce() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("statistics.checkpoint");
+        // half a minute after start of the minute, so closed seconds of the main window are in open slot of the minutes level
+        ManualClock clock = new ManualClock(1_000_800_000L + 30 * 1000 + 500);
+        StatisticsService service = newStatisticsService(clock);
+        long now = clock.millis();
+        saveAndCount(service, now - 5000, 10.0);
+        saveAndCount(service, now - 100, 20.0);
+        // future transaction is in the checkpoint buckets, but has timestamp after checkpoint time
+        saveAndCount(service, now + 1500, 30.0);
+        long checkpointTime = service.writeCheckpoint(checkpoint);
+        clock.advance(1000);
+        jdbcTemplate.update("insert into bank_transaction (amount, timestamp) values (?, ?)", 40.0, clock.millis());
+        StatisticsService restored = newStatisticsService(clock);
+        StatisticsRecoveryService recoveryService = new StatisticsRecoveryService(transactionStore, restored, 100,
+                true, true, checkpoint.toString());
+
+        int recovered = recoveryService.recover();
+
+        assertEquals(checkpointTime, now);
+        assertEquals(recovered, 3);
+        PeriodStatistics periodStatistics = restored.getStatisticsForLastSeconds();
+        assertEquals(periodStatistics.getCount(), 4);
+        assertEquals(periodStatistics.getSum(), 100, 0);
+        PeriodStatistics minutes = restored.getStatisticsForLast(10 * 60 * 1000);
+        assertEquals(minutes.getCount(), 4);
+        assertEquals(minutes.getSum(), 100, 0);
+    }
+
+    private void saveAndCount(StatisticsService service, long timestamp, double amount) {
+        jdbcTemplate.update("insert into bank_transaction (amount, timestamp) values (?, ?)", amount, timestamp);
+        service.updateRecentStatistics(timestamp, amount);
+    }
+
+    private static StatisticsService newStatisticsService(ManualClock clock) {
+        return new StatisticsService(new StatisticsWindow(60, 1000, false, 2),
+                new StatisticsRollups(new StatisticsWindow(60, 60 * 1000L, false, 1)), new HotPathMetrics(), clock, 60, 2000);
+    }
+}
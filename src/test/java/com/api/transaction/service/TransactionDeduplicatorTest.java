@@ -0,0 +1,119 @@
+package com.api.transaction.service;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionDeduplicatorTest {
+
+    private static final long NOW = 1478192204000L;
+
+    /**
+     * 60 seconds window with 2 seconds of clock skew tolerance, 64 ids per one second slot
+     */
+    private final TransactionDeduplicator deduplicator = new TransactionDeduplicator(true, 60, 2000, 1000, 64);
+
+    @Test
+    public void givenSameIdAndSlot_whenIsDuplicate_thenOnlyRetryIsDuplicate() {
+        long id = TransactionDeduplicator.hash("tx-1");
+
+        assertFalse(deduplicator.isDuplicate(id, NOW));
+        assertTrue(deduplicator.isDuplicate(id, NOW));
+        assertTrue(deduplicator.isDuplicate(id, NOW + 999 - NOW % 1000));
+        // the same id with timestamp of another slot is another transaction
+        assertFalse(deduplicator.isDuplicate(id, NOW + 1000));
+        assertFalse(deduplicator.isDuplicate(TransactionDeduplicator.hash("tx-2"), NOW));
+        assertFalse(deduplicator.isDuplicate(TransactionDeduplicator.NO_ID, NOW));
+        assertFalse(deduplicator.isDuplicate(TransactionDeduplicator.NO_ID, NOW));
+
+        assertEquals(deduplicator.getDuplicateCount(), 2);
+    }
+
+    @Test
+    public void givenForgottenId_whenIsDuplicate_thenRetryAccepted() {
+        long first = TransactionDeduplicator.hash("tx-1");
+        long second = TransactionDeduplicator.hash("tx-2");
+        deduplicator.isDuplicate(first, NOW);
+        deduplicator.isDuplicate(second, NOW);
+
+        deduplicator.forget(first, NOW);
+
+        assertFalse(deduplicator.isDuplicate(first, NOW));
+        assertTrue(deduplicator.isDuplicate(second, NOW));
+    }
+
+    @Test
+    public void givenIdOfSlotOutOfWindow_whenIsDuplicate_thenIdIsForgottenWithItsSlot() {
+        long id = TransactionDeduplicator.hash("tx-1");
+        deduplicator.isDuplicate(id, NOW);
+
+        // id is remembered for the whole window and clock skew tolerance
+        deduplicator.isDuplicate(TransactionDeduplicator.hash("tx-2"), NOW + 62 * 1000);
+        assertTrue(deduplicator.isDuplicate(id, NOW));
+
+        // table of the slot is reused 63 slots later
+        deduplicator.isDuplicate(TransactionDeduplicator.hash("tx-3"), NOW + 63 * 1000);
+        assertFalse(deduplicator.isDuplicate(id, NOW));
+        assertEquals(deduplicator.getOverflowCount(), 1);
+    }
+
+    @Test
+    public void givenFullTable_whenIsDuplicate_thenIdIsNotRememberedAndOverflowCounted() {
+        // probing is bounded, so table is filled by more ids than it has cells
+        for (int i = 0; i < 1000; i++) {
+            deduplicator.isDuplicate(TransactionDeduplicator.hash("tx-" + i), NOW);
+        }
+        long overflows = deduplicator.getOverflowCount();
+        long id = TransactionDeduplicator.hash("tx-1000");
+
+        assertFalse(deduplicator.isDuplicate(id, NOW));
+        assertFalse(deduplicator.isDuplicate(id, NOW));
+        assertEquals(deduplicator.getOverflowCount(), overflows + 2);
+    }
+
+    @Test
+    public void givenDisabledDeduplicator_whenIsDuplicate_thenNeverDuplicate() {
+        TransactionDeduplicator disabled = new TransactionDeduplicator(false, 60, 2000, 1000, 64);
+        long id = TransactionDeduplicator.hash("tx-1");
+
+        assertFalse(disabled.isDuplicate(id, NOW));
+        assertFalse(disabled.isDuplicate(id, NOW));
+    }
+
+    @Test
+    public void givenIdAsStringAndAsUtf8Bytes_whenHash_thenSameHash() {
+        String[] ids = {"tx-1", "42", "Überweisung-€", "💰-1"};
+        for (String id : ids) {
+            byte[] bytes = ("\"" + id + "\"").getBytes(StandardCharsets.UTF_8);
+            assertEquals(id, TransactionDeduplicator.hash(id), TransactionDeduplicator.hash(bytes, 1, bytes.length - 2));
+        }
+        assertEquals(TransactionDeduplicator.hash(""), TransactionDeduplicator.NO_ID);
+        assertEquals(TransactionDeduplicator.hash((String) null), TransactionDeduplicator.NO_ID);
+        assertNotEquals(TransactionDeduplicator.hash("tx-1"), TransactionDeduplicator.hash("tx-2"));
+    }
+
+    @Test
+    public void givenWarmDeduplicator_whenIsDuplicate_thenNothingAllocated() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        TransactionDeduplicator large = new TransactionDeduplicator(true, 60, 2000, 1000, 16384);
+        for (int i = 0; i < 10000; i++) {
+            large.isDuplicate(i + 2, NOW + i);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            large.isDuplicate(i + 2, NOW + i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(large.getDuplicateCount(), 10000);
+        // a few hundred bytes can be allocated by the measurement itself
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
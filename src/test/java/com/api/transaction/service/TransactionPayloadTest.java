@@ -0,0 +1,99 @@
+package com.api.transaction.service;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionPayloadTest {
+
+    private final TransactionPayload payload = new TransactionPayload();
+
+    private boolean parse(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.US_ASCII);
+        return payload.parse(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void givenNumbersOrStrings_whenParse_thenAmountAndTimestampRead() {
+        assertTrue(parse("{\"amount\": 12.3, \"timestamp\": 1478192204000}"));
+        assertEquals(12.3, payload.getAmount(), 0);
+        assertEquals(1478192204000L, payload.getTimestamp());
+
+        assertTrue(parse(" {\"timestamp\":\"1478192204001\",\"amount\":\"-0.5\"} "));
+        assertEquals(-0.5, payload.getAmount(), 0);
+        assertEquals(1478192204001L, payload.getTimestamp());
+    }
+
+    @Test
+    public void givenAmountsOfAnyPrecision_whenParse_thenSameAsDoubleParse() {
+        String[] amounts = {"0", "7", "0.1", "123456.789", "1e3", "2.5E-3", "0.000000000123", "123456789012345678901234", "1.7976931348623157e308", "4.9e-324"};
+        for (String amount : amounts) {
+            assertTrue(parse("{\"amount\":" + amount + ",\"timestamp\":1}"));
+            assertEquals(amount, Double.parseDouble(amount), payload.getAmount(), 0);
+        }
+    }
+
+    @Test
+    public void givenOtherFields_whenParse_thenTheyAreSkipped() {
+        assertTrue(parse("{\"merchant\":\"m,\\\"}1\",\"amount\":1,\"tags\":[1,{\"a\":[]}],\"flag\":true,\"timestamp\":2}"));
+        assertEquals(1, payload.getAmount(), 0);
+        assertEquals(2, payload.getTimestamp());
+    }
+
+    @Test
+    public void givenBrokenBody_whenParse_thenFalseReturned() {
+        assertFalse(parse(""));
+        assertFalse(parse("{\"amount\":1}"));
+        assertFalse(parse("{\"amount\":null,\"timestamp\":1}"));
+        assertFalse(parse("{\"amount\":\"abc\",\"timestamp\":1}"));
+        assertFalse(parse("{\"amount\":1,\"timestamp\":1.5}"));
+        assertFalse(parse("{\"amount\":1,\"timestamp\":1"));
+        assertFalse(parse("{\"amount\":1,\"timestamp\":1}x"));
+        assertFalse(parse("{\"amount\":1,\"timestamp\":1,\"other\":}"));
+        assertFalse(parse("[{\"amount\":1,\"timestamp\":1}]"));
+        assertFalse(parse("{\"amount\":1e400,\"timestamp\":1}"));
+        assertFalse(parse("{\"amount\":\"-1e400\",\"timestamp\":1}"));
+        assertFalse(parse("{\"amount\":\"NaN\",\"timestamp\":1}"));
+    }
+
+    @Test
+    public void givenTransactionId_whenParse_thenIdHashedAsEntityIdIs() {
+        assertTrue(parse("{\"amount\":1,\"timestamp\":2,\"transactionId\":\"tx-42\"}"));
+        assertEquals(TransactionDeduplicator.hash("tx-42"), payload.getTransactionId());
+
+        assertTrue(parse("{\"transactionId\": 42 ,\"amount\":1,\"timestamp\":2}"));
+        assertEquals(TransactionDeduplicator.hash("42"), payload.getTransactionId());
+
+        assertTrue(parse("{\"amount\":1,\"timestamp\":2,\"transactionId\":null}"));
+        assertEquals(TransactionDeduplicator.NO_ID, payload.getTransactionId());
+
+        assertTrue(parse("{\"amount\":1,\"timestamp\":2}"));
+        assertEquals(TransactionDeduplicator.NO_ID, payload.getTransactionId());
+
+        assertFalse(parse("{\"amount\":1,\"timestamp\":2,\"transactionId\":{\"a\":1}}"));
+        assertFalse(parse("{\"amount\":1,\"timestamp\":2,\"transactionId\":\"tx"));
+    }
+
+    @Test
+    public void givenWarmParser_whenParse_thenNothingAllocated() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        byte[] bytes = "{\"amount\": 12.34, \"timestamp\": 1478192204000}".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 10000; i++) {
+            payload.parse(bytes, 0, bytes.length);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            payload.parse(bytes, 0, bytes.length);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // a few hundred bytes can be allocated by the measurement itself
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
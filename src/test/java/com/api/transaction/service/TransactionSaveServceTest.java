@@ -2,7 +2,7 @@ package com.api.transaction.service;
 
 
 import com.api.Application;
-import com.api.statistics.service.PeriodStatistics;
+import com.api.statistics.service.StatisticsWindow;
 import com.api.transaction.repository.BankTransaction;
 import com.api.transaction.repository.BankTransactionRepository;
 import org.junit.Before;
@@ -12,8 +12,6 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import javax.inject.Inject;
-import java.time.LocalDateTime;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.*;
 
@@ -28,11 +26,11 @@ public class TransactionSaveServceTest {
     BankTransactionRepository bankTransactionRepository;
 
     @Inject
-    private ConcurrentHashMap<LocalDateTime, PeriodStatistics> recentStatistics;
+    private StatisticsWindow recentStatistics;
 
     @Before
     public void setUp() {
-        recentStatistics.clear();
+        recentStatistics.evictBefore(Long.MAX_VALUE);
     }
 
     @Test
@@ -52,7 +50,7 @@ public class TransactionSaveServceTest {
         assertEquals(bankTransactionFromDatabase.getAmount(), transaction.getAmount(), 0);
 
         //Statistical data is updated
-        assertEquals(recentStatistics.size(), 1);
+        assertEquals(recentStatistics.activeBuckets(0), 1);
     }
 
 }
\ No newline at end of file